@@ -2,6 +2,8 @@ package com.zebrunner.agent.core.config;
 
 import com.google.gson.Gson;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -147,4 +149,314 @@ public class ConfigurationHolder {
         return configuration.getMilestone().getName();
     }
 
+    public static int getClientMaxConnections() {
+        Integer maxConnections = configuration.getClient().getMaxConnections();
+        return maxConnections != null && maxConnections > 0 ? maxConnections : 50;
+    }
+
+    public static int getClientMaxConnectionsPerRoute() {
+        Integer maxConnectionsPerRoute = configuration.getClient().getMaxConnectionsPerRoute();
+        return maxConnectionsPerRoute != null && maxConnectionsPerRoute > 0 ? maxConnectionsPerRoute : 25;
+    }
+
+    /**
+     * @return time in seconds after which an idle pooled connection to Zebrunner gets evicted
+     */
+    public static long getClientIdleConnectionTimeout() {
+        Long idleConnectionTimeout = configuration.getClient().getIdleConnectionTimeout();
+        return idleConnectionTimeout != null && idleConnectionTimeout > 0 ? idleConnectionTimeout : 30;
+    }
+
+    public static boolean isClientAsyncRegistrationEnabled() {
+        Boolean asyncRegistration = configuration.getClient().getAsyncRegistration();
+        return asyncRegistration != null && asyncRegistration;
+    }
+
+    public static boolean isClientSpoolEnabled() {
+        Boolean spoolEnabled = configuration.getClient().getSpoolEnabled();
+        return spoolEnabled != null && spoolEnabled;
+    }
+
+    /**
+     * @return directory keeping spooled Zebrunner API calls. By default, it is located in build dir of the project
+     */
+    public static String getClientSpoolDir() {
+        String spoolDir = configuration.getClient().getSpoolDir();
+        if (spoolDir != null && !spoolDir.trim().isEmpty()) {
+            return spoolDir;
+        }
+        return Files.isDirectory(Paths.get("target"))
+                ? "target/zebrunner-spool"
+                : "build/zebrunner-spool";
+    }
+
+    public static boolean isClientGzipEnabled() {
+        Boolean gzipEnabled = configuration.getClient().getGzipEnabled();
+        return gzipEnabled != null && gzipEnabled;
+    }
+
+    /**
+     * @return min size (in bytes) of a request body to be compressed
+     */
+    public static int getClientGzipThreshold() {
+        Integer gzipThreshold = configuration.getClient().getGzipThreshold();
+        return gzipThreshold != null && gzipThreshold >= 0 ? gzipThreshold : 8 * 1024;
+    }
+
+    /**
+     * @return true if statistics of Zebrunner API calls should be logged and attached to test run at its finish
+     */
+    public static boolean isClientMetricsReportEnabled() {
+        Boolean metricsReportEnabled = configuration.getClient().getMetricsReportEnabled();
+        return metricsReportEnabled != null && metricsReportEnabled;
+    }
+
+    /**
+     * @return name of http transport to talk to Zebrunner with, or null if it is not configured explicitly
+     */
+    public static String getClientTransport() {
+        String transport = configuration.getClient().getTransport();
+        return transport != null && !transport.trim().isEmpty() ? transport.trim() : null;
+    }
+
+    /**
+     * @return true if number of concurrent calls to Zebrunner should be limited adaptively
+     */
+    public static boolean isClientConcurrencyLimitEnabled() {
+        Boolean concurrencyLimitEnabled = configuration.getClient().getConcurrencyLimitEnabled();
+        return concurrencyLimitEnabled == null || concurrencyLimitEnabled;
+    }
+
+    /**
+     * @return upper bound of the adaptive limit of concurrent calls to Zebrunner
+     */
+    public static int getClientMaxConcurrency() {
+        Integer maxConcurrency = configuration.getClient().getMaxConcurrency();
+        return maxConcurrency != null && maxConcurrency > 0 ? maxConcurrency : getClientMaxConnectionsPerRoute();
+    }
+
+    /**
+     * @return number of threads uploading screenshots in background
+     */
+    public static int getClientScreenshotUploadThreads() {
+        Integer screenshotUploadThreads = configuration.getClient().getScreenshotUploadThreads();
+        return screenshotUploadThreads != null && screenshotUploadThreads > 0 ? screenshotUploadThreads : 2;
+    }
+
+    /**
+     * @return max total size (in bytes) of screenshots waiting to be uploaded
+     */
+    public static int getClientScreenshotQueueBytes() {
+        Integer screenshotQueueBytes = configuration.getClient().getScreenshotQueueBytes();
+        return screenshotQueueBytes != null && screenshotQueueBytes > 0 ? screenshotQueueBytes : 64 * 1024 * 1024;
+    }
+
+    /**
+     * @return max time (in milliseconds) a test waits for space in the screenshot upload queue before the screenshot is dropped
+     */
+    public static long getClientScreenshotMaxWait() {
+        Long screenshotMaxWait = configuration.getClient().getScreenshotMaxWait();
+        return screenshotMaxWait != null && screenshotMaxWait >= 0 ? screenshotMaxWait : 1000;
+    }
+
+    /**
+     * @return max time (in milliseconds) finish of a test waits for its screenshots to be uploaded
+     */
+    public static long getClientScreenshotFlushTimeout() {
+        Long screenshotFlushTimeout = configuration.getClient().getScreenshotFlushTimeout();
+        return screenshotFlushTimeout != null && screenshotFlushTimeout >= 0 ? screenshotFlushTimeout : 2000;
+    }
+
+    /**
+     * @return max number of logs buffered in memory before they are sent to Zebrunner. The capacity is split among the shards of the buffer
+     */
+    public static int getLogsBufferCapacity() {
+        Integer bufferCapacity = configuration.getLogs().getBufferCapacity();
+        return bufferCapacity != null && bufferCapacity > 0 ? bufferCapacity : 64 * 1024;
+    }
+
+    /**
+     * @return name of policy applied to logs which do not fit the buffer, or null if it is not configured explicitly
+     */
+    public static String getLogsOverflowPolicy() {
+        String overflowPolicy = configuration.getLogs().getOverflowPolicy();
+        return overflowPolicy != null && !overflowPolicy.trim().isEmpty() ? overflowPolicy.trim() : null;
+    }
+
+    /**
+     * @return number of logs buffered in a shard of the logs buffer which triggers their transfer to Zebrunner
+     */
+    public static int getLogsFlushMaxEvents() {
+        Integer flushMaxEvents = configuration.getLogs().getFlushMaxEvents();
+        return flushMaxEvents != null && flushMaxEvents > 0 ? flushMaxEvents : 5000;
+    }
+
+    /**
+     * @return approximate size (in bytes) of logs buffered in a shard of the logs buffer which triggers their transfer to Zebrunner
+     */
+    public static int getLogsFlushMaxBytes() {
+        Integer flushMaxBytes = configuration.getLogs().getFlushMaxBytes();
+        return flushMaxBytes != null && flushMaxBytes > 0 ? flushMaxBytes : 1024 * 1024;
+    }
+
+    /**
+     * @return time in milliseconds a log may stay in the buffer before it is sent to Zebrunner
+     */
+    public static long getLogsFlushMaxAge() {
+        Long flushMaxAge = configuration.getLogs().getFlushMaxAge();
+        return flushMaxAge != null && flushMaxAge > 0 ? flushMaxAge : 1000;
+    }
+
+    /**
+     * @return max size (in bytes) of a body of a single request with logs accepted by Zebrunner
+     */
+    public static int getLogsMaxRequestBytes() {
+        Integer maxRequestBytes = configuration.getLogs().getMaxRequestBytes();
+        return maxRequestBytes != null && maxRequestBytes > 0 ? maxRequestBytes : 4 * 1024 * 1024;
+    }
+
+    /**
+     * @return time in seconds given to send the buffered logs to Zebrunner when JVM shuts down
+     */
+    public static long getLogsShutdownTimeout() {
+        Long shutdownTimeout = configuration.getLogs().getShutdownTimeout();
+        return shutdownTimeout != null && shutdownTimeout > 0 ? shutdownTimeout : 10;
+    }
+
+    /**
+     * @return number of shards the logs buffer is split into. By default, it matches the number of available processors
+     */
+    public static int getLogsBufferShards() {
+        Integer bufferShards = configuration.getLogs().getBufferShards();
+        return bufferShards != null && bufferShards > 0
+                ? bufferShards
+                : Math.min(Runtime.getRuntime().availableProcessors(), 16);
+    }
+
+    /**
+     * @return true if logs should be encoded to JSON right away and kept off heap until they are sent to Zebrunner
+     */
+    public static boolean isLogsOffHeapEnabled() {
+        Boolean offHeapEnabled = configuration.getLogs().getOffHeapEnabled();
+        return offHeapEnabled != null && offHeapEnabled;
+    }
+
+    /**
+     * @return size (in bytes) of a slab of off-heap memory keeping encoded logs
+     */
+    public static int getLogsSlabSize() {
+        Integer slabSize = configuration.getLogs().getSlabSize();
+        return slabSize != null && slabSize > 0 ? slabSize : 256 * 1024;
+    }
+
+    /**
+     * @return max number of slabs of off-heap memory keeping encoded logs
+     */
+    public static int getLogsMaxSlabs() {
+        Integer maxSlabs = configuration.getLogs().getMaxSlabs();
+        return maxSlabs != null && maxSlabs > 0 ? maxSlabs : 64;
+    }
+
+    /**
+     * @return size (in bytes) of logs kept in memory after the logs buffer overflowed. Logs exceeding it are spilled to disk
+     */
+    public static int getLogsSpillThreshold() {
+        Integer spillThreshold = configuration.getLogs().getSpillThreshold();
+        return spillThreshold != null && spillThreshold >= 0 ? spillThreshold : 16 * 1024 * 1024;
+    }
+
+    /**
+     * @return directory keeping logs spilled to disk. By default, it is the temp dir, since the files are deleted on exit
+     */
+    public static String getLogsSpillDir() {
+        String spillDir = configuration.getLogs().getSpillDir();
+        if (spillDir != null && !spillDir.trim().isEmpty()) {
+            return spillDir;
+        }
+        return System.getProperty("java.io.tmpdir");
+    }
+
+    /**
+     * @return max number of log lines per second of a single test, or 0 if logs are not rate limited
+     */
+    public static int getLogsRateLimit() {
+        Integer rateLimit = configuration.getLogs().getRateLimit();
+        return rateLimit != null && rateLimit > 0 ? rateLimit : 0;
+    }
+
+    /**
+     * @return max number of log lines a single test may produce at once before the rate limit applies
+     */
+    public static int getLogsRateLimitBurst() {
+        Integer rateLimitBurst = configuration.getLogs().getRateLimitBurst();
+        return rateLimitBurst != null && rateLimitBurst > 0 ? rateLimitBurst : getLogsRateLimit();
+    }
+
+    /**
+     * @return number of log lines of a single test after which the lines below the keep level are sampled,
+     * or 0 if logs are not sampled
+     */
+    public static int getLogsSamplingThreshold() {
+        Integer samplingThreshold = configuration.getLogs().getSamplingThreshold();
+        return samplingThreshold != null && samplingThreshold > 0 ? samplingThreshold : 0;
+    }
+
+    /**
+     * @return N, so that only one of every N sampled log lines is kept
+     */
+    public static int getLogsSamplingRate() {
+        Integer samplingRate = configuration.getLogs().getSamplingRate();
+        return samplingRate != null && samplingRate > 0 ? samplingRate : 10;
+    }
+
+    /**
+     * @return min level of log lines which are never rate limited nor sampled
+     */
+    public static String getLogsKeepLevel() {
+        String keepLevel = configuration.getLogs().getKeepLevel();
+        return keepLevel != null && !keepLevel.trim().isEmpty() ? keepLevel.trim() : "WARN";
+    }
+
+    /**
+     * @return true if identical consecutive log lines of a test should be sent as a single log. Disabled by default,
+     * since it changes text of the collapsed lines
+     */
+    public static boolean isLogsCollapseDuplicates() {
+        Boolean collapseDuplicates = configuration.getLogs().getCollapseDuplicates();
+        return collapseDuplicates != null && collapseDuplicates;
+    }
+
+    /**
+     * @return ALL if all the logs should be sent, or FAILURES if logs of a test are held until it finishes,
+     * and only a tail of the logs is sent for passed tests
+     */
+    public static String getLogsCaptureMode() {
+        String captureMode = configuration.getLogs().getCaptureMode();
+        return captureMode != null && !captureMode.trim().isEmpty() ? captureMode.trim() : "ALL";
+    }
+
+    /**
+     * @return max number of log lines held per test in the FAILURES capture mode
+     */
+    public static int getLogsCaptureMaxLines() {
+        Integer captureMaxLines = configuration.getLogs().getCaptureMaxLines();
+        return captureMaxLines != null && captureMaxLines > 0 ? captureMaxLines : 10_000;
+    }
+
+    /**
+     * @return number of last log lines sent for a passed test in the FAILURES capture mode, or 0 if none are sent
+     */
+    public static int getLogsPassedTailLines() {
+        Integer passedTailLines = configuration.getLogs().getPassedTailLines();
+        return passedTailLines != null && passedTailLines >= 0 ? passedTailLines : 100;
+    }
+
+    /**
+     * @return true if lines printed by tests to the standard output and error streams should be sent as logs
+     */
+    public static boolean isLogsCaptureStdStreams() {
+        Boolean captureStdStreams = configuration.getLogs().getCaptureStdStreams();
+        return captureStdStreams != null && captureStdStreams;
+    }
+
 }
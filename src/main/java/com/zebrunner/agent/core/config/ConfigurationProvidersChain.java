@@ -40,6 +40,8 @@ class ConfigurationProvidersChain {
                                                               .server(new ReportingConfiguration.ServerConfiguration())
                                                               .milestone(new ReportingConfiguration.MilestoneConfiguration())
                                                               .notification(new ReportingConfiguration.NotificationConfiguration())
+                                                              .client(new ReportingConfiguration.ClientConfiguration())
+                                                              .logs(new ReportingConfiguration.LogsConfiguration())
                                                               .build();
         assembleConfiguration(config);
         if (areMandatoryArgsSet(config)) {
@@ -79,6 +81,8 @@ class ConfigurationProvidersChain {
         normalizeRunConfiguration(config);
         normalizeMilestoneConfiguration(config);
         normalizeNotificationConfiguration(config);
+        normalizeClientConfiguration(config);
+        normalizeLogsConfiguration(config);
     }
 
     private static void normalizeServerConfiguration(ReportingConfiguration config) {
@@ -184,6 +188,18 @@ class ConfigurationProvidersChain {
         }
     }
 
+    private static void normalizeClientConfiguration(ReportingConfiguration config) {
+        if (config.getClient() == null) {
+            config.setClient(new ReportingConfiguration.ClientConfiguration());
+        }
+    }
+
+    private static void normalizeLogsConfiguration(ReportingConfiguration config) {
+        if (config.getLogs() == null) {
+            config.setLogs(new ReportingConfiguration.LogsConfiguration());
+        }
+    }
+
     /**
      * Sets values coming from provided configuration that were not set previously by providers with higher priority
      *
@@ -263,6 +279,126 @@ class ConfigurationProvidersChain {
             milestone.setName(providedConfig.getMilestone().getName());
         }
 
+        ReportingConfiguration.ClientConfiguration client = config.getClient();
+        if (client.getMaxConnections() == null) {
+            client.setMaxConnections(providedConfig.getClient().getMaxConnections());
+        }
+        if (client.getMaxConnectionsPerRoute() == null) {
+            client.setMaxConnectionsPerRoute(providedConfig.getClient().getMaxConnectionsPerRoute());
+        }
+        if (client.getIdleConnectionTimeout() == null) {
+            client.setIdleConnectionTimeout(providedConfig.getClient().getIdleConnectionTimeout());
+        }
+        if (client.getAsyncRegistration() == null) {
+            client.setAsyncRegistration(providedConfig.getClient().getAsyncRegistration());
+        }
+        if (client.getSpoolEnabled() == null) {
+            client.setSpoolEnabled(providedConfig.getClient().getSpoolEnabled());
+        }
+        if (client.getSpoolDir() == null) {
+            client.setSpoolDir(providedConfig.getClient().getSpoolDir());
+        }
+        if (client.getGzipEnabled() == null) {
+            client.setGzipEnabled(providedConfig.getClient().getGzipEnabled());
+        }
+        if (client.getGzipThreshold() == null) {
+            client.setGzipThreshold(providedConfig.getClient().getGzipThreshold());
+        }
+        if (client.getMetricsReportEnabled() == null) {
+            client.setMetricsReportEnabled(providedConfig.getClient().getMetricsReportEnabled());
+        }
+        if (client.getTransport() == null) {
+            client.setTransport(providedConfig.getClient().getTransport());
+        }
+        if (client.getConcurrencyLimitEnabled() == null) {
+            client.setConcurrencyLimitEnabled(providedConfig.getClient().getConcurrencyLimitEnabled());
+        }
+        if (client.getMaxConcurrency() == null) {
+            client.setMaxConcurrency(providedConfig.getClient().getMaxConcurrency());
+        }
+        if (client.getScreenshotUploadThreads() == null) {
+            client.setScreenshotUploadThreads(providedConfig.getClient().getScreenshotUploadThreads());
+        }
+        if (client.getScreenshotQueueBytes() == null) {
+            client.setScreenshotQueueBytes(providedConfig.getClient().getScreenshotQueueBytes());
+        }
+        if (client.getScreenshotMaxWait() == null) {
+            client.setScreenshotMaxWait(providedConfig.getClient().getScreenshotMaxWait());
+        }
+        if (client.getScreenshotFlushTimeout() == null) {
+            client.setScreenshotFlushTimeout(providedConfig.getClient().getScreenshotFlushTimeout());
+        }
+
+        ReportingConfiguration.LogsConfiguration logs = config.getLogs();
+        if (logs.getBufferCapacity() == null) {
+            logs.setBufferCapacity(providedConfig.getLogs().getBufferCapacity());
+        }
+        if (logs.getOverflowPolicy() == null) {
+            logs.setOverflowPolicy(providedConfig.getLogs().getOverflowPolicy());
+        }
+        if (logs.getFlushMaxEvents() == null) {
+            logs.setFlushMaxEvents(providedConfig.getLogs().getFlushMaxEvents());
+        }
+        if (logs.getFlushMaxBytes() == null) {
+            logs.setFlushMaxBytes(providedConfig.getLogs().getFlushMaxBytes());
+        }
+        if (logs.getFlushMaxAge() == null) {
+            logs.setFlushMaxAge(providedConfig.getLogs().getFlushMaxAge());
+        }
+        if (logs.getMaxRequestBytes() == null) {
+            logs.setMaxRequestBytes(providedConfig.getLogs().getMaxRequestBytes());
+        }
+        if (logs.getShutdownTimeout() == null) {
+            logs.setShutdownTimeout(providedConfig.getLogs().getShutdownTimeout());
+        }
+        if (logs.getBufferShards() == null) {
+            logs.setBufferShards(providedConfig.getLogs().getBufferShards());
+        }
+        if (logs.getOffHeapEnabled() == null) {
+            logs.setOffHeapEnabled(providedConfig.getLogs().getOffHeapEnabled());
+        }
+        if (logs.getSlabSize() == null) {
+            logs.setSlabSize(providedConfig.getLogs().getSlabSize());
+        }
+        if (logs.getMaxSlabs() == null) {
+            logs.setMaxSlabs(providedConfig.getLogs().getMaxSlabs());
+        }
+        if (logs.getSpillThreshold() == null) {
+            logs.setSpillThreshold(providedConfig.getLogs().getSpillThreshold());
+        }
+        if (logs.getSpillDir() == null) {
+            logs.setSpillDir(providedConfig.getLogs().getSpillDir());
+        }
+        if (logs.getRateLimit() == null) {
+            logs.setRateLimit(providedConfig.getLogs().getRateLimit());
+        }
+        if (logs.getRateLimitBurst() == null) {
+            logs.setRateLimitBurst(providedConfig.getLogs().getRateLimitBurst());
+        }
+        if (logs.getSamplingThreshold() == null) {
+            logs.setSamplingThreshold(providedConfig.getLogs().getSamplingThreshold());
+        }
+        if (logs.getSamplingRate() == null) {
+            logs.setSamplingRate(providedConfig.getLogs().getSamplingRate());
+        }
+        if (logs.getKeepLevel() == null) {
+            logs.setKeepLevel(providedConfig.getLogs().getKeepLevel());
+        }
+        if (logs.getCollapseDuplicates() == null) {
+            logs.setCollapseDuplicates(providedConfig.getLogs().getCollapseDuplicates());
+        }
+        if (logs.getCaptureMode() == null) {
+            logs.setCaptureMode(providedConfig.getLogs().getCaptureMode());
+        }
+        if (logs.getCaptureMaxLines() == null) {
+            logs.setCaptureMaxLines(providedConfig.getLogs().getCaptureMaxLines());
+        }
+        if (logs.getPassedTailLines() == null) {
+            logs.setPassedTailLines(providedConfig.getLogs().getPassedTailLines());
+        }
+        if (logs.getCaptureStdStreams() == null) {
+            logs.setCaptureStdStreams(providedConfig.getLogs().getCaptureStdStreams());
+        }
     }
 
     // project-key is not considered as a mandatory property
@@ -297,13 +433,69 @@ class ConfigurationProvidersChain {
         String msTeamsChannels = config.getNotification().getMsTeamsChannels();
         String emails = config.getNotification().getEmails();
 
+        Integer clientMaxConnections = config.getClient().getMaxConnections();
+        Integer clientMaxConnectionsPerRoute = config.getClient().getMaxConnectionsPerRoute();
+        Long clientIdleConnectionTimeout = config.getClient().getIdleConnectionTimeout();
+        Boolean clientAsyncRegistration = config.getClient().getAsyncRegistration();
+        Boolean clientSpoolEnabled = config.getClient().getSpoolEnabled();
+        String clientSpoolDir = config.getClient().getSpoolDir();
+        Boolean clientGzipEnabled = config.getClient().getGzipEnabled();
+        Integer clientGzipThreshold = config.getClient().getGzipThreshold();
+        Boolean clientMetricsReportEnabled = config.getClient().getMetricsReportEnabled();
+        String clientTransport = config.getClient().getTransport();
+        Boolean clientConcurrencyLimitEnabled = config.getClient().getConcurrencyLimitEnabled();
+        Integer clientMaxConcurrency = config.getClient().getMaxConcurrency();
+        Integer clientScreenshotUploadThreads = config.getClient().getScreenshotUploadThreads();
+        Integer clientScreenshotQueueBytes = config.getClient().getScreenshotQueueBytes();
+        Long clientScreenshotMaxWait = config.getClient().getScreenshotMaxWait();
+        Long clientScreenshotFlushTimeout = config.getClient().getScreenshotFlushTimeout();
+
+        Integer logsBufferCapacity = config.getLogs().getBufferCapacity();
+        String logsOverflowPolicy = config.getLogs().getOverflowPolicy();
+        Integer logsFlushMaxEvents = config.getLogs().getFlushMaxEvents();
+        Integer logsFlushMaxBytes = config.getLogs().getFlushMaxBytes();
+        Long logsFlushMaxAge = config.getLogs().getFlushMaxAge();
+        Integer logsMaxRequestBytes = config.getLogs().getMaxRequestBytes();
+        Long logsShutdownTimeout = config.getLogs().getShutdownTimeout();
+        Integer logsBufferShards = config.getLogs().getBufferShards();
+        Boolean logsOffHeapEnabled = config.getLogs().getOffHeapEnabled();
+        Integer logsSlabSize = config.getLogs().getSlabSize();
+        Integer logsMaxSlabs = config.getLogs().getMaxSlabs();
+        Integer logsSpillThreshold = config.getLogs().getSpillThreshold();
+        String logsSpillDir = config.getLogs().getSpillDir();
+        Integer logsRateLimit = config.getLogs().getRateLimit();
+        Integer logsRateLimitBurst = config.getLogs().getRateLimitBurst();
+        Integer logsSamplingThreshold = config.getLogs().getSamplingThreshold();
+        Integer logsSamplingRate = config.getLogs().getSamplingRate();
+        String logsKeepLevel = config.getLogs().getKeepLevel();
+        Boolean logsCollapseDuplicates = config.getLogs().getCollapseDuplicates();
+        String logsCaptureMode = config.getLogs().getCaptureMode();
+        Integer logsCaptureMaxLines = config.getLogs().getCaptureMaxLines();
+        Integer logsPassedTailLines = config.getLogs().getPassedTailLines();
+        Boolean logsCaptureStdStreams = config.getLogs().getCaptureStdStreams();
+
         return enabled != null
                 && projectKey != null
                 && hostname != null && accessToken != null
                 && displayName != null && build != null && environment != null && context != null
                 && retryKnownIssues != null && substituteRemoteWebDrivers != null && treatSkipsAsFailures != null
                 && testCaseStatusOnPass != null && testCaseStatusOnFail != null && testCaseStatusOnSkip != null
-                && notifyOnEachFailure != null && slackChannels != null && msTeamsChannels != null && emails != null;
+                && notifyOnEachFailure != null && slackChannels != null && msTeamsChannels != null && emails != null
+                && clientMaxConnections != null && clientMaxConnectionsPerRoute != null && clientIdleConnectionTimeout != null
+                && clientAsyncRegistration != null && clientSpoolEnabled != null && clientSpoolDir != null
+                && clientGzipEnabled != null && clientGzipThreshold != null && clientMetricsReportEnabled != null && clientTransport != null
+                && clientConcurrencyLimitEnabled != null && clientMaxConcurrency != null
+                && clientScreenshotUploadThreads != null && clientScreenshotQueueBytes != null
+                && clientScreenshotMaxWait != null && clientScreenshotFlushTimeout != null
+                && logsBufferCapacity != null && logsOverflowPolicy != null
+                && logsFlushMaxEvents != null && logsFlushMaxBytes != null && logsFlushMaxAge != null
+                && logsMaxRequestBytes != null && logsShutdownTimeout != null && logsBufferShards != null
+                && logsOffHeapEnabled != null && logsSlabSize != null && logsMaxSlabs != null
+                && logsSpillThreshold != null && logsSpillDir != null
+                && logsRateLimit != null && logsRateLimitBurst != null
+                && logsSamplingThreshold != null && logsSamplingRate != null && logsKeepLevel != null
+                && logsCollapseDuplicates != null && logsCaptureMode != null && logsCaptureMaxLines != null && logsPassedTailLines != null
+                && logsCaptureStdStreams != null;
     }
 
 }
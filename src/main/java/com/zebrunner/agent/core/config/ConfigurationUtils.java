@@ -14,6 +14,14 @@ public class ConfigurationUtils {
         }
     }
 
+    public static Integer parseInteger(String property) {
+        try {
+            return Integer.valueOf(property);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     public static Boolean parseBoolean(String property) {
         if (property == null || !(property.equalsIgnoreCase("true") || property.equalsIgnoreCase("false"))) {
             return null;
@@ -18,6 +18,8 @@ public class ReportingConfiguration {
     private RunConfiguration run;
     private MilestoneConfiguration milestone;
     private NotificationConfiguration notification;
+    private ClientConfiguration client;
+    private LogsConfiguration logs;
 
     public boolean isReportingEnabled() {
         return reportingEnabled != null && reportingEnabled;
@@ -85,4 +87,63 @@ public class ReportingConfiguration {
 
     }
 
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ClientConfiguration {
+
+        private Integer maxConnections;
+        private Integer maxConnectionsPerRoute;
+        private Long idleConnectionTimeout;
+        private Boolean asyncRegistration;
+        private Boolean spoolEnabled;
+        private String spoolDir;
+        private Boolean gzipEnabled;
+        private Integer gzipThreshold;
+        private Boolean metricsReportEnabled;
+        private String transport;
+        private Boolean concurrencyLimitEnabled;
+        private Integer maxConcurrency;
+        private Integer screenshotUploadThreads;
+        private Integer screenshotQueueBytes;
+        private Long screenshotMaxWait;
+        private Long screenshotFlushTimeout;
+
+    }
+
+    @Getter
+    @Setter
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LogsConfiguration {
+
+        private Integer bufferCapacity;
+        private String overflowPolicy;
+        private Integer flushMaxEvents;
+        private Integer flushMaxBytes;
+        private Long flushMaxAge;
+        private Integer maxRequestBytes;
+        private Long shutdownTimeout;
+        private Integer bufferShards;
+        private Boolean offHeapEnabled;
+        private Integer slabSize;
+        private Integer maxSlabs;
+        private Integer spillThreshold;
+        private String spillDir;
+        private Integer rateLimit;
+        private Integer rateLimitBurst;
+        private Integer samplingThreshold;
+        private Integer samplingRate;
+        private String keepLevel;
+        private Boolean collapseDuplicates;
+        private String captureMode;
+        private Integer captureMaxLines;
+        private Integer passedTailLines;
+        private Boolean captureStdStreams;
+
+    }
+
 }
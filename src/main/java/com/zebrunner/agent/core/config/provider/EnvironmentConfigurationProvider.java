@@ -34,6 +34,47 @@ public class EnvironmentConfigurationProvider implements ConfigurationProvider {
     private static final String MILESTONE_ID_VARIABLE = "REPORTING_MILESTONE_ID";
     private static final String MILESTONE_NAME_VARIABLE = "REPORTING_MILESTONE_NAME";
 
+    private static final String CLIENT_MAX_CONNECTIONS_VARIABLE = "REPORTING_CLIENT_MAX_CONNECTIONS";
+    private static final String CLIENT_MAX_CONNECTIONS_PER_ROUTE_VARIABLE = "REPORTING_CLIENT_MAX_CONNECTIONS_PER_ROUTE";
+    private static final String CLIENT_IDLE_CONNECTION_TIMEOUT_VARIABLE = "REPORTING_CLIENT_IDLE_CONNECTION_TIMEOUT";
+    private static final String CLIENT_ASYNC_REGISTRATION_VARIABLE = "REPORTING_CLIENT_ASYNC_REGISTRATION";
+    private static final String CLIENT_SPOOL_ENABLED_VARIABLE = "REPORTING_CLIENT_SPOOL_ENABLED";
+    private static final String CLIENT_SPOOL_DIR_VARIABLE = "REPORTING_CLIENT_SPOOL_DIR";
+    private static final String CLIENT_GZIP_ENABLED_VARIABLE = "REPORTING_CLIENT_GZIP_ENABLED";
+    private static final String CLIENT_GZIP_THRESHOLD_VARIABLE = "REPORTING_CLIENT_GZIP_THRESHOLD";
+    private static final String CLIENT_METRICS_REPORT_ENABLED_VARIABLE = "REPORTING_CLIENT_METRICS_REPORT_ENABLED";
+    private static final String CLIENT_TRANSPORT_VARIABLE = "REPORTING_CLIENT_TRANSPORT";
+    private static final String CLIENT_CONCURRENCY_LIMIT_ENABLED_VARIABLE = "REPORTING_CLIENT_CONCURRENCY_LIMIT_ENABLED";
+    private static final String CLIENT_MAX_CONCURRENCY_VARIABLE = "REPORTING_CLIENT_MAX_CONCURRENCY";
+    private static final String CLIENT_SCREENSHOT_UPLOAD_THREADS_VARIABLE = "REPORTING_CLIENT_SCREENSHOT_UPLOAD_THREADS";
+    private static final String CLIENT_SCREENSHOT_QUEUE_BYTES_VARIABLE = "REPORTING_CLIENT_SCREENSHOT_QUEUE_BYTES";
+    private static final String CLIENT_SCREENSHOT_MAX_WAIT_VARIABLE = "REPORTING_CLIENT_SCREENSHOT_MAX_WAIT";
+    private static final String CLIENT_SCREENSHOT_FLUSH_TIMEOUT_VARIABLE = "REPORTING_CLIENT_SCREENSHOT_FLUSH_TIMEOUT";
+
+    private static final String LOGS_BUFFER_CAPACITY_VARIABLE = "REPORTING_LOGS_BUFFER_CAPACITY";
+    private static final String LOGS_OVERFLOW_POLICY_VARIABLE = "REPORTING_LOGS_OVERFLOW_POLICY";
+    private static final String LOGS_FLUSH_MAX_EVENTS_VARIABLE = "REPORTING_LOGS_FLUSH_MAX_EVENTS";
+    private static final String LOGS_FLUSH_MAX_BYTES_VARIABLE = "REPORTING_LOGS_FLUSH_MAX_BYTES";
+    private static final String LOGS_FLUSH_MAX_AGE_VARIABLE = "REPORTING_LOGS_FLUSH_MAX_AGE";
+    private static final String LOGS_MAX_REQUEST_BYTES_VARIABLE = "REPORTING_LOGS_MAX_REQUEST_BYTES";
+    private static final String LOGS_SHUTDOWN_TIMEOUT_VARIABLE = "REPORTING_LOGS_SHUTDOWN_TIMEOUT";
+    private static final String LOGS_BUFFER_SHARDS_VARIABLE = "REPORTING_LOGS_BUFFER_SHARDS";
+    private static final String LOGS_OFF_HEAP_ENABLED_VARIABLE = "REPORTING_LOGS_OFF_HEAP_ENABLED";
+    private static final String LOGS_SLAB_SIZE_VARIABLE = "REPORTING_LOGS_SLAB_SIZE";
+    private static final String LOGS_MAX_SLABS_VARIABLE = "REPORTING_LOGS_MAX_SLABS";
+    private static final String LOGS_SPILL_THRESHOLD_VARIABLE = "REPORTING_LOGS_SPILL_THRESHOLD";
+    private static final String LOGS_SPILL_DIR_VARIABLE = "REPORTING_LOGS_SPILL_DIR";
+    private static final String LOGS_RATE_LIMIT_VARIABLE = "REPORTING_LOGS_RATE_LIMIT";
+    private static final String LOGS_RATE_LIMIT_BURST_VARIABLE = "REPORTING_LOGS_RATE_LIMIT_BURST";
+    private static final String LOGS_SAMPLING_THRESHOLD_VARIABLE = "REPORTING_LOGS_SAMPLING_THRESHOLD";
+    private static final String LOGS_SAMPLING_RATE_VARIABLE = "REPORTING_LOGS_SAMPLING_RATE";
+    private static final String LOGS_KEEP_LEVEL_VARIABLE = "REPORTING_LOGS_KEEP_LEVEL";
+    private static final String LOGS_COLLAPSE_DUPLICATES_VARIABLE = "REPORTING_LOGS_COLLAPSE_DUPLICATES";
+    private static final String LOGS_CAPTURE_MODE_VARIABLE = "REPORTING_LOGS_CAPTURE_MODE";
+    private static final String LOGS_CAPTURE_MAX_LINES_VARIABLE = "REPORTING_LOGS_CAPTURE_MAX_LINES";
+    private static final String LOGS_PASSED_TAIL_LINES_VARIABLE = "REPORTING_LOGS_PASSED_TAIL_LINES";
+    private static final String LOGS_CAPTURE_STD_STREAMS_VARIABLE = "REPORTING_LOGS_CAPTURE_STD_STREAMS";
+
     @Override
     public ReportingConfiguration getConfiguration() {
         String enabled = System.getenv(ENABLED_VARIABLE);
@@ -61,6 +102,47 @@ public class EnvironmentConfigurationProvider implements ConfigurationProvider {
         Long milestoneId = ConfigurationUtils.parseLong(System.getenv(MILESTONE_ID_VARIABLE));
         String milestoneName = System.getenv(MILESTONE_NAME_VARIABLE);
 
+        Integer clientMaxConnections = ConfigurationUtils.parseInteger(System.getenv(CLIENT_MAX_CONNECTIONS_VARIABLE));
+        Integer clientMaxConnectionsPerRoute = ConfigurationUtils.parseInteger(System.getenv(CLIENT_MAX_CONNECTIONS_PER_ROUTE_VARIABLE));
+        Long clientIdleConnectionTimeout = ConfigurationUtils.parseLong(System.getenv(CLIENT_IDLE_CONNECTION_TIMEOUT_VARIABLE));
+        Boolean clientAsyncRegistration = ConfigurationUtils.parseBoolean(System.getenv(CLIENT_ASYNC_REGISTRATION_VARIABLE));
+        Boolean clientSpoolEnabled = ConfigurationUtils.parseBoolean(System.getenv(CLIENT_SPOOL_ENABLED_VARIABLE));
+        String clientSpoolDir = System.getenv(CLIENT_SPOOL_DIR_VARIABLE);
+        Boolean clientGzipEnabled = ConfigurationUtils.parseBoolean(System.getenv(CLIENT_GZIP_ENABLED_VARIABLE));
+        Integer clientGzipThreshold = ConfigurationUtils.parseInteger(System.getenv(CLIENT_GZIP_THRESHOLD_VARIABLE));
+        Boolean clientMetricsReportEnabled = ConfigurationUtils.parseBoolean(System.getenv(CLIENT_METRICS_REPORT_ENABLED_VARIABLE));
+        String clientTransport = System.getenv(CLIENT_TRANSPORT_VARIABLE);
+        Boolean clientConcurrencyLimitEnabled = ConfigurationUtils.parseBoolean(System.getenv(CLIENT_CONCURRENCY_LIMIT_ENABLED_VARIABLE));
+        Integer clientMaxConcurrency = ConfigurationUtils.parseInteger(System.getenv(CLIENT_MAX_CONCURRENCY_VARIABLE));
+        Integer clientScreenshotUploadThreads = ConfigurationUtils.parseInteger(System.getenv(CLIENT_SCREENSHOT_UPLOAD_THREADS_VARIABLE));
+        Integer clientScreenshotQueueBytes = ConfigurationUtils.parseInteger(System.getenv(CLIENT_SCREENSHOT_QUEUE_BYTES_VARIABLE));
+        Long clientScreenshotMaxWait = ConfigurationUtils.parseLong(System.getenv(CLIENT_SCREENSHOT_MAX_WAIT_VARIABLE));
+        Long clientScreenshotFlushTimeout = ConfigurationUtils.parseLong(System.getenv(CLIENT_SCREENSHOT_FLUSH_TIMEOUT_VARIABLE));
+
+        Integer logsBufferCapacity = ConfigurationUtils.parseInteger(System.getenv(LOGS_BUFFER_CAPACITY_VARIABLE));
+        String logsOverflowPolicy = System.getenv(LOGS_OVERFLOW_POLICY_VARIABLE);
+        Integer logsFlushMaxEvents = ConfigurationUtils.parseInteger(System.getenv(LOGS_FLUSH_MAX_EVENTS_VARIABLE));
+        Integer logsFlushMaxBytes = ConfigurationUtils.parseInteger(System.getenv(LOGS_FLUSH_MAX_BYTES_VARIABLE));
+        Long logsFlushMaxAge = ConfigurationUtils.parseLong(System.getenv(LOGS_FLUSH_MAX_AGE_VARIABLE));
+        Integer logsMaxRequestBytes = ConfigurationUtils.parseInteger(System.getenv(LOGS_MAX_REQUEST_BYTES_VARIABLE));
+        Long logsShutdownTimeout = ConfigurationUtils.parseLong(System.getenv(LOGS_SHUTDOWN_TIMEOUT_VARIABLE));
+        Integer logsBufferShards = ConfigurationUtils.parseInteger(System.getenv(LOGS_BUFFER_SHARDS_VARIABLE));
+        Boolean logsOffHeapEnabled = ConfigurationUtils.parseBoolean(System.getenv(LOGS_OFF_HEAP_ENABLED_VARIABLE));
+        Integer logsSlabSize = ConfigurationUtils.parseInteger(System.getenv(LOGS_SLAB_SIZE_VARIABLE));
+        Integer logsMaxSlabs = ConfigurationUtils.parseInteger(System.getenv(LOGS_MAX_SLABS_VARIABLE));
+        Integer logsSpillThreshold = ConfigurationUtils.parseInteger(System.getenv(LOGS_SPILL_THRESHOLD_VARIABLE));
+        String logsSpillDir = System.getenv(LOGS_SPILL_DIR_VARIABLE);
+        Integer logsRateLimit = ConfigurationUtils.parseInteger(System.getenv(LOGS_RATE_LIMIT_VARIABLE));
+        Integer logsRateLimitBurst = ConfigurationUtils.parseInteger(System.getenv(LOGS_RATE_LIMIT_BURST_VARIABLE));
+        Integer logsSamplingThreshold = ConfigurationUtils.parseInteger(System.getenv(LOGS_SAMPLING_THRESHOLD_VARIABLE));
+        Integer logsSamplingRate = ConfigurationUtils.parseInteger(System.getenv(LOGS_SAMPLING_RATE_VARIABLE));
+        String logsKeepLevel = System.getenv(LOGS_KEEP_LEVEL_VARIABLE);
+        Boolean logsCollapseDuplicates = ConfigurationUtils.parseBoolean(System.getenv(LOGS_COLLAPSE_DUPLICATES_VARIABLE));
+        String logsCaptureMode = System.getenv(LOGS_CAPTURE_MODE_VARIABLE);
+        Integer logsCaptureMaxLines = ConfigurationUtils.parseInteger(System.getenv(LOGS_CAPTURE_MAX_LINES_VARIABLE));
+        Integer logsPassedTailLines = ConfigurationUtils.parseInteger(System.getenv(LOGS_PASSED_TAIL_LINES_VARIABLE));
+        Boolean logsCaptureStdStreams = ConfigurationUtils.parseBoolean(System.getenv(LOGS_CAPTURE_STD_STREAMS_VARIABLE));
+
         if (enabled != null && !"true".equalsIgnoreCase(enabled) && !"false".equalsIgnoreCase(enabled)) {
             throw new TestAgentException("Environment configuration is malformed");
         }
@@ -84,6 +166,49 @@ public class EnvironmentConfigurationProvider implements ConfigurationProvider {
                                      .notification(new ReportingConfiguration.NotificationConfiguration(
                                              notifyOnEachFailure, slackChannels, msTeamsChannels, emails
                                      ))
+                                     .client(ReportingConfiguration.ClientConfiguration.builder()
+                                             .maxConnections(clientMaxConnections)
+                                             .maxConnectionsPerRoute(clientMaxConnectionsPerRoute)
+                                             .idleConnectionTimeout(clientIdleConnectionTimeout)
+                                             .asyncRegistration(clientAsyncRegistration)
+                                             .spoolEnabled(clientSpoolEnabled)
+                                             .spoolDir(clientSpoolDir)
+                                             .gzipEnabled(clientGzipEnabled)
+                                             .gzipThreshold(clientGzipThreshold)
+                                             .metricsReportEnabled(clientMetricsReportEnabled)
+                                             .transport(clientTransport)
+                                             .concurrencyLimitEnabled(clientConcurrencyLimitEnabled)
+                                             .maxConcurrency(clientMaxConcurrency)
+                                             .screenshotUploadThreads(clientScreenshotUploadThreads)
+                                             .screenshotQueueBytes(clientScreenshotQueueBytes)
+                                             .screenshotMaxWait(clientScreenshotMaxWait)
+                                             .screenshotFlushTimeout(clientScreenshotFlushTimeout)
+                                             .build())
+                                     .logs(ReportingConfiguration.LogsConfiguration.builder()
+                                             .bufferCapacity(logsBufferCapacity)
+                                             .overflowPolicy(logsOverflowPolicy)
+                                             .flushMaxEvents(logsFlushMaxEvents)
+                                             .flushMaxBytes(logsFlushMaxBytes)
+                                             .flushMaxAge(logsFlushMaxAge)
+                                             .maxRequestBytes(logsMaxRequestBytes)
+                                             .shutdownTimeout(logsShutdownTimeout)
+                                             .bufferShards(logsBufferShards)
+                                             .offHeapEnabled(logsOffHeapEnabled)
+                                             .slabSize(logsSlabSize)
+                                             .maxSlabs(logsMaxSlabs)
+                                             .spillThreshold(logsSpillThreshold)
+                                             .spillDir(logsSpillDir)
+                                             .rateLimit(logsRateLimit)
+                                             .rateLimitBurst(logsRateLimitBurst)
+                                             .samplingThreshold(logsSamplingThreshold)
+                                             .samplingRate(logsSamplingRate)
+                                             .keepLevel(logsKeepLevel)
+                                             .collapseDuplicates(logsCollapseDuplicates)
+                                             .captureMode(logsCaptureMode)
+                                             .captureMaxLines(logsCaptureMaxLines)
+                                             .passedTailLines(logsPassedTailLines)
+                                             .captureStdStreams(logsCaptureStdStreams)
+                                             .build())
                                      .build();
     }
 
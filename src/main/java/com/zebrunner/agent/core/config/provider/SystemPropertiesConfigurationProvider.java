@@ -32,6 +32,47 @@ public class SystemPropertiesConfigurationProvider implements ConfigurationProvi
     private final static String MILESTONE_ID_PROPERTY = "reporting.milestone.id";
     private final static String MILESTONE_NAME_PROPERTY = "reporting.milestone.name";
 
+    private final static String CLIENT_MAX_CONNECTIONS_PROPERTY = "reporting.client.max-connections";
+    private final static String CLIENT_MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "reporting.client.max-connections-per-route";
+    private final static String CLIENT_IDLE_CONNECTION_TIMEOUT_PROPERTY = "reporting.client.idle-connection-timeout";
+    private final static String CLIENT_ASYNC_REGISTRATION_PROPERTY = "reporting.client.async-registration";
+    private final static String CLIENT_SPOOL_ENABLED_PROPERTY = "reporting.client.spool-enabled";
+    private final static String CLIENT_SPOOL_DIR_PROPERTY = "reporting.client.spool-dir";
+    private final static String CLIENT_GZIP_ENABLED_PROPERTY = "reporting.client.gzip-enabled";
+    private final static String CLIENT_GZIP_THRESHOLD_PROPERTY = "reporting.client.gzip-threshold";
+    private final static String CLIENT_METRICS_REPORT_ENABLED_PROPERTY = "reporting.client.metrics-report-enabled";
+    private final static String CLIENT_TRANSPORT_PROPERTY = "reporting.client.transport";
+    private final static String CLIENT_CONCURRENCY_LIMIT_ENABLED_PROPERTY = "reporting.client.concurrency-limit-enabled";
+    private final static String CLIENT_MAX_CONCURRENCY_PROPERTY = "reporting.client.max-concurrency";
+    private final static String CLIENT_SCREENSHOT_UPLOAD_THREADS_PROPERTY = "reporting.client.screenshot-upload-threads";
+    private final static String CLIENT_SCREENSHOT_QUEUE_BYTES_PROPERTY = "reporting.client.screenshot-queue-bytes";
+    private final static String CLIENT_SCREENSHOT_MAX_WAIT_PROPERTY = "reporting.client.screenshot-max-wait";
+    private final static String CLIENT_SCREENSHOT_FLUSH_TIMEOUT_PROPERTY = "reporting.client.screenshot-flush-timeout";
+
+    private final static String LOGS_BUFFER_CAPACITY_PROPERTY = "reporting.logs.buffer-capacity";
+    private final static String LOGS_OVERFLOW_POLICY_PROPERTY = "reporting.logs.overflow-policy";
+    private final static String LOGS_FLUSH_MAX_EVENTS_PROPERTY = "reporting.logs.flush-max-events";
+    private final static String LOGS_FLUSH_MAX_BYTES_PROPERTY = "reporting.logs.flush-max-bytes";
+    private final static String LOGS_FLUSH_MAX_AGE_PROPERTY = "reporting.logs.flush-max-age";
+    private final static String LOGS_MAX_REQUEST_BYTES_PROPERTY = "reporting.logs.max-request-bytes";
+    private final static String LOGS_SHUTDOWN_TIMEOUT_PROPERTY = "reporting.logs.shutdown-timeout";
+    private final static String LOGS_BUFFER_SHARDS_PROPERTY = "reporting.logs.buffer-shards";
+    private final static String LOGS_OFF_HEAP_ENABLED_PROPERTY = "reporting.logs.off-heap-enabled";
+    private final static String LOGS_SLAB_SIZE_PROPERTY = "reporting.logs.slab-size";
+    private final static String LOGS_MAX_SLABS_PROPERTY = "reporting.logs.max-slabs";
+    private final static String LOGS_SPILL_THRESHOLD_PROPERTY = "reporting.logs.spill-threshold";
+    private final static String LOGS_SPILL_DIR_PROPERTY = "reporting.logs.spill-dir";
+    private final static String LOGS_RATE_LIMIT_PROPERTY = "reporting.logs.rate-limit";
+    private final static String LOGS_RATE_LIMIT_BURST_PROPERTY = "reporting.logs.rate-limit-burst";
+    private final static String LOGS_SAMPLING_THRESHOLD_PROPERTY = "reporting.logs.sampling-threshold";
+    private final static String LOGS_SAMPLING_RATE_PROPERTY = "reporting.logs.sampling-rate";
+    private final static String LOGS_KEEP_LEVEL_PROPERTY = "reporting.logs.keep-level";
+    private final static String LOGS_COLLAPSE_DUPLICATES_PROPERTY = "reporting.logs.collapse-duplicates";
+    private final static String LOGS_CAPTURE_MODE_PROPERTY = "reporting.logs.capture-mode";
+    private final static String LOGS_CAPTURE_MAX_LINES_PROPERTY = "reporting.logs.capture-max-lines";
+    private final static String LOGS_PASSED_TAIL_LINES_PROPERTY = "reporting.logs.passed-tail-lines";
+    private final static String LOGS_CAPTURE_STD_STREAMS_PROPERTY = "reporting.logs.capture-std-streams";
+
     @Override
     public ReportingConfiguration getConfiguration() {
         String enabled = System.getProperty(ENABLED_PROPERTY);
@@ -59,6 +100,47 @@ public class SystemPropertiesConfigurationProvider implements ConfigurationProvi
         Long milestoneId = ConfigurationUtils.parseLong(System.getProperty(MILESTONE_ID_PROPERTY));
         String milestoneName = System.getProperty(MILESTONE_NAME_PROPERTY);
 
+        Integer clientMaxConnections = ConfigurationUtils.parseInteger(System.getProperty(CLIENT_MAX_CONNECTIONS_PROPERTY));
+        Integer clientMaxConnectionsPerRoute = ConfigurationUtils.parseInteger(System.getProperty(CLIENT_MAX_CONNECTIONS_PER_ROUTE_PROPERTY));
+        Long clientIdleConnectionTimeout = ConfigurationUtils.parseLong(System.getProperty(CLIENT_IDLE_CONNECTION_TIMEOUT_PROPERTY));
+        Boolean clientAsyncRegistration = ConfigurationUtils.parseBoolean(System.getProperty(CLIENT_ASYNC_REGISTRATION_PROPERTY));
+        Boolean clientSpoolEnabled = ConfigurationUtils.parseBoolean(System.getProperty(CLIENT_SPOOL_ENABLED_PROPERTY));
+        String clientSpoolDir = System.getProperty(CLIENT_SPOOL_DIR_PROPERTY);
+        Boolean clientGzipEnabled = ConfigurationUtils.parseBoolean(System.getProperty(CLIENT_GZIP_ENABLED_PROPERTY));
+        Integer clientGzipThreshold = ConfigurationUtils.parseInteger(System.getProperty(CLIENT_GZIP_THRESHOLD_PROPERTY));
+        Boolean clientMetricsReportEnabled = ConfigurationUtils.parseBoolean(System.getProperty(CLIENT_METRICS_REPORT_ENABLED_PROPERTY));
+        String clientTransport = System.getProperty(CLIENT_TRANSPORT_PROPERTY);
+        Boolean clientConcurrencyLimitEnabled = ConfigurationUtils.parseBoolean(System.getProperty(CLIENT_CONCURRENCY_LIMIT_ENABLED_PROPERTY));
+        Integer clientMaxConcurrency = ConfigurationUtils.parseInteger(System.getProperty(CLIENT_MAX_CONCURRENCY_PROPERTY));
+        Integer clientScreenshotUploadThreads = ConfigurationUtils.parseInteger(System.getProperty(CLIENT_SCREENSHOT_UPLOAD_THREADS_PROPERTY));
+        Integer clientScreenshotQueueBytes = ConfigurationUtils.parseInteger(System.getProperty(CLIENT_SCREENSHOT_QUEUE_BYTES_PROPERTY));
+        Long clientScreenshotMaxWait = ConfigurationUtils.parseLong(System.getProperty(CLIENT_SCREENSHOT_MAX_WAIT_PROPERTY));
+        Long clientScreenshotFlushTimeout = ConfigurationUtils.parseLong(System.getProperty(CLIENT_SCREENSHOT_FLUSH_TIMEOUT_PROPERTY));
+
+        Integer logsBufferCapacity = ConfigurationUtils.parseInteger(System.getProperty(LOGS_BUFFER_CAPACITY_PROPERTY));
+        String logsOverflowPolicy = System.getProperty(LOGS_OVERFLOW_POLICY_PROPERTY);
+        Integer logsFlushMaxEvents = ConfigurationUtils.parseInteger(System.getProperty(LOGS_FLUSH_MAX_EVENTS_PROPERTY));
+        Integer logsFlushMaxBytes = ConfigurationUtils.parseInteger(System.getProperty(LOGS_FLUSH_MAX_BYTES_PROPERTY));
+        Long logsFlushMaxAge = ConfigurationUtils.parseLong(System.getProperty(LOGS_FLUSH_MAX_AGE_PROPERTY));
+        Integer logsMaxRequestBytes = ConfigurationUtils.parseInteger(System.getProperty(LOGS_MAX_REQUEST_BYTES_PROPERTY));
+        Long logsShutdownTimeout = ConfigurationUtils.parseLong(System.getProperty(LOGS_SHUTDOWN_TIMEOUT_PROPERTY));
+        Integer logsBufferShards = ConfigurationUtils.parseInteger(System.getProperty(LOGS_BUFFER_SHARDS_PROPERTY));
+        Boolean logsOffHeapEnabled = ConfigurationUtils.parseBoolean(System.getProperty(LOGS_OFF_HEAP_ENABLED_PROPERTY));
+        Integer logsSlabSize = ConfigurationUtils.parseInteger(System.getProperty(LOGS_SLAB_SIZE_PROPERTY));
+        Integer logsMaxSlabs = ConfigurationUtils.parseInteger(System.getProperty(LOGS_MAX_SLABS_PROPERTY));
+        Integer logsSpillThreshold = ConfigurationUtils.parseInteger(System.getProperty(LOGS_SPILL_THRESHOLD_PROPERTY));
+        String logsSpillDir = System.getProperty(LOGS_SPILL_DIR_PROPERTY);
+        Integer logsRateLimit = ConfigurationUtils.parseInteger(System.getProperty(LOGS_RATE_LIMIT_PROPERTY));
+        Integer logsRateLimitBurst = ConfigurationUtils.parseInteger(System.getProperty(LOGS_RATE_LIMIT_BURST_PROPERTY));
+        Integer logsSamplingThreshold = ConfigurationUtils.parseInteger(System.getProperty(LOGS_SAMPLING_THRESHOLD_PROPERTY));
+        Integer logsSamplingRate = ConfigurationUtils.parseInteger(System.getProperty(LOGS_SAMPLING_RATE_PROPERTY));
+        String logsKeepLevel = System.getProperty(LOGS_KEEP_LEVEL_PROPERTY);
+        Boolean logsCollapseDuplicates = ConfigurationUtils.parseBoolean(System.getProperty(LOGS_COLLAPSE_DUPLICATES_PROPERTY));
+        String logsCaptureMode = System.getProperty(LOGS_CAPTURE_MODE_PROPERTY);
+        Integer logsCaptureMaxLines = ConfigurationUtils.parseInteger(System.getProperty(LOGS_CAPTURE_MAX_LINES_PROPERTY));
+        Integer logsPassedTailLines = ConfigurationUtils.parseInteger(System.getProperty(LOGS_PASSED_TAIL_LINES_PROPERTY));
+        Boolean logsCaptureStdStreams = ConfigurationUtils.parseBoolean(System.getProperty(LOGS_CAPTURE_STD_STREAMS_PROPERTY));
+
         if (enabled != null && !"true".equalsIgnoreCase(enabled) && !"false".equalsIgnoreCase(enabled)) {
             throw new TestAgentException("System properties configuration is malformed");
         }
@@ -82,6 +164,49 @@ public class SystemPropertiesConfigurationProvider implements ConfigurationProvi
                                      .notification(new ReportingConfiguration.NotificationConfiguration(
                                              notifyOnEachFailure, slackChannels, msTeamsChannels, emails
                                      ))
+                                     .client(ReportingConfiguration.ClientConfiguration.builder()
+                                             .maxConnections(clientMaxConnections)
+                                             .maxConnectionsPerRoute(clientMaxConnectionsPerRoute)
+                                             .idleConnectionTimeout(clientIdleConnectionTimeout)
+                                             .asyncRegistration(clientAsyncRegistration)
+                                             .spoolEnabled(clientSpoolEnabled)
+                                             .spoolDir(clientSpoolDir)
+                                             .gzipEnabled(clientGzipEnabled)
+                                             .gzipThreshold(clientGzipThreshold)
+                                             .metricsReportEnabled(clientMetricsReportEnabled)
+                                             .transport(clientTransport)
+                                             .concurrencyLimitEnabled(clientConcurrencyLimitEnabled)
+                                             .maxConcurrency(clientMaxConcurrency)
+                                             .screenshotUploadThreads(clientScreenshotUploadThreads)
+                                             .screenshotQueueBytes(clientScreenshotQueueBytes)
+                                             .screenshotMaxWait(clientScreenshotMaxWait)
+                                             .screenshotFlushTimeout(clientScreenshotFlushTimeout)
+                                             .build())
+                                     .logs(ReportingConfiguration.LogsConfiguration.builder()
+                                             .bufferCapacity(logsBufferCapacity)
+                                             .overflowPolicy(logsOverflowPolicy)
+                                             .flushMaxEvents(logsFlushMaxEvents)
+                                             .flushMaxBytes(logsFlushMaxBytes)
+                                             .flushMaxAge(logsFlushMaxAge)
+                                             .maxRequestBytes(logsMaxRequestBytes)
+                                             .shutdownTimeout(logsShutdownTimeout)
+                                             .bufferShards(logsBufferShards)
+                                             .offHeapEnabled(logsOffHeapEnabled)
+                                             .slabSize(logsSlabSize)
+                                             .maxSlabs(logsMaxSlabs)
+                                             .spillThreshold(logsSpillThreshold)
+                                             .spillDir(logsSpillDir)
+                                             .rateLimit(logsRateLimit)
+                                             .rateLimitBurst(logsRateLimitBurst)
+                                             .samplingThreshold(logsSamplingThreshold)
+                                             .samplingRate(logsSamplingRate)
+                                             .keepLevel(logsKeepLevel)
+                                             .collapseDuplicates(logsCollapseDuplicates)
+                                             .captureMode(logsCaptureMode)
+                                             .captureMaxLines(logsCaptureMaxLines)
+                                             .passedTailLines(logsPassedTailLines)
+                                             .captureStdStreams(logsCaptureStdStreams)
+                                             .build())
                                      .build();
     }
 
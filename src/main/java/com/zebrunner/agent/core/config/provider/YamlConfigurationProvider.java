@@ -41,6 +41,47 @@ public class YamlConfigurationProvider implements ConfigurationProvider {
     private final static String MILESTONE_ID_PROPERTY = "reporting.milestone.id";
     private final static String MILESTONE_NAME_PROPERTY = "reporting.milestone.name";
 
+    private final static String CLIENT_MAX_CONNECTIONS_PROPERTY = "reporting.client.max-connections";
+    private final static String CLIENT_MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "reporting.client.max-connections-per-route";
+    private final static String CLIENT_IDLE_CONNECTION_TIMEOUT_PROPERTY = "reporting.client.idle-connection-timeout";
+    private final static String CLIENT_ASYNC_REGISTRATION_PROPERTY = "reporting.client.async-registration";
+    private final static String CLIENT_SPOOL_ENABLED_PROPERTY = "reporting.client.spool-enabled";
+    private final static String CLIENT_SPOOL_DIR_PROPERTY = "reporting.client.spool-dir";
+    private final static String CLIENT_GZIP_ENABLED_PROPERTY = "reporting.client.gzip-enabled";
+    private final static String CLIENT_GZIP_THRESHOLD_PROPERTY = "reporting.client.gzip-threshold";
+    private final static String CLIENT_METRICS_REPORT_ENABLED_PROPERTY = "reporting.client.metrics-report-enabled";
+    private final static String CLIENT_TRANSPORT_PROPERTY = "reporting.client.transport";
+    private final static String CLIENT_CONCURRENCY_LIMIT_ENABLED_PROPERTY = "reporting.client.concurrency-limit-enabled";
+    private final static String CLIENT_MAX_CONCURRENCY_PROPERTY = "reporting.client.max-concurrency";
+    private final static String CLIENT_SCREENSHOT_UPLOAD_THREADS_PROPERTY = "reporting.client.screenshot-upload-threads";
+    private final static String CLIENT_SCREENSHOT_QUEUE_BYTES_PROPERTY = "reporting.client.screenshot-queue-bytes";
+    private final static String CLIENT_SCREENSHOT_MAX_WAIT_PROPERTY = "reporting.client.screenshot-max-wait";
+    private final static String CLIENT_SCREENSHOT_FLUSH_TIMEOUT_PROPERTY = "reporting.client.screenshot-flush-timeout";
+
+    private final static String LOGS_BUFFER_CAPACITY_PROPERTY = "reporting.logs.buffer-capacity";
+    private final static String LOGS_OVERFLOW_POLICY_PROPERTY = "reporting.logs.overflow-policy";
+    private final static String LOGS_FLUSH_MAX_EVENTS_PROPERTY = "reporting.logs.flush-max-events";
+    private final static String LOGS_FLUSH_MAX_BYTES_PROPERTY = "reporting.logs.flush-max-bytes";
+    private final static String LOGS_FLUSH_MAX_AGE_PROPERTY = "reporting.logs.flush-max-age";
+    private final static String LOGS_MAX_REQUEST_BYTES_PROPERTY = "reporting.logs.max-request-bytes";
+    private final static String LOGS_SHUTDOWN_TIMEOUT_PROPERTY = "reporting.logs.shutdown-timeout";
+    private final static String LOGS_BUFFER_SHARDS_PROPERTY = "reporting.logs.buffer-shards";
+    private final static String LOGS_OFF_HEAP_ENABLED_PROPERTY = "reporting.logs.off-heap-enabled";
+    private final static String LOGS_SLAB_SIZE_PROPERTY = "reporting.logs.slab-size";
+    private final static String LOGS_MAX_SLABS_PROPERTY = "reporting.logs.max-slabs";
+    private final static String LOGS_SPILL_THRESHOLD_PROPERTY = "reporting.logs.spill-threshold";
+    private final static String LOGS_SPILL_DIR_PROPERTY = "reporting.logs.spill-dir";
+    private final static String LOGS_RATE_LIMIT_PROPERTY = "reporting.logs.rate-limit";
+    private final static String LOGS_RATE_LIMIT_BURST_PROPERTY = "reporting.logs.rate-limit-burst";
+    private final static String LOGS_SAMPLING_THRESHOLD_PROPERTY = "reporting.logs.sampling-threshold";
+    private final static String LOGS_SAMPLING_RATE_PROPERTY = "reporting.logs.sampling-rate";
+    private final static String LOGS_KEEP_LEVEL_PROPERTY = "reporting.logs.keep-level";
+    private final static String LOGS_COLLAPSE_DUPLICATES_PROPERTY = "reporting.logs.collapse-duplicates";
+    private final static String LOGS_CAPTURE_MODE_PROPERTY = "reporting.logs.capture-mode";
+    private final static String LOGS_CAPTURE_MAX_LINES_PROPERTY = "reporting.logs.capture-max-lines";
+    private final static String LOGS_PASSED_TAIL_LINES_PROPERTY = "reporting.logs.passed-tail-lines";
+    private final static String LOGS_CAPTURE_STD_STREAMS_PROPERTY = "reporting.logs.capture-std-streams";
+
     private static final String[] DEFAULT_FILE_NAMES = {"agent.yaml", "agent.yml"};
     private static final Yaml YAML_MAPPER = new Yaml();
 
@@ -73,6 +114,47 @@ public class YamlConfigurationProvider implements ConfigurationProvider {
         Long milestoneId = parseLong(getProperty(yamlProperties, MILESTONE_ID_PROPERTY));
         String milestoneName = getProperty(yamlProperties, MILESTONE_NAME_PROPERTY);
 
+        Integer clientMaxConnections = ConfigurationUtils.parseInteger(getProperty(yamlProperties, CLIENT_MAX_CONNECTIONS_PROPERTY));
+        Integer clientMaxConnectionsPerRoute = ConfigurationUtils.parseInteger(getProperty(yamlProperties, CLIENT_MAX_CONNECTIONS_PER_ROUTE_PROPERTY));
+        Long clientIdleConnectionTimeout = ConfigurationUtils.parseLong(getProperty(yamlProperties, CLIENT_IDLE_CONNECTION_TIMEOUT_PROPERTY));
+        Boolean clientAsyncRegistration = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, CLIENT_ASYNC_REGISTRATION_PROPERTY));
+        Boolean clientSpoolEnabled = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, CLIENT_SPOOL_ENABLED_PROPERTY));
+        String clientSpoolDir = getProperty(yamlProperties, CLIENT_SPOOL_DIR_PROPERTY);
+        Boolean clientGzipEnabled = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, CLIENT_GZIP_ENABLED_PROPERTY));
+        Integer clientGzipThreshold = ConfigurationUtils.parseInteger(getProperty(yamlProperties, CLIENT_GZIP_THRESHOLD_PROPERTY));
+        Boolean clientMetricsReportEnabled = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, CLIENT_METRICS_REPORT_ENABLED_PROPERTY));
+        String clientTransport = getProperty(yamlProperties, CLIENT_TRANSPORT_PROPERTY);
+        Boolean clientConcurrencyLimitEnabled = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, CLIENT_CONCURRENCY_LIMIT_ENABLED_PROPERTY));
+        Integer clientMaxConcurrency = ConfigurationUtils.parseInteger(getProperty(yamlProperties, CLIENT_MAX_CONCURRENCY_PROPERTY));
+        Integer clientScreenshotUploadThreads = ConfigurationUtils.parseInteger(getProperty(yamlProperties, CLIENT_SCREENSHOT_UPLOAD_THREADS_PROPERTY));
+        Integer clientScreenshotQueueBytes = ConfigurationUtils.parseInteger(getProperty(yamlProperties, CLIENT_SCREENSHOT_QUEUE_BYTES_PROPERTY));
+        Long clientScreenshotMaxWait = ConfigurationUtils.parseLong(getProperty(yamlProperties, CLIENT_SCREENSHOT_MAX_WAIT_PROPERTY));
+        Long clientScreenshotFlushTimeout = ConfigurationUtils.parseLong(getProperty(yamlProperties, CLIENT_SCREENSHOT_FLUSH_TIMEOUT_PROPERTY));
+
+        Integer logsBufferCapacity = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_BUFFER_CAPACITY_PROPERTY));
+        String logsOverflowPolicy = getProperty(yamlProperties, LOGS_OVERFLOW_POLICY_PROPERTY);
+        Integer logsFlushMaxEvents = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_FLUSH_MAX_EVENTS_PROPERTY));
+        Integer logsFlushMaxBytes = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_FLUSH_MAX_BYTES_PROPERTY));
+        Long logsFlushMaxAge = ConfigurationUtils.parseLong(getProperty(yamlProperties, LOGS_FLUSH_MAX_AGE_PROPERTY));
+        Integer logsMaxRequestBytes = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_MAX_REQUEST_BYTES_PROPERTY));
+        Long logsShutdownTimeout = ConfigurationUtils.parseLong(getProperty(yamlProperties, LOGS_SHUTDOWN_TIMEOUT_PROPERTY));
+        Integer logsBufferShards = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_BUFFER_SHARDS_PROPERTY));
+        Boolean logsOffHeapEnabled = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, LOGS_OFF_HEAP_ENABLED_PROPERTY));
+        Integer logsSlabSize = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_SLAB_SIZE_PROPERTY));
+        Integer logsMaxSlabs = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_MAX_SLABS_PROPERTY));
+        Integer logsSpillThreshold = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_SPILL_THRESHOLD_PROPERTY));
+        String logsSpillDir = getProperty(yamlProperties, LOGS_SPILL_DIR_PROPERTY);
+        Integer logsRateLimit = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_RATE_LIMIT_PROPERTY));
+        Integer logsRateLimitBurst = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_RATE_LIMIT_BURST_PROPERTY));
+        Integer logsSamplingThreshold = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_SAMPLING_THRESHOLD_PROPERTY));
+        Integer logsSamplingRate = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_SAMPLING_RATE_PROPERTY));
+        String logsKeepLevel = getProperty(yamlProperties, LOGS_KEEP_LEVEL_PROPERTY);
+        Boolean logsCollapseDuplicates = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, LOGS_COLLAPSE_DUPLICATES_PROPERTY));
+        String logsCaptureMode = getProperty(yamlProperties, LOGS_CAPTURE_MODE_PROPERTY);
+        Integer logsCaptureMaxLines = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_CAPTURE_MAX_LINES_PROPERTY));
+        Integer logsPassedTailLines = ConfigurationUtils.parseInteger(getProperty(yamlProperties, LOGS_PASSED_TAIL_LINES_PROPERTY));
+        Boolean logsCaptureStdStreams = ConfigurationUtils.parseBoolean(getProperty(yamlProperties, LOGS_CAPTURE_STD_STREAMS_PROPERTY));
+
         if (enabled != null && !"true".equalsIgnoreCase(enabled) && !"false".equalsIgnoreCase(enabled)) {
             throw new TestAgentException("YAML configuration is malformed");
         }
@@ -96,6 +178,49 @@ public class YamlConfigurationProvider implements ConfigurationProvider {
                                      .notification(new ReportingConfiguration.NotificationConfiguration(
                                              notifyOnEachFailure, slackChannels, msTeamsChannels, emails
                                      ))
+                                     .client(ReportingConfiguration.ClientConfiguration.builder()
+                                             .maxConnections(clientMaxConnections)
+                                             .maxConnectionsPerRoute(clientMaxConnectionsPerRoute)
+                                             .idleConnectionTimeout(clientIdleConnectionTimeout)
+                                             .asyncRegistration(clientAsyncRegistration)
+                                             .spoolEnabled(clientSpoolEnabled)
+                                             .spoolDir(clientSpoolDir)
+                                             .gzipEnabled(clientGzipEnabled)
+                                             .gzipThreshold(clientGzipThreshold)
+                                             .metricsReportEnabled(clientMetricsReportEnabled)
+                                             .transport(clientTransport)
+                                             .concurrencyLimitEnabled(clientConcurrencyLimitEnabled)
+                                             .maxConcurrency(clientMaxConcurrency)
+                                             .screenshotUploadThreads(clientScreenshotUploadThreads)
+                                             .screenshotQueueBytes(clientScreenshotQueueBytes)
+                                             .screenshotMaxWait(clientScreenshotMaxWait)
+                                             .screenshotFlushTimeout(clientScreenshotFlushTimeout)
+                                             .build())
+                                     .logs(ReportingConfiguration.LogsConfiguration.builder()
+                                             .bufferCapacity(logsBufferCapacity)
+                                             .overflowPolicy(logsOverflowPolicy)
+                                             .flushMaxEvents(logsFlushMaxEvents)
+                                             .flushMaxBytes(logsFlushMaxBytes)
+                                             .flushMaxAge(logsFlushMaxAge)
+                                             .maxRequestBytes(logsMaxRequestBytes)
+                                             .shutdownTimeout(logsShutdownTimeout)
+                                             .bufferShards(logsBufferShards)
+                                             .offHeapEnabled(logsOffHeapEnabled)
+                                             .slabSize(logsSlabSize)
+                                             .maxSlabs(logsMaxSlabs)
+                                             .spillThreshold(logsSpillThreshold)
+                                             .spillDir(logsSpillDir)
+                                             .rateLimit(logsRateLimit)
+                                             .rateLimitBurst(logsRateLimitBurst)
+                                             .samplingThreshold(logsSamplingThreshold)
+                                             .samplingRate(logsSamplingRate)
+                                             .keepLevel(logsKeepLevel)
+                                             .collapseDuplicates(logsCollapseDuplicates)
+                                             .captureMode(logsCaptureMode)
+                                             .captureMaxLines(logsCaptureMaxLines)
+                                             .passedTailLines(logsPassedTailLines)
+                                             .captureStdStreams(logsCaptureStdStreams)
+                                             .build())
                                      .build();
     }
 
@@ -3,10 +3,30 @@ package com.zebrunner.agent.core.exception;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 
+import java.time.Duration;
+
 @Value
 @EqualsAndHashCode(callSuper = false)
 public class ServerException extends RuntimeException {
 
     String message;
+    /**
+     * Status code of Zebrunner response, or null if the failure is not caused by a response
+     */
+    Integer status;
+    /**
+     * Delay requested by Zebrunner via 'Retry-After' header, or null if there was no such header
+     */
+    Duration retryAfter;
+
+    public ServerException(String message) {
+        this(message, null, null);
+    }
+
+    public ServerException(String message, Integer status, Duration retryAfter) {
+        this.message = message;
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
 
 }
@@ -0,0 +1,376 @@
+package com.zebrunner.agent.core.logging.console;
+
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.LogsBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Print stream capturing lines printed by tests to {@link System#out} and {@link System#err} and sending them
+ * to Zebrunner, while everything is still printed to the original stream.
+ * <p>Every thread has its own line buffer, so lines printed by concurrent tests are neither interleaved nor contended for.
+ * Only complete lines are passed to the logs buffer, and they are attributed to the test running in the thread
+ * that printed them. Lines printed outside of tests are not sent.
+ * <p>The streams are replaced on start of a test run if {@code reporting.logs.capture-std-streams} is enabled,
+ * or by {@link #install()}. The streams should not be captured if console output of a logging framework
+ * is reported with its {@code ReportingAppender} already, otherwise such lines are sent twice.
+ */
+public class ReportingPrintStream extends PrintStream {
+
+    private static final int INITIAL_LINE_CAPACITY = 128;
+    /**
+     * Longer lines are split, so that output without line breaks (e.g. a progress bar) is not buffered forever
+     */
+    private static final int MAX_LINE_LENGTH = 8192;
+    /**
+     * Line buffers grown beyond this capacity by a long line are shrunk, so they do not stay in heap
+     */
+    private static final int MAX_RETAINED_LINE_CAPACITY = 1024;
+
+    private static volatile LogsBuffer<Log> logsBuffer;
+
+    private final PrintStream delegate;
+    private final String level;
+    private final ThreadLocal<LineBuffer> lineBuffers = ThreadLocal.withInitial(LineBuffer::new);
+
+    /**
+     * @param delegate stream everything is printed to
+     * @param level    level of the lines sent to Zebrunner
+     */
+    public ReportingPrintStream(PrintStream delegate, String level) {
+        super(delegate, false);
+        this.delegate = delegate;
+        this.level = level;
+    }
+
+    /**
+     * Replaces {@link System#out} and {@link System#err}, unless they are replaced already.
+     */
+    public static synchronized void install() {
+        if (!(System.out instanceof ReportingPrintStream)) {
+            System.setOut(new ReportingPrintStream(System.out, "INFO"));
+        }
+        if (!(System.err instanceof ReportingPrintStream)) {
+            System.setErr(new ReportingPrintStream(System.err, "ERROR"));
+        }
+    }
+
+    /**
+     * Restores the original {@link System#out} and {@link System#err}.
+     */
+    public static synchronized void uninstall() {
+        if (System.out instanceof ReportingPrintStream) {
+            System.setOut(((ReportingPrintStream) System.out).delegate);
+        }
+        if (System.err instanceof ReportingPrintStream) {
+            System.setErr(((ReportingPrintStream) System.err).delegate);
+        }
+    }
+
+    /**
+     * Characters printed by a thread since its last complete line. Bytes written to the stream as is
+     * are kept separately until they are decoded, since a character may span several writes.
+     */
+    private final class LineBuffer {
+
+        private StringBuilder chars = new StringBuilder(INITIAL_LINE_CAPACITY);
+        private ByteArrayOutputStream bytes;
+
+        private void append(CharSequence value) {
+            for (int i = 0; i < value.length(); i++) {
+                this.append(value.charAt(i));
+            }
+        }
+
+        private void append(char[] value) {
+            for (char c : value) {
+                this.append(c);
+            }
+        }
+
+        private void append(char c) {
+            if (c == '\n') {
+                this.endLine();
+            } else {
+                chars.append(c);
+                if (chars.length() >= MAX_LINE_LENGTH) {
+                    this.endLine();
+                }
+            }
+        }
+
+        private void appendBytes(byte[] value, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                this.appendByte(value[i]);
+            }
+        }
+
+        private void appendByte(int b) {
+            if (bytes == null) {
+                bytes = new ByteArrayOutputStream(INITIAL_LINE_CAPACITY);
+            }
+            // a line break byte never occurs within a multibyte character of the supported charsets
+            if (b == '\n') {
+                this.decodeBytes();
+                this.endLine();
+            } else {
+                bytes.write(b);
+                if (bytes.size() >= MAX_LINE_LENGTH) {
+                    this.decodeBytes();
+                    this.checkLength();
+                }
+            }
+        }
+
+        private void decodeBytes() {
+            if (bytes != null && bytes.size() > 0) {
+                chars.append(new String(bytes.toByteArray(), Charset.defaultCharset()));
+                bytes.reset();
+            }
+        }
+
+        /**
+         * Lengths of the printed values are checked only once they are appended, so the line is checked here as well
+         */
+        private void checkLength() {
+            if (chars.length() >= MAX_LINE_LENGTH) {
+                this.endLine();
+            }
+        }
+
+        private void endLine() {
+            int length = chars.length();
+            if (length > 0 && chars.charAt(length - 1) == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                send(chars.substring(0, length));
+            }
+            if (chars.capacity() > MAX_RETAINED_LINE_CAPACITY) {
+                chars = new StringBuilder(INITIAL_LINE_CAPACITY);
+            } else {
+                chars.setLength(0);
+            }
+        }
+
+    }
+
+    private void send(String line) {
+        getBuffer().put(
+                Log.builder()
+                   .message(line)
+                   .level(level)
+                   .timestamp(System.currentTimeMillis())
+                   .build()
+        );
+    }
+
+    private static LogsBuffer<Log> getBuffer() {
+        if (logsBuffer == null) {
+            synchronized (ReportingPrintStream.class) {
+                if (logsBuffer == null) {
+                    logsBuffer = LogsBuffer.create(Function.identity());
+                }
+            }
+        }
+        return logsBuffer;
+    }
+
+    /**
+     * @return line buffer of the current thread with the pending bytes decoded, so printed characters follow them
+     */
+    private LineBuffer lineBuffer() {
+        LineBuffer lineBuffer = lineBuffers.get();
+        lineBuffer.decodeBytes();
+        return lineBuffer;
+    }
+
+    @Override
+    public void write(int b) {
+        delegate.write(b);
+        lineBuffers.get().appendByte(b & 0xFF);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        delegate.write(buf, off, len);
+        lineBuffers.get().appendBytes(buf, off, len);
+    }
+
+    @Override
+    public void print(boolean b) {
+        delegate.print(b);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(b);
+        lineBuffer.checkLength();
+    }
+
+    @Override
+    public void print(char c) {
+        delegate.print(c);
+        this.lineBuffer().append(c);
+    }
+
+    @Override
+    public void print(int i) {
+        delegate.print(i);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(i);
+        lineBuffer.checkLength();
+    }
+
+    @Override
+    public void print(long l) {
+        delegate.print(l);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(l);
+        lineBuffer.checkLength();
+    }
+
+    @Override
+    public void print(float f) {
+        delegate.print(f);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(f);
+        lineBuffer.checkLength();
+    }
+
+    @Override
+    public void print(double d) {
+        delegate.print(d);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(d);
+        lineBuffer.checkLength();
+    }
+
+    @Override
+    public void print(char[] s) {
+        delegate.print(s);
+        this.lineBuffer().append(s);
+    }
+
+    @Override
+    public void print(String s) {
+        delegate.print(s);
+        this.lineBuffer().append(String.valueOf(s));
+    }
+
+    @Override
+    public void print(Object obj) {
+        String s = String.valueOf(obj);
+        delegate.print(s);
+        this.lineBuffer().append(s);
+    }
+
+    @Override
+    public void println() {
+        delegate.println();
+        this.lineBuffer().endLine();
+    }
+
+    @Override
+    public void println(boolean x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(char x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(int x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(long x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(float x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(double x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.chars.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(char[] x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.append(x);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(String x) {
+        delegate.println(x);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.append(String.valueOf(x));
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public void println(Object x) {
+        String s = String.valueOf(x);
+        delegate.println(s);
+        LineBuffer lineBuffer = this.lineBuffer();
+        lineBuffer.append(s);
+        lineBuffer.endLine();
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+        // formatted right away rather than with a formatter writing to this stream under its lock
+        this.print(String.format(format, args));
+        return this;
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        this.print(String.format(l, format, args));
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public boolean checkError() {
+        return delegate.checkError();
+    }
+
+}
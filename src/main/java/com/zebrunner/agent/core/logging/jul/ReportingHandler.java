@@ -0,0 +1,83 @@
+package com.zebrunner.agent.core.logging.jul;
+
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.LogEventConverter;
+import com.zebrunner.agent.core.registrar.LogsBuffer;
+
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Handler of java.util.logging sending the logs to Zebrunner. It can be registered in {@code logging.properties}:
+ * <pre>
+ * handlers = com.zebrunner.agent.core.logging.jul.ReportingHandler
+ * </pre>
+ */
+public class ReportingHandler extends Handler {
+
+    /**
+     * Formats the messages only, so the format of the records configured for other handlers does not matter
+     */
+    private static final Formatter MESSAGE_FORMATTER = new SimpleFormatter();
+
+    private static final LogEventConverter<LogRecord> CONVERTER = new LogEventConverter<LogRecord>() {
+
+        @Override
+        public boolean canDefer(LogRecord record) {
+            return LogEventConverter.areImmutable(record.getParameters());
+        }
+
+        @Override
+        public int estimateMessageLength(LogRecord record) {
+            return LogEventConverter.estimateMessageLength(record.getMessage(), record.getParameters());
+        }
+
+        @Override
+        public String getLevel(LogRecord record) {
+            return record.getLevel().getName();
+        }
+
+        @Override
+        public Log convert(LogRecord record) {
+            return Log.builder()
+                      .message(MESSAGE_FORMATTER.formatMessage(record))
+                      .level(record.getLevel().getName())
+                      .timestamp(record.getMillis())
+                      .build();
+        }
+
+    };
+
+    private static volatile LogsBuffer<LogRecord> logsBuffer;
+
+    @Override
+    public void publish(LogRecord record) {
+        if (this.isLoggable(record) && !LogEventConverter.isAgentLogger(record.getLoggerName())) {
+            getBuffer().put(record);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // logs are flushed by the buffer
+    }
+
+    @Override
+    public void close() {
+        // the buffer is shared by all the handlers and is flushed on shutdown
+    }
+
+    private static LogsBuffer<LogRecord> getBuffer() {
+        if (logsBuffer == null) {
+            synchronized (ReportingHandler.class) {
+                if (logsBuffer == null) {
+                    logsBuffer = LogsBuffer.createDeferred(CONVERTER);
+                }
+            }
+        }
+        return logsBuffer;
+    }
+
+}
@@ -1,32 +1,55 @@
 package com.zebrunner.agent.core.logging.log4j;
 
 import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.LogEventConverter;
 import com.zebrunner.agent.core.registrar.LogsBuffer;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.spi.LoggingEvent;
 
-import java.util.function.Function;
-
 public class ReportingAppender extends AppenderSkeleton {
 
-    private final static Function<LoggingEvent, Log> CONVERTER = e -> Log.builder()
-                                                                         .message(e.getRenderedMessage())
-                                                                         .level(e.getLevel().toString())
-                                                                         .timestamp(e.getTimeStamp())
-                                                                         .build();
+    private final static LogEventConverter<LoggingEvent> CONVERTER = new LogEventConverter<LoggingEvent>() {
+
+        @Override
+        public boolean canDefer(LoggingEvent event) {
+            return event.getMessage() instanceof String;
+        }
+
+        @Override
+        public int estimateMessageLength(LoggingEvent event) {
+            return ((String) event.getMessage()).length();
+        }
+
+        @Override
+        public String getLevel(LoggingEvent event) {
+            return event.getLevel().toString();
+        }
+
+        @Override
+        public Log convert(LoggingEvent event) {
+            return Log.builder()
+                      .message(event.getRenderedMessage())
+                      .level(event.getLevel().toString())
+                      .timestamp(event.getTimeStamp())
+                      .build();
+        }
+
+    };
 
     private static volatile LogsBuffer<LoggingEvent> logsBuffer;
 
     @Override
     protected void append(LoggingEvent event) {
-        getBuffer().put(event);
+        if (!LogEventConverter.isAgentLogger(event.getLoggerName())) {
+            getBuffer().put(event);
+        }
     }
 
     private static LogsBuffer<LoggingEvent> getBuffer() {
         if (logsBuffer == null) {
             synchronized (ReportingAppender.class) {
                 if (logsBuffer == null) {
-                    logsBuffer = LogsBuffer.create(CONVERTER);
+                    logsBuffer = LogsBuffer.createDeferred(CONVERTER);
                 }
             }
         }
@@ -1,6 +1,7 @@
 package com.zebrunner.agent.core.logging.log4j2;
 
 import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.LogEventConverter;
 import com.zebrunner.agent.core.registrar.LogsBuffer;
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.Core;
@@ -13,10 +14,13 @@ import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
 import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ReusableMessage;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
 
 import java.io.Serializable;
-import java.util.function.Function;
 
 @Plugin(
     name = "ReportingAppender",
@@ -25,11 +29,64 @@ import java.util.function.Function;
 )
 public final class ReportingAppender extends AbstractAppender {
 
-    private static final Function<LogEvent, Log> CONVERTER = e -> Log.builder()
-                                                                     .message(e.getMessage().getFormattedMessage())
-                                                                     .level(e.getLevel().toString())
-                                                                     .timestamp(e.getTimeMillis())
-                                                                     .build();
+    private static final LogEventConverter<LogEvent> CONVERTER = new LogEventConverter<LogEvent>() {
+
+        @Override
+        public boolean canDefer(LogEvent event) {
+            // events of garbage-free mode and async loggers are reused once the appender returns
+            return event instanceof Log4jLogEvent
+                    && !(event.getMessage() instanceof ReusableMessage)
+                    && LogEventConverter.areImmutable(event.getMessage().getParameters());
+        }
+
+        @Override
+        public boolean canCopy(LogEvent event) {
+            // such messages are formatted straight into the buffer, which keeps garbage-free mode free of garbage
+            return event.getMessage() instanceof StringBuilderFormattable;
+        }
+
+        @Override
+        public void formatMessageTo(LogEvent event, StringBuilder target) {
+            ((StringBuilderFormattable) event.getMessage()).formatTo(target);
+        }
+
+        @Override
+        public long getTimestamp(LogEvent event) {
+            return event.getTimeMillis();
+        }
+
+        @Override
+        public long getThreadId(LogEvent event) {
+            // async loggers pass events to appenders on a background thread
+            return event.getThreadId();
+        }
+
+        @Override
+        public int estimateMessageLength(LogEvent event) {
+            Message message = event.getMessage();
+            if (message instanceof ReusableMessage) {
+                // parameters of a reusable message are copied to a new array on every call
+                int parametersLength = ((ReusableMessage) message).getParameterCount() * LogEventConverter.ARGUMENT_LENGTH_ESTIMATE;
+                return LogEventConverter.estimateMessageLength(message.getFormat(), null) + parametersLength;
+            }
+            return LogEventConverter.estimateMessageLength(message.getFormat(), message.getParameters());
+        }
+
+        @Override
+        public String getLevel(LogEvent event) {
+            return event.getLevel().toString();
+        }
+
+        @Override
+        public Log convert(LogEvent event) {
+            return Log.builder()
+                      .message(event.getMessage().getFormattedMessage())
+                      .level(event.getLevel().toString())
+                      .timestamp(event.getTimeMillis())
+                      .build();
+        }
+
+    };
 
     private static volatile LogsBuffer<LogEvent> logsBuffer;
 
@@ -59,14 +116,16 @@ public final class ReportingAppender extends AbstractAppender {
 
     @Override
     public void append(LogEvent event) {
-        getBuffer().put(event);
+        if (!LogEventConverter.isAgentLogger(event.getLoggerName())) {
+            getBuffer().put(event);
+        }
     }
 
     private static LogsBuffer<LogEvent> getBuffer() {
         if (logsBuffer == null) {
             synchronized (ReportingAppender.class) {
                 if (logsBuffer == null) {
-                    logsBuffer = LogsBuffer.create(CONVERTER);
+                    logsBuffer = LogsBuffer.createDeferred(CONVERTER);
                 }
             }
         }
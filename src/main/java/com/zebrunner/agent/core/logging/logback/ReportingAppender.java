@@ -3,30 +3,53 @@ package com.zebrunner.agent.core.logging.logback;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.AppenderBase;
 import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.LogEventConverter;
 import com.zebrunner.agent.core.registrar.LogsBuffer;
 
-import java.util.function.Function;
-
 public class ReportingAppender extends AppenderBase<ILoggingEvent> {
 
-    private static final Function<ILoggingEvent, Log> CONVERTER = event -> Log.builder()
-                                                                              .message(event.getFormattedMessage())
-                                                                              .level(event.getLevel().toString())
-                                                                              .timestamp(event.getTimeStamp())
-                                                                              .build();
+    private static final LogEventConverter<ILoggingEvent> CONVERTER = new LogEventConverter<ILoggingEvent>() {
+
+        @Override
+        public boolean canDefer(ILoggingEvent event) {
+            return LogEventConverter.areImmutable(event.getArgumentArray());
+        }
+
+        @Override
+        public int estimateMessageLength(ILoggingEvent event) {
+            return LogEventConverter.estimateMessageLength(event.getMessage(), event.getArgumentArray());
+        }
+
+        @Override
+        public String getLevel(ILoggingEvent event) {
+            return event.getLevel().toString();
+        }
+
+        @Override
+        public Log convert(ILoggingEvent event) {
+            return Log.builder()
+                      .message(event.getFormattedMessage())
+                      .level(event.getLevel().toString())
+                      .timestamp(event.getTimeStamp())
+                      .build();
+        }
+
+    };
 
     private static volatile LogsBuffer<ILoggingEvent> logsBuffer;
 
     @Override
     protected void append(ILoggingEvent event) {
-        getBuffer().put(event);
+        if (!LogEventConverter.isAgentLogger(event.getLoggerName())) {
+            getBuffer().put(event);
+        }
     }
 
     private static LogsBuffer<ILoggingEvent> getBuffer() {
         if (logsBuffer == null) {
             synchronized (ReportingAppender.class) {
                 if (logsBuffer == null) {
-                    logsBuffer = LogsBuffer.create(CONVERTER);
+                    logsBuffer = LogsBuffer.createDeferred(CONVERTER);
                 }
             }
         }
@@ -0,0 +1,337 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only journal of Zebrunner API calls backed by memory-mapped segment files.
+ * <p>Every record consists of payload length, state (pending or acknowledged) and payload itself.
+ * Length of a record is written last, so a record is never visible partially after a crash.
+ * Acknowledgement flips the state in place, and a segment file is deleted once all of its records are acknowledged.
+ * <p>Every agent process owns a dedicated directory locked for the whole lifetime of the process,
+ * so concurrent test processes sharing the same build dir never interfere. Directories left by crashed processes
+ * (their lock is released by OS) are adopted on startup and their pending records are recovered.
+ */
+@Slf4j
+class ApiCallSpool {
+
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+    private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final byte PENDING = 1;
+    private static final byte ACKNOWLEDGED = 2;
+
+    private static final String LOCK_FILE_NAME = "lock";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private final Map<Path, FileChannel> adoptedDirectoryLocks = new HashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment currentSegment;
+    private long nextSegmentIndex;
+    private long nextSequence;
+
+    ApiCallSpool(Path rootDirectory) throws IOException {
+        this.directory = rootDirectory.resolve(UUID.randomUUID().toString());
+        Files.createDirectories(directory);
+
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = lockChannel.lock();
+    }
+
+    @RequiredArgsConstructor
+    static final class Record {
+
+        @Getter
+        private final long sequence;
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+    }
+
+    @RequiredArgsConstructor
+    private static final class Segment {
+
+        private final Path directory;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int pendingRecords;
+
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Adopts directories of processes which are not alive anymore and returns their pending records in order of appending.
+     *
+     * @param rootDirectory directory containing spool directories of all the processes
+     * @return pending records left by crashed processes
+     */
+    synchronized List<Record> recover(Path rootDirectory) {
+        List<Record> records = new ArrayList<>();
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(rootDirectory, Files::isDirectory)) {
+            for (Path orphanDirectory : directories) {
+                if (!orphanDirectory.equals(directory)) {
+                    records.addAll(this.recoverDirectory(orphanDirectory));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not recover spooled Zebrunner API calls from {}: {}", rootDirectory, e.getMessage());
+        }
+        return records;
+    }
+
+    private List<Record> recoverDirectory(Path orphanDirectory) {
+        List<Record> records = new ArrayList<>();
+        try {
+            FileChannel orphanLockChannel = FileChannel.open(
+                    orphanDirectory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE
+            );
+            if (orphanLockChannel.tryLock() == null) {
+                // the directory is owned by another alive process
+                this.closeQuietly(orphanLockChannel);
+                return records;
+            }
+            // the lock is held until all the adopted records are acknowledged, so no other process adopts them twice
+            adoptedDirectoryLocks.put(orphanDirectory, orphanLockChannel);
+
+            List<Path> segmentFiles = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(orphanDirectory, SEGMENT_FILE_PREFIX + "*" + SEGMENT_FILE_SUFFIX)) {
+                files.forEach(segmentFiles::add);
+            }
+            segmentFiles.sort(null);
+
+            for (Path segmentFile : segmentFiles) {
+                Segment segment = this.openSegment(orphanDirectory, segmentFile, (int) Files.size(segmentFile));
+                records.addAll(this.readPendingRecords(segment));
+                if (segment.pendingRecords == 0) {
+                    this.deleteSegment(segment);
+                } else {
+                    segments.add(segment);
+                }
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            log.warn("Could not recover spooled Zebrunner API calls from {}: {}", orphanDirectory, e.getMessage());
+        }
+        this.deleteDirectoryIfDrained(orphanDirectory);
+        return records;
+    }
+
+    private List<Record> readPendingRecords(Segment segment) {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            if (buffer.get(position + Integer.BYTES) == PENDING) {
+                records.add(new Record(nextSequence++, segment, position, length));
+                segment.pendingRecords++;
+            }
+            position += HEADER_SIZE + length;
+        }
+        segment.position = position;
+        return records;
+    }
+
+    /**
+     * Writes payload of a record straight into a segment, so the payload is never materialized on heap.
+     */
+    @FunctionalInterface
+    interface PayloadWriter {
+
+        /**
+         * Writes the payload starting at the current position of the target. The writer may be invoked again
+         * with a larger target if the payload does not fit the rest of the segment, so it must not have side effects.
+         *
+         * @param target buffer to write the payload to
+         * @throws java.nio.BufferOverflowException if the payload does not fit the target
+         */
+        void write(ByteBuffer target) throws IOException;
+
+    }
+
+    /**
+     * Appends the payload to the journal. Appended records survive a crash of the process, since the segments are mapped
+     * into memory of OS, while the segments are flushed to disk only once they are rolled over or the spool is closed.
+     *
+     * @param payload writer of serialized call
+     * @return pending record which must be acknowledged once the call is delivered
+     * @throws IOException if a new segment file could not be created
+     */
+    synchronized Record append(PayloadWriter payload) throws IOException {
+        int segmentSize = SEGMENT_SIZE;
+        while (true) {
+            if (currentSegment == null || currentSegment.position + HEADER_SIZE >= currentSegment.buffer.capacity()) {
+                this.rollSegment(segmentSize);
+            }
+
+            Segment segment = currentSegment;
+            int offset = segment.position;
+
+            ByteBuffer view = segment.buffer.duplicate();
+            view.position(offset + HEADER_SIZE);
+            try {
+                payload.write(view);
+            } catch (BufferOverflowException e) {
+                // the rest of the segment stays unused, since its header is not written
+                if (offset == 0) {
+                    if (segmentSize == MAX_SEGMENT_SIZE) {
+                        throw new IOException("Payload exceeds max size of a spool segment.");
+                    }
+                    segmentSize = (int) Math.min(MAX_SEGMENT_SIZE, 2L * segment.buffer.capacity());
+                }
+                this.rollSegment(segmentSize);
+                continue;
+            }
+
+            int length = view.position() - offset - HEADER_SIZE;
+            segment.buffer.put(offset + Integer.BYTES, PENDING);
+            segment.buffer.putInt(offset, length);
+
+            segment.position += HEADER_SIZE + length;
+            segment.pendingRecords++;
+            return new Record(nextSequence++, segment, offset, length);
+        }
+    }
+
+    /**
+     * @return read-only view of the payload of the record. The view stays valid after the record is acknowledged
+     */
+    ByteBuffer read(Record record) {
+        ByteBuffer view = record.segment.buffer.asReadOnlyBuffer();
+        view.position(record.offset + HEADER_SIZE);
+        view.limit(record.offset + HEADER_SIZE + record.length);
+        return view.slice();
+    }
+
+    synchronized void acknowledge(Record record) {
+        Segment segment = record.segment;
+        segment.buffer.put(record.offset + Integer.BYTES, ACKNOWLEDGED);
+        segment.pendingRecords--;
+
+        if (segment.pendingRecords == 0 && segment != currentSegment) {
+            segments.remove(segment);
+            this.deleteSegment(segment);
+            this.deleteDirectoryIfDrained(segment.directory);
+        }
+    }
+
+    /**
+     * Flushes all the segments to disk and releases the spool. Fully acknowledged segments are deleted,
+     * so only undelivered calls are left for the next run.
+     */
+    synchronized void close() {
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (segment.pendingRecords == 0) {
+                this.deleteSegment(segment);
+            } else {
+                segment.buffer.force();
+                this.closeQuietly(segment.channel);
+            }
+        }
+        segments.clear();
+        currentSegment = null;
+
+        adoptedDirectoryLocks.values().forEach(this::closeQuietly);
+        adoptedDirectoryLocks.clear();
+
+        try {
+            lock.release();
+        } catch (IOException e) {
+            log.debug("Could not release lock of spool directory {}: {}", directory, e.getMessage());
+        }
+        this.closeQuietly(lockChannel);
+        this.deleteDirectoryIfDrained(directory);
+    }
+
+    private void rollSegment(int size) throws IOException {
+        if (currentSegment != null) {
+            currentSegment.buffer.force();
+            if (currentSegment.pendingRecords == 0) {
+                segments.remove(currentSegment);
+                this.deleteSegment(currentSegment);
+            }
+        }
+
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_FILE_PREFIX, nextSegmentIndex++, SEGMENT_FILE_SUFFIX));
+        currentSegment = this.openSegment(directory, path, size);
+        segments.add(currentSegment);
+    }
+
+    private Segment openSegment(Path segmentDirectory, Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(segmentDirectory, path, channel, buffer);
+    }
+
+    private void deleteSegment(Segment segment) {
+        this.closeQuietly(segment.channel);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // the file may still be mapped on some platforms
+            segment.path.toFile().deleteOnExit();
+        }
+    }
+
+    private void deleteDirectoryIfDrained(Path segmentDirectory) {
+        if (segmentDirectory.equals(directory) && lock.isValid()) {
+            return;
+        }
+        for (Segment segment : segments) {
+            if (segment.directory.equals(segmentDirectory)) {
+                return;
+            }
+        }
+        FileChannel adoptedDirectoryLock = adoptedDirectoryLocks.remove(segmentDirectory);
+        try {
+            Files.deleteIfExists(segmentDirectory.resolve(LOCK_FILE_NAME));
+            Files.deleteIfExists(segmentDirectory);
+        } catch (IOException e) {
+            log.debug("Could not delete spool directory {}: {}", segmentDirectory, e.getMessage());
+        } finally {
+            if (adoptedDirectoryLock != null) {
+                this.closeQuietly(adoptedDirectoryLock);
+            }
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Could not close spool file: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects latencies and traffic of calls to Zebrunner API per endpoint.
+ * <p>Metrics are recorded by http layer the clients are built on (see {@link UnirestApiClientInstrumentation}
+ * and {@link TransportAsyncZebrunnerApiClient}), so particular calls do not need to be aware of them.
+ * An endpoint is identified by http method and path template, e.g. 'POST /api/reporting/v1/test-runs/{testRunId}/logs'.
+ */
+@Slf4j
+class ApiClientMetrics implements ApiClientMetricsMXBean {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final class InstanceHolder {
+
+        private static final ApiClientMetrics INSTANCE = new ApiClientMetrics();
+
+    }
+
+    static ApiClientMetrics getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private ApiClientMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, new ObjectName("com.zebrunner.agent:type=ApiClientMetrics"));
+        } catch (Exception e) {
+            log.debug("Could not register api client metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    private static final class EndpointMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+
+    }
+
+    private EndpointMetrics getEndpointMetrics(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, key -> new EndpointMetrics());
+    }
+
+    /**
+     * @param method http method
+     * @param url    url template of the request, with or without scheme, host and query string
+     * @return identifier of the endpoint used by the metrics
+     */
+    static String toEndpoint(String method, String url) {
+        String path = url;
+        int schemeEnd = path.indexOf("://");
+        if (schemeEnd != -1) {
+            int pathStart = path.indexOf('/', schemeEnd + 3);
+            path = pathStart != -1 ? path.substring(pathStart) : "/";
+        }
+        int queryStart = path.indexOf('?');
+        if (queryStart != -1) {
+            path = path.substring(0, queryStart);
+        }
+        return method + " " + path;
+    }
+
+    /**
+     * Records completion of a single http request (i.e. a single attempt of a call).
+     *
+     * @param failed true if the request failed with an exception or with 4xx or 5xx status
+     */
+    void recordRequest(String endpoint, long durationNanos, boolean failed) {
+        EndpointMetrics metrics = this.getEndpointMetrics(endpoint);
+        metrics.latency.record(durationNanos);
+        if (failed) {
+            metrics.failures.increment();
+        }
+    }
+
+    void recordBytesSent(String endpoint, long bytes) {
+        this.getEndpointMetrics(endpoint).bytesSent.add(bytes);
+    }
+
+    void recordBytesReceived(String endpoint, long bytes) {
+        this.getEndpointMetrics(endpoint).bytesReceived.add(bytes);
+    }
+
+    /**
+     * Wraps a request body stream so that the bytes are accounted as they are actually read by the http client.
+     */
+    InputStream countSentBytes(String endpoint, InputStream body) {
+        LongAdder bytesSent = this.getEndpointMetrics(endpoint).bytesSent;
+        return new FilterInputStream(body) {
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    bytesSent.increment();
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytesSent.add(read);
+                }
+                return read;
+            }
+
+        };
+    }
+
+    @Override
+    public List<ApiEndpointStatistics> getEndpoints() {
+        List<ApiEndpointStatistics> statistics = new ArrayList<>();
+        endpoints.forEach((endpoint, metrics) -> statistics.add(new ApiEndpointStatistics(
+                endpoint,
+                metrics.latency.getCount(),
+                metrics.failures.sum(),
+                metrics.bytesSent.sum(),
+                metrics.bytesReceived.sum(),
+                metrics.latency.getMeanMicros() / MICROS_PER_MILLI,
+                metrics.latency.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                metrics.latency.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                metrics.latency.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                metrics.latency.getMaxMicros() / MICROS_PER_MILLI
+        )));
+        statistics.sort(Comparator.comparing(ApiEndpointStatistics::getEndpoint));
+        return statistics;
+    }
+
+    @Override
+    public long getRequests() {
+        return endpoints.values().stream().mapToLong(metrics -> metrics.latency.getCount()).sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return endpoints.values().stream().mapToLong(metrics -> metrics.failures.sum()).sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return RetryPolicy.getInstance().getRetries();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return endpoints.values().stream().mapToLong(metrics -> metrics.bytesSent.sum()).sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return endpoints.values().stream().mapToLong(metrics -> metrics.bytesReceived.sum()).sum();
+    }
+
+    @Override
+    public String getSummary() {
+        String rowFormat = "%-90s %9s %9s %12s %12s %9s %9s %9s %9s %9s%n";
+        StringBuilder summary = new StringBuilder("Zebrunner API calls statistics (latencies are in milliseconds):\n");
+        summary.append(String.format(
+                rowFormat, "Endpoint", "Requests", "Failures", "Sent", "Received", "Mean", "p50", "p90", "p99", "Max"
+        ));
+        for (ApiEndpointStatistics endpoint : this.getEndpoints()) {
+            summary.append(String.format(
+                    rowFormat,
+                    endpoint.getEndpoint(),
+                    endpoint.getRequests(),
+                    endpoint.getFailures(),
+                    endpoint.getBytesSent(),
+                    endpoint.getBytesReceived(),
+                    String.format("%.1f", endpoint.getMeanMillis()),
+                    String.format("%.1f", endpoint.getP50Millis()),
+                    String.format("%.1f", endpoint.getP90Millis()),
+                    String.format("%.1f", endpoint.getP99Millis()),
+                    String.format("%.1f", endpoint.getMaxMillis())
+            ));
+        }
+        RetryPolicy retryPolicy = RetryPolicy.getInstance();
+        summary.append(String.format(
+                "Total: %d requests, %d failures, %d bytes sent, %d bytes received. "
+                        + "Retries: %d, exhausted calls: %d, short-circuited calls: %d.",
+                this.getRequests(), this.getFailures(), this.getBytesSent(), this.getBytesReceived(),
+                retryPolicy.getRetries(), retryPolicy.getExhaustedCalls(), retryPolicy.getShortCircuitedCalls()
+        ));
+        ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.getInstance();
+        summary.append(String.format(
+                "%nConcurrency limit: %d (max %d), delayed calls: %d, dropped calls: %d.",
+                concurrencyLimiter.getLimit(), concurrencyLimiter.getMaxLimit(),
+                concurrencyLimiter.getDelayedCalls(), concurrencyLimiter.getDroppedCalls()
+        ));
+        return summary.toString();
+    }
+
+}
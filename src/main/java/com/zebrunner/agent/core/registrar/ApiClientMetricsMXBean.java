@@ -0,0 +1,24 @@
+package com.zebrunner.agent.core.registrar;
+
+import java.util.List;
+
+/**
+ * Management interface exposing latencies and traffic of calls to Zebrunner API collected by {@link ApiClientMetrics}.
+ */
+public interface ApiClientMetricsMXBean {
+
+    List<ApiEndpointStatistics> getEndpoints();
+
+    long getRequests();
+
+    long getFailures();
+
+    long getRetries();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    String getSummary();
+
+}
@@ -0,0 +1,26 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.Value;
+
+/**
+ * Snapshot of statistics of calls to a single Zebrunner API endpoint. Latencies are measured per http request,
+ * so every retry attempt of a call is accounted separately.
+ */
+@Value
+public class ApiEndpointStatistics {
+
+    /**
+     * Http method and path template of the endpoint, e.g. 'POST /api/reporting/v1/test-runs/{testRunId}/logs'
+     */
+    String endpoint;
+    long requests;
+    long failures;
+    long bytesSent;
+    long bytesReceived;
+    double meanMillis;
+    double p50Millis;
+    double p90Millis;
+    double p99Millis;
+    double maxMillis;
+
+}
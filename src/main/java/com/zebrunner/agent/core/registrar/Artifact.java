@@ -24,11 +24,13 @@ import java.util.concurrent.TimeUnit;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class Artifact {
 
-    private static final ExecutorService UPLOAD_EXECUTOR = Executors.newFixedThreadPool(8);
+    private static final ExecutorService UPLOAD_EXECUTOR = Executors.newFixedThreadPool(
+            8, LogsCaptureGuard.agentThreadFactory(Executors.defaultThreadFactory())
+    );
     private static final ZebrunnerApiClient API_CLIENT = ClientRegistrar.getClient();
 
     static {
-        Runtime.getRuntime().addShutdownHook(new Thread(Artifact::shutdown));
+        Runtime.getRuntime().addShutdownHook(LogsCaptureGuard.newAgentThread(Artifact::shutdown, "zebrunner-artifact-shutdown"));
     }
 
     private static void shutdown() {
@@ -0,0 +1,68 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking flavor of {@link ZebrunnerApiClient}. Every call returns immediately, the returned future
+ * is completed once Zebrunner responds. Unlike the blocking client, a future is completed exceptionally
+ * (usually with {@link com.zebrunner.agent.core.exception.ServerException}) whenever Zebrunner rejects the request,
+ * so it is up to the caller to decide whether the failure is worth to be rethrown or just logged.
+ */
+public interface AsyncZebrunnerApiClient {
+
+    CompletableFuture<TestRunDTO> registerTestRunStart(TestRunDTO testRun);
+
+    CompletableFuture<Void> patchTestRunBuild(Long testRunId, String build);
+
+    CompletableFuture<Void> setTestRunPlatform(Long testRunId, String platformName, String platformVersion);
+
+    CompletableFuture<Void> registerTestRunFinish(TestRunDTO testRun);
+
+    CompletableFuture<TestDTO> registerTestStart(Long testRunId, TestDTO test, boolean headless);
+
+    CompletableFuture<TestDTO> registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless);
+
+    CompletableFuture<TestDTO> registerHeadlessTestUpdate(Long testRunId, TestDTO test);
+
+    CompletableFuture<Void> revertTestRegistration(Long testRunId, Long testId);
+
+    CompletableFuture<Void> registerTestFinish(Long testRunId, TestDTO test);
+
+    CompletableFuture<Void> sendLogs(Collection<Log> logs, Long testRunId);
+
+    CompletableFuture<Void> upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults);
+
+    CompletableFuture<Void> uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt);
+
+    CompletableFuture<Void> uploadTestRunArtifact(InputStream artifact, String name, Long testRunId);
+
+    CompletableFuture<Void> uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId);
+
+    CompletableFuture<Void> attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference);
+
+    CompletableFuture<Void> attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference);
+
+    CompletableFuture<Void> attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels);
+
+    CompletableFuture<Void> attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels);
+
+    CompletableFuture<ExchangeRunContextResponse> exchangeRerunCondition(String rerunCondition);
+
+    CompletableFuture<TestSessionDTO> startSession(Long testRunId, TestSessionDTO testSession);
+
+    CompletableFuture<Void> updateSession(Long testRunId, TestSessionDTO testSession);
+
+    CompletableFuture<Boolean> isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace);
+
+}
@@ -0,0 +1,160 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Adapts {@link AsyncZebrunnerApiClient} to the blocking {@link ZebrunnerApiClient} contract: calling thread waits
+ * for the response. Just like in the default blocking client, failures of test run and test lifecycle calls
+ * are rethrown, while failures of logs, screenshots, artifacts, labels and test case results are only logged.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class BlockingZebrunnerApiClient implements ZebrunnerApiClient {
+
+    private final AsyncZebrunnerApiClient delegate;
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = RetryPolicy.unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void awaitQuietly(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            log.error(RetryPolicy.unwrap(e).getMessage());
+        }
+    }
+
+    @Override
+    public TestRunDTO registerTestRunStart(TestRunDTO testRun) {
+        return await(delegate.registerTestRunStart(testRun));
+    }
+
+    @Override
+    public void patchTestRunBuild(Long testRunId, String build) {
+        await(delegate.patchTestRunBuild(testRunId, build));
+    }
+
+    @Override
+    public void setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
+        await(delegate.setTestRunPlatform(testRunId, platformName, platformVersion));
+    }
+
+    @Override
+    public void registerTestRunFinish(TestRunDTO testRun) {
+        await(delegate.registerTestRunFinish(testRun));
+    }
+
+    @Override
+    public TestDTO registerTestStart(Long testRunId, TestDTO test, boolean headless) {
+        return await(delegate.registerTestStart(testRunId, test, headless));
+    }
+
+    @Override
+    public TestDTO registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
+        return await(delegate.registerTestRerunStart(testRunId, testId, test, headless));
+    }
+
+    @Override
+    public TestDTO registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
+        return await(delegate.registerHeadlessTestUpdate(testRunId, test));
+    }
+
+    @Override
+    public void revertTestRegistration(Long testRunId, Long testId) {
+        await(delegate.revertTestRegistration(testRunId, testId));
+    }
+
+    @Override
+    public void registerTestFinish(Long testRunId, TestDTO test) {
+        await(delegate.registerTestFinish(testRunId, test));
+    }
+
+    @Override
+    public void sendLogs(Collection<Log> logs, Long testRunId) {
+        awaitQuietly(delegate.sendLogs(logs, testRunId));
+    }
+
+    @Override
+    public void upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
+        awaitQuietly(delegate.upsertTestCaseResults(testRunId, testId, testCaseResults));
+    }
+
+    @Override
+    public void uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        awaitQuietly(delegate.uploadScreenshot(screenshot, testRunId, testId, capturedAt));
+    }
+
+    @Override
+    public void uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
+        awaitQuietly(delegate.uploadTestRunArtifact(artifact, name, testRunId));
+    }
+
+    @Override
+    public void uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
+        awaitQuietly(delegate.uploadTestArtifact(artifact, name, testRunId, testId));
+    }
+
+    @Override
+    public void attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference) {
+        awaitQuietly(delegate.attachArtifactReferenceToTestRun(testRunId, artifactReference));
+    }
+
+    @Override
+    public void attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
+        awaitQuietly(delegate.attachArtifactReferenceToTest(testRunId, testId, artifactReference));
+    }
+
+    @Override
+    public void attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
+        awaitQuietly(delegate.attachLabelsToTestRun(testRunId, labels));
+    }
+
+    @Override
+    public void attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
+        awaitQuietly(delegate.attachLabelsToTest(testRunId, testId, labels));
+    }
+
+    @Override
+    public ExchangeRunContextResponse exchangeRerunCondition(String rerunCondition) {
+        return await(delegate.exchangeRerunCondition(rerunCondition));
+    }
+
+    @Override
+    public TestSessionDTO startSession(Long testRunId, TestSessionDTO testSession) {
+        return await(delegate.startSession(testRunId, testSession));
+    }
+
+    @Override
+    public void updateSession(Long testRunId, TestSessionDTO testSession) {
+        await(delegate.updateSession(testRunId, testSession));
+    }
+
+    @Override
+    public boolean isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
+        return await(delegate.isKnownIssueAttachedToTest(testRunId, testId, failureStacktrace));
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Priority classes of calls to Zebrunner, from the highest to the lowest.
+ * <p>Every class has a share of the concurrency limit reserved for it (see {@link ConcurrencyLimiter}),
+ * so bulk transfers can never occupy all the capacity and delay registration of tests.
+ * The rest of the limit is shared: waiting calls of higher classes are let through first.
+ */
+@Getter
+@RequiredArgsConstructor
+enum CallPriority {
+
+    /**
+     * Start and finish of test runs, tests and test sessions
+     */
+    LIFECYCLE(0.25, true),
+    /**
+     * Labels, test case results, artifact references and other attributes of tests and test runs
+     */
+    METADATA(0.15, true),
+    /**
+     * Batches of test logs
+     */
+    LOGS(0.15, true),
+    /**
+     * Screenshots and artifacts. Latency of such calls depends on size of the payload rather than
+     * on the load on Zebrunner, so it is not taken into account by the limiter
+     */
+    BULK(0.10, false);
+
+    /**
+     * Share of the concurrency limit reserved for the calls of the class
+     */
+    private final double reservedShare;
+    /**
+     * True if latency of the calls reflects the load on Zebrunner
+     */
+    private final boolean latencySensitive;
+
+}
@@ -0,0 +1,119 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker shared by all the calls to Zebrunner.
+ * <p>The breaker opens after a number of consecutive failures and rejects calls until the open period is over.
+ * Then a single probe call is let through (half-open state): its success closes the breaker,
+ * while its failure opens the breaker again for twice as long (up to the max open period).
+ */
+@Slf4j
+class CircuitBreaker {
+
+    enum State {
+
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+
+    }
+
+    private final int failureThreshold;
+    private final long minOpenPeriodMillis;
+    private final long maxOpenPeriodMillis;
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong openings = new AtomicLong();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openPeriodMillis;
+    private long openedUntil;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int failureThreshold, long minOpenPeriodMillis, long maxOpenPeriodMillis) {
+        this.failureThreshold = failureThreshold;
+        this.minOpenPeriodMillis = minOpenPeriodMillis;
+        this.maxOpenPeriodMillis = maxOpenPeriodMillis;
+        this.openPeriodMillis = minOpenPeriodMillis;
+    }
+
+    /**
+     * @return true if the call is allowed to be performed. Every allowed call must be followed by
+     * either {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openedUntil) {
+                    rejectedCalls.incrementAndGet();
+                    return false;
+                }
+                log.debug("Probing Zebrunner availability after {} ms of suspended calls.", openPeriodMillis);
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                if (probeInFlight) {
+                    rejectedCalls.incrementAndGet();
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Zebrunner is available again, calls are resumed.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        openPeriodMillis = minOpenPeriodMillis;
+        probeInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            this.open(Math.min(openPeriodMillis * 2, maxOpenPeriodMillis));
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            this.open(minOpenPeriodMillis);
+        }
+        probeInFlight = false;
+    }
+
+    /**
+     * Releases the call which outcome says nothing about Zebrunner health.
+     */
+    synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    private void open(long periodMillis) {
+        log.warn("Zebrunner is not available, calls are suspended for {} ms.", periodMillis);
+        state = State.OPEN;
+        openPeriodMillis = periodMillis;
+        openedUntil = System.currentTimeMillis() + periodMillis;
+        openings.incrementAndGet();
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    long getOpenings() {
+        return openings.get();
+    }
+
+}
@@ -1,18 +1,136 @@
 package com.zebrunner.agent.core.registrar;
 
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.transport.HttpTransportProvider;
+import com.zebrunner.agent.core.transport.JdkHttpTransportProvider;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Holds Zebrunner API clients used by the agent. A custom client of either flavor (blocking or non-blocking)
+ * can be registered - the other flavor is adapted from it, so both of them always target the same backend.
+ * <p>If async registration is enabled, the default blocking client hands out provisional test ids
+ * and sends test-related calls in background (see {@link SequencingZebrunnerApiClient}).
+ * If spool is enabled, outbound calls of default clients are journaled on disk and replayed
+ * until Zebrunner confirms them (see {@link SpoolingAsyncZebrunnerApiClient}).
+ * <p>Default clients are built on Unirest if it is on the classpath. Otherwise, or if another transport is configured
+ * explicitly, they talk to Zebrunner through an {@link HttpTransportProvider} (see {@link TransportAsyncZebrunnerApiClient}).
+ */
+@Slf4j
 public class ClientRegistrar {
 
+    private static final String UNIREST_TRANSPORT = "unirest";
+
     private static volatile ZebrunnerApiClient client;
+    private static volatile AsyncZebrunnerApiClient asyncClient;
+    private static volatile ZebrunnerApiClient sequencingClient;
+    private static volatile AsyncZebrunnerApiClient spoolingClient;
+    private static volatile boolean spoolingClientInitialized;
+    private static volatile AsyncZebrunnerApiClient transportClient;
+    private static volatile ZebrunnerApiClient blockingTransportClient;
+    private static volatile boolean transportClientInitialized;
 
     public static synchronized ZebrunnerApiClient getClient() {
         if (client == null) {
-            return UnirestZebrunnerApiClient.getInstance();
+            if (ConfigurationHolder.isClientAsyncRegistrationEnabled()) {
+                if (sequencingClient == null) {
+                    sequencingClient = new SequencingZebrunnerApiClient(getAsyncClient());
+                }
+                return sequencingClient;
+            }
+            AsyncZebrunnerApiClient spooling = getSpoolingClient();
+            if (spooling != null) {
+                return new BlockingZebrunnerApiClient(spooling);
+            }
+            return getDefaultClient();
         }
         return client;
     }
 
+    public static synchronized AsyncZebrunnerApiClient getAsyncClient() {
+        if (asyncClient == null) {
+            AsyncZebrunnerApiClient spooling = getSpoolingClient();
+            if (spooling != null) {
+                return spooling;
+            }
+            return getDefaultAsyncClient();
+        }
+        return asyncClient;
+    }
+
+    private static AsyncZebrunnerApiClient getSpoolingClient() {
+        if (!spoolingClientInitialized && ConfigurationHolder.isClientSpoolEnabled() && ConfigurationHolder.isReportingEnabled()) {
+            spoolingClientInitialized = true;
+            try {
+                spoolingClient = new SpoolingAsyncZebrunnerApiClient(
+                        getDefaultAsyncClient(), Paths.get(ConfigurationHolder.getClientSpoolDir())
+                );
+            } catch (IOException e) {
+                log.error("Could not initialize spool of Zebrunner API calls, so calls are sent without spooling: {}", e.getMessage());
+            }
+        }
+        return spoolingClient;
+    }
+
+    private static ZebrunnerApiClient getDefaultClient() {
+        AsyncZebrunnerApiClient transport = getTransportClient();
+        if (transport != null) {
+            if (blockingTransportClient == null) {
+                blockingTransportClient = new BlockingZebrunnerApiClient(transport);
+            }
+            return blockingTransportClient;
+        }
+        return UnirestZebrunnerApiClient.getInstance();
+    }
+
+    private static AsyncZebrunnerApiClient getDefaultAsyncClient() {
+        AsyncZebrunnerApiClient transport = getTransportClient();
+        return transport != null ? transport : UnirestAsyncZebrunnerApiClient.getInstance();
+    }
+
+    /**
+     * @return client built on configured http transport, or null if Unirest clients should be used
+     */
+    private static AsyncZebrunnerApiClient getTransportClient() {
+        if (!transportClientInitialized) {
+            transportClientInitialized = true;
+
+            String transportName = ConfigurationHolder.getClientTransport();
+            if (transportName == null) {
+                transportName = isUnirestAvailable() ? UNIREST_TRANSPORT : JdkHttpTransportProvider.NAME;
+            }
+            if (!UNIREST_TRANSPORT.equalsIgnoreCase(transportName)) {
+                String name = transportName;
+                transportClient = HttpTransportProvider.find(name)
+                                                       .map(provider -> new TransportAsyncZebrunnerApiClient(provider.create()))
+                                                       .orElse(null);
+                if (transportClient == null) {
+                    log.warn("Http transport '{}' is not available, so Unirest is used to talk to Zebrunner.", name);
+                }
+            }
+        }
+        return transportClient;
+    }
+
+    private static boolean isUnirestAvailable() {
+        try {
+            Class.forName("kong.unirest.UnirestInstance", false, ClientRegistrar.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
     public static synchronized void register(ZebrunnerApiClient newClient) {
         client = newClient;
+        asyncClient = new ExecutorAsyncZebrunnerApiClient(newClient);
+    }
+
+    public static synchronized void register(AsyncZebrunnerApiClient newClient) {
+        asyncClient = newClient;
+        client = new BlockingZebrunnerApiClient(newClient);
     }
 
 }
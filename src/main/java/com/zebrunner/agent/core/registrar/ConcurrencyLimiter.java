@@ -0,0 +1,380 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive limit of concurrent calls to Zebrunner shared by all the api clients.
+ * <p>Every attempt to call Zebrunner holds a {@link Permit} while it is in flight. Calls exceeding the limit
+ * wait in a queue: blocking callers wait for a permit, while non-blocking callers get a future
+ * which is completed once a permit is released, so excess calls do not occupy any thread or connection.
+ * <p>Calls are queued by {@link CallPriority}. A share of the limit is reserved for every priority class,
+ * while the rest of the limit is shared by all the classes and is granted to waiting calls of higher classes first.
+ * <p>The limit follows the TCP Vegas congestion avoidance scheme: it is compared to the number of calls queued
+ * on the server side, estimated from the ratio of the minimal (no-load) and the observed latencies. The limit grows
+ * by one per round trip while the estimated queue is short, and shrinks by one per round trip once the queue grows.
+ * If Zebrunner throttles calls (429 or 503 status) or does not respond in time, the limit is decreased multiplicatively
+ * (at most once per round trip), just like in AIMD.
+ */
+@Slf4j
+class ConcurrencyLimiter implements ConcurrencyLimiterMXBean {
+
+    private static final int MIN_LIMIT = 1;
+    private static final int MAX_INITIAL_LIMIT = 10;
+    private static final int QUEUE_ALPHA = 3;
+    private static final int QUEUE_BETA = 6;
+    private static final double BACKOFF_RATIO = 0.75;
+    /**
+     * Number of latency samples after which min latency is forgotten. Otherwise, the limit would shrink forever
+     * if min latency was observed at a moment of unusually low load.
+     */
+    private static final int NO_LOAD_LATENCY_RESET_SAMPLES = 1000;
+    private static final double SMOOTHING_FACTOR = 0.1;
+    /**
+     * Minimal interval between decreases of the limit until latency of a round trip is known. Otherwise, a burst
+     * of calls dropped at startup would collapse the limit at once, since they all overlap a single round trip.
+     */
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final class InstanceHolder {
+
+        private static final ConcurrencyLimiter INSTANCE = new ConcurrencyLimiter();
+
+    }
+
+    static ConcurrencyLimiter getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    enum Outcome {
+
+        /**
+         * Zebrunner processed the call, so its latency reflects the load on the server
+         */
+        SUCCESS,
+        /**
+         * Zebrunner throttled the call or failed to process it in time
+         */
+        DROPPED,
+        /**
+         * Outcome of the call says nothing about the load on Zebrunner
+         */
+        IGNORED
+
+    }
+
+    private final boolean enabled;
+    private final int maxLimit;
+    private final Executor dispatcher = Executors.newSingleThreadExecutor(
+            runnable -> LogsCaptureGuard.newAgentThread(runnable, "zebrunner-call-dispatcher")
+    );
+
+    private static final CallPriority[] PRIORITIES = CallPriority.values();
+
+    /**
+     * Waiting calls and numbers of calls in flight, indexed by ordinal of {@link CallPriority}
+     */
+    private final Queue<CompletableFuture<Permit>>[] waiters = newWaiters();
+    private final int[] inFlightByPriority = new int[PRIORITIES.length];
+    private double limit;
+    private int inFlight;
+    private long noLoadLatencyNanos;
+    private double smoothedLatencyNanos;
+    private int samplesSinceReset;
+    private long lastDecreaseNanos;
+
+    private final AtomicLong delayedCalls = new AtomicLong();
+    private final AtomicLong droppedCalls = new AtomicLong();
+
+    private ConcurrencyLimiter() {
+        this.enabled = ConfigurationHolder.isClientConcurrencyLimitEnabled();
+        this.maxLimit = Math.max(MIN_LIMIT, ConfigurationHolder.getClientMaxConcurrency());
+        this.limit = Math.min(maxLimit, MAX_INITIAL_LIMIT);
+        this.lastDecreaseNanos = System.nanoTime() - MIN_DECREASE_INTERVAL_NANOS;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, new ObjectName("com.zebrunner.agent:type=ConcurrencyLimiter"));
+        } catch (Exception e) {
+            log.debug("Could not register concurrency limiter MBean: {}", e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Queue<CompletableFuture<Permit>>[] newWaiters() {
+        Queue<CompletableFuture<Permit>>[] waiters = new Queue[PRIORITIES.length];
+        for (int i = 0; i < waiters.length; i++) {
+            waiters[i] = new ArrayDeque<>();
+        }
+        return waiters;
+    }
+
+    /**
+     * Permission to perform a single attempt of a call. Must be released exactly once when the attempt is completed.
+     */
+    final class Permit {
+
+        private final CallPriority priority;
+        private final long acquiredAtNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(CallPriority priority) {
+            this.priority = priority;
+        }
+
+        void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                ConcurrencyLimiter.this.release(priority, System.nanoTime() - acquiredAtNanos, outcome);
+            }
+        }
+
+    }
+
+    /**
+     * @param priority priority class of the call
+     * @return future completed with a permit once the call fits the limit
+     */
+    CompletableFuture<Permit> acquire(CallPriority priority) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(new Permit(priority));
+        }
+        synchronized (this) {
+            Queue<CompletableFuture<Permit>> priorityWaiters = waiters[priority.ordinal()];
+            if (priorityWaiters.isEmpty() && this.canGrant(priority)) {
+                this.onGranted(priority);
+                return CompletableFuture.completedFuture(new Permit(priority));
+            }
+            CompletableFuture<Permit> waiter = new CompletableFuture<>();
+            priorityWaiters.add(waiter);
+            delayedCalls.incrementAndGet();
+            return waiter;
+        }
+    }
+
+    /**
+     * A call can be let through if its class has not used up its reservation yet,
+     * or if there is room in the shared part of the limit (i.e. the limit minus unused reservations of other classes).
+     * A reservation is honored even if the limit has just been decreased below the number of calls in flight,
+     * so lifecycle calls never wait for completion of bulk transfers. Since a share of a small limit rounds down to zero,
+     * lifecycle calls are guaranteed at least one permit on top of the limit.
+     */
+    private boolean canGrant(CallPriority priority) {
+        int limit = this.getLimit();
+        int reservation = this.getReservation(priority, limit);
+        if (priority == CallPriority.LIFECYCLE) {
+            reservation = Math.max(1, reservation);
+        }
+        if (inFlightByPriority[priority.ordinal()] < reservation) {
+            return true;
+        }
+        int unusedReservations = 0;
+        for (CallPriority other : PRIORITIES) {
+            if (other != priority) {
+                unusedReservations += Math.max(0, this.getReservation(other, limit) - inFlightByPriority[other.ordinal()]);
+            }
+        }
+        return inFlight + unusedReservations < limit;
+    }
+
+    private int getReservation(CallPriority priority, int limit) {
+        return (int) (limit * priority.getReservedShare());
+    }
+
+    private void onGranted(CallPriority priority) {
+        inFlight++;
+        inFlightByPriority[priority.ordinal()]++;
+    }
+
+    /**
+     * @return executor resuming non-blocking calls which waited for a permit. Such calls must not be resumed
+     * by the thread releasing a permit, since the thread may belong to http client or to another caller
+     */
+    Executor getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Blocking flavor of {@link #acquire(CallPriority)}.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit
+     */
+    Permit acquireBlocking(CallPriority priority) throws InterruptedException {
+        CompletableFuture<Permit> permit = this.acquire(priority);
+        try {
+            return permit.get();
+        } catch (InterruptedException e) {
+            if (!permit.cancel(false)) {
+                // the permit was granted right before the cancellation
+                permit.join().release(Outcome.IGNORED);
+            }
+            throw e;
+        } catch (Exception e) {
+            // futures of permits are never completed exceptionally
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void release(CallPriority priority, long latencyNanos, Outcome outcome) {
+        if (!enabled) {
+            return;
+        }
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        List<CallPriority> grantedPriorities = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            inFlightByPriority[priority.ordinal()]--;
+            if (outcome == Outcome.SUCCESS && !priority.isLatencySensitive()) {
+                outcome = Outcome.IGNORED;
+            }
+            this.adjustLimit(latencyNanos, outcome);
+
+            for (CallPriority waiting : PRIORITIES) {
+                Queue<CompletableFuture<Permit>> priorityWaiters = waiters[waiting.ordinal()];
+                while (!priorityWaiters.isEmpty() && this.canGrant(waiting)) {
+                    granted.add(priorityWaiters.poll());
+                    grantedPriorities.add(waiting);
+                    this.onGranted(waiting);
+                }
+            }
+        }
+        // waiters are resumed outside of the lock, since non-blocking ones proceed with the call right away
+        for (int i = 0; i < granted.size(); i++) {
+            Permit permit = new Permit(grantedPriorities.get(i));
+            if (!granted.get(i).complete(permit)) {
+                permit.release(Outcome.IGNORED);
+            }
+        }
+    }
+
+    private void adjustLimit(long latencyNanos, Outcome outcome) {
+        long now = System.nanoTime();
+        switch (outcome) {
+            case DROPPED:
+                droppedCalls.incrementAndGet();
+                double decreaseIntervalNanos = smoothedLatencyNanos == 0 ? MIN_DECREASE_INTERVAL_NANOS : smoothedLatencyNanos;
+                if (now - lastDecreaseNanos >= decreaseIntervalNanos) {
+                    lastDecreaseNanos = now;
+                    this.setLimit(limit * BACKOFF_RATIO);
+                }
+                break;
+            case SUCCESS:
+                smoothedLatencyNanos = smoothedLatencyNanos == 0
+                        ? latencyNanos
+                        : smoothedLatencyNanos + SMOOTHING_FACTOR * (latencyNanos - smoothedLatencyNanos);
+                if (noLoadLatencyNanos == 0 || latencyNanos < noLoadLatencyNanos || ++samplesSinceReset > NO_LOAD_LATENCY_RESET_SAMPLES) {
+                    noLoadLatencyNanos = Math.max(1, latencyNanos);
+                    samplesSinceReset = 0;
+                }
+
+                // a single sample adjusts the limit by 1/limit, so the limit changes by one per round trip
+                double queue = limit * (1 - (double) noLoadLatencyNanos / Math.max(1, latencyNanos));
+                if (queue < QUEUE_ALPHA) {
+                    // the limit is not increased while it is not reached, since latency says nothing about it then
+                    if (inFlight + 1 >= limit / 2) {
+                        this.setLimit(limit + 1 / limit);
+                    }
+                } else if (queue > QUEUE_BETA) {
+                    this.setLimit(limit - 1 / limit);
+                }
+                break;
+            case IGNORED:
+            default:
+                break;
+        }
+    }
+
+    private void setLimit(double newLimit) {
+        int previousLimit = this.getLimit();
+        limit = Math.max(MIN_LIMIT, Math.min(maxLimit, newLimit));
+        if (this.getLimit() != previousLimit) {
+            log.debug("Limit of concurrent calls to Zebrunner is changed from {} to {}.", previousLimit, this.getLimit());
+        }
+    }
+
+    /**
+     * Scales size of a batch of items (e.g. logs) by the current limit: batches are smaller while Zebrunner is loaded,
+     * so that every single call stays short, and grow back as Zebrunner recovers.
+     *
+     * @param maxBatchSize size of a batch while the limit is at its max
+     * @return size of a batch to be sent right now
+     */
+    int scaleBatchSize(int maxBatchSize) {
+        if (!enabled) {
+            return maxBatchSize;
+        }
+        return Math.max(1, (int) ((long) maxBatchSize * this.getLimit() / maxLimit));
+    }
+
+    @Override
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @Override
+    public synchronized int getInFlightCalls() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized int getWaitingCalls() {
+        int waitingCalls = 0;
+        for (Queue<CompletableFuture<Permit>> priorityWaiters : waiters) {
+            waitingCalls += priorityWaiters.size();
+        }
+        return waitingCalls;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getInFlightCallsByPriority() {
+        Map<String, Integer> inFlightCalls = new LinkedHashMap<>();
+        for (CallPriority priority : PRIORITIES) {
+            inFlightCalls.put(priority.name(), inFlightByPriority[priority.ordinal()]);
+        }
+        return inFlightCalls;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getWaitingCallsByPriority() {
+        Map<String, Integer> waitingCalls = new LinkedHashMap<>();
+        for (CallPriority priority : PRIORITIES) {
+            waitingCalls.put(priority.name(), waiters[priority.ordinal()].size());
+        }
+        return waitingCalls;
+    }
+
+    @Override
+    public long getDelayedCalls() {
+        return delayedCalls.get();
+    }
+
+    @Override
+    public long getDroppedCalls() {
+        return droppedCalls.get();
+    }
+
+    @Override
+    public synchronized double getNoLoadLatencyMillis() {
+        return noLoadLatencyNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}
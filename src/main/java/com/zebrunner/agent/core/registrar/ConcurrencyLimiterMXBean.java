@@ -0,0 +1,28 @@
+package com.zebrunner.agent.core.registrar;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing state of {@link ConcurrencyLimiter}.
+ */
+public interface ConcurrencyLimiterMXBean {
+
+    int getLimit();
+
+    int getMaxLimit();
+
+    int getInFlightCalls();
+
+    int getWaitingCalls();
+
+    Map<String, Integer> getInFlightCallsByPriority();
+
+    Map<String, Integer> getWaitingCallsByPriority();
+
+    long getDelayedCalls();
+
+    long getDroppedCalls();
+
+    double getNoLoadLatencyMillis();
+
+}
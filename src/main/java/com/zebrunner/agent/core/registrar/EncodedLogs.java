@@ -0,0 +1,148 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Batch of logs already encoded to JSON (see {@link OffHeapLogsBuffer}). The batch is sent by copying the encoded bytes
+ * straight to the request body (see {@link JsonBody}), while the logs themselves are decoded only if a client needs
+ * to inspect them, e.g. to resolve ids of tests whose registration is still in progress.
+ * <p>The batch is read-only and valid only until the logs are sent, since the slabs are reused afterwards.
+ */
+final class EncodedLogs extends AbstractCollection<Log> {
+
+    private static final JsonMapper JSON_MAPPER = new JsonMapper();
+
+    private final List<LogSlab> slabs;
+    private final int size;
+    private final long length;
+    private final boolean provisionalTestIds;
+
+    EncodedLogs(List<LogSlab> slabs) {
+        this.slabs = slabs;
+        int size = 0;
+        long length = 0;
+        boolean provisionalTestIds = false;
+        for (LogSlab slab : slabs) {
+            size += slab.getLogs();
+            length += slab.getLength();
+            provisionalTestIds |= slab.isProvisionalTestIds();
+        }
+        this.size = size;
+        this.length = length;
+        this.provisionalTestIds = provisionalTestIds;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if some of the logs belong to tests whose registration may still be in progress
+     */
+    boolean hasProvisionalTestIds() {
+        return provisionalTestIds;
+    }
+
+    /**
+     * @return ids of the tests the logs belong to
+     */
+    Set<Long> getTestIds() {
+        Set<Long> testIds = new HashSet<>();
+        for (LogSlab slab : slabs) {
+            testIds.addAll(slab.getTestIds());
+        }
+        return testIds;
+    }
+
+    /**
+     * @return size of the JSON array of the logs in bytes
+     */
+    long getJsonLength() {
+        return size == 0 ? 2 : length + 1;
+    }
+
+    /**
+     * @return new stream reading the JSON array of the logs. Every stream reads the logs from the beginning
+     */
+    InputStream newInputStream() {
+        return new JsonStream();
+    }
+
+    private final class JsonStream extends InputStream {
+
+        private int slabIndex = -1;
+        private ByteBuffer current = ByteBuffer.wrap(new byte[] {'['});
+        private boolean firstLog = true;
+        private boolean closed;
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            while (!current.hasRemaining()) {
+                if (!this.next()) {
+                    return -1;
+                }
+            }
+            int read = Math.min(length, current.remaining());
+            current.get(target, offset, read);
+            return read;
+        }
+
+        private boolean next() {
+            if (closed) {
+                return false;
+            }
+            slabIndex++;
+            if (slabIndex < slabs.size()) {
+                current = slabs.get(slabIndex).content();
+                // the leading comma of the first log is replaced with the opening bracket
+                if (firstLog && current.hasRemaining()) {
+                    current.position(1);
+                    firstLog = false;
+                }
+            } else {
+                current = ByteBuffer.wrap(new byte[] {']'});
+                closed = true;
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Decodes the logs, so it is expected to be used only if the logs need to be inspected.
+     */
+    @Override
+    public Iterator<Log> iterator() {
+        byte[] json = new byte[(int) this.getJsonLength()];
+        JsonStream stream = new JsonStream();
+        int read = 0;
+        int count;
+        while (read < json.length && (count = stream.read(json, read, json.length - read)) != -1) {
+            read += count;
+        }
+        Log[] logs = JSON_MAPPER.readValue(new String(json, StandardCharsets.UTF_8), Log[].class);
+        return Arrays.asList(logs).iterator();
+    }
+
+}
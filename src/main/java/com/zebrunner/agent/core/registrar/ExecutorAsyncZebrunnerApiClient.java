@@ -0,0 +1,161 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts blocking {@link ZebrunnerApiClient} to the {@link AsyncZebrunnerApiClient} contract by offloading calls
+ * to a dedicated thread pool. Meant for custom blocking clients registered via {@link ClientRegistrar}.
+ */
+@Slf4j
+class ExecutorAsyncZebrunnerApiClient implements AsyncZebrunnerApiClient {
+
+    private final ZebrunnerApiClient delegate;
+    private final ExecutorService executor;
+
+    ExecutorAsyncZebrunnerApiClient(ZebrunnerApiClient delegate) {
+        this.delegate = delegate;
+        this.executor = Executors.newFixedThreadPool(
+                ConfigurationHolder.getClientMaxConnectionsPerRoute(),
+                LogsCaptureGuard.agentThreadFactory(Executors.defaultThreadFactory())
+        );
+        Runtime.getRuntime().addShutdownHook(LogsCaptureGuard.newAgentThread(this::shutdown, "zebrunner-client-shutdown"));
+    }
+
+    private void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TestRunDTO> registerTestRunStart(TestRunDTO testRun) {
+        return CompletableFuture.supplyAsync(() -> delegate.registerTestRunStart(testRun), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> patchTestRunBuild(Long testRunId, String build) {
+        return CompletableFuture.runAsync(() -> delegate.patchTestRunBuild(testRunId, build), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
+        return CompletableFuture.runAsync(() -> delegate.setTestRunPlatform(testRunId, platformName, platformVersion), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestRunFinish(TestRunDTO testRun) {
+        return CompletableFuture.runAsync(() -> delegate.registerTestRunFinish(testRun), executor);
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestStart(Long testRunId, TestDTO test, boolean headless) {
+        return CompletableFuture.supplyAsync(() -> delegate.registerTestStart(testRunId, test, headless), executor);
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
+        return CompletableFuture.supplyAsync(() -> delegate.registerTestRerunStart(testRunId, testId, test, headless), executor);
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
+        return CompletableFuture.supplyAsync(() -> delegate.registerHeadlessTestUpdate(testRunId, test), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> revertTestRegistration(Long testRunId, Long testId) {
+        return CompletableFuture.runAsync(() -> delegate.revertTestRegistration(testRunId, testId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestFinish(Long testRunId, TestDTO test) {
+        return CompletableFuture.runAsync(() -> delegate.registerTestFinish(testRunId, test), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendLogs(Collection<Log> logs, Long testRunId) {
+        return CompletableFuture.runAsync(() -> delegate.sendLogs(logs, testRunId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
+        return CompletableFuture.runAsync(() -> delegate.upsertTestCaseResults(testRunId, testId, testCaseResults), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        return CompletableFuture.runAsync(() -> delegate.uploadScreenshot(screenshot, testRunId, testId, capturedAt), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
+        return CompletableFuture.runAsync(() -> delegate.uploadTestRunArtifact(artifact, name, testRunId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
+        return CompletableFuture.runAsync(() -> delegate.uploadTestArtifact(artifact, name, testRunId, testId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference) {
+        return CompletableFuture.runAsync(() -> delegate.attachArtifactReferenceToTestRun(testRunId, artifactReference), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
+        return CompletableFuture.runAsync(() -> delegate.attachArtifactReferenceToTest(testRunId, testId, artifactReference), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
+        return CompletableFuture.runAsync(() -> delegate.attachLabelsToTestRun(testRunId, labels), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
+        return CompletableFuture.runAsync(() -> delegate.attachLabelsToTest(testRunId, testId, labels), executor);
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRunContextResponse> exchangeRerunCondition(String rerunCondition) {
+        return CompletableFuture.supplyAsync(() -> delegate.exchangeRerunCondition(rerunCondition), executor);
+    }
+
+    @Override
+    public CompletableFuture<TestSessionDTO> startSession(Long testRunId, TestSessionDTO testSession) {
+        return CompletableFuture.supplyAsync(() -> delegate.startSession(testRunId, testSession), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateSession(Long testRunId, TestSessionDTO testSession) {
+        return CompletableFuture.runAsync(() -> delegate.updateSession(testRunId, testSession), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
+        return CompletableFuture.supplyAsync(() -> delegate.isKnownIssueAttachedToTest(testRunId, testId, failureStacktrace), executor);
+    }
+
+}
@@ -1,34 +1,93 @@
 package com.zebrunner.agent.core.registrar;
 
+import com.zebrunner.agent.core.config.ConfigurationHolder;
 import com.zebrunner.agent.core.logging.Log;
 import com.zebrunner.agent.core.registrar.descriptor.TestDescriptor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 
 /**
  * Effectively acts as an in-memory buffer for logs generated in scope of test run that is meant to reduce
  * number of outgoing requests issued to Zebrunner
- * <p>The {@code scheduleFlush} method schedules logs transfer with configurable delay.
+ * <p>The buffer is split into shards, and logs of a test always go to the same shard. So test threads do not contend
+ * for a single structure, and every shard is flushed by its own worker in parallel with the others.
+ * <p>Logs of a shard are flushed once any of the thresholds is reached: number of buffered logs, their approximate
+ * size in bytes, or age of the oldest log that is not sent yet. So bursts of logs are sent without delay,
+ * while a quiet test does not produce a request per log.
+ * <p>Logs are sent in batches which size follows the limit of concurrent calls to Zebrunner
+ * (see {@link ConcurrencyLimiter#scaleBatchSize(int)}). A batch exceeding the max size of a request body accepted
+ * by Zebrunner is split into smaller ones, and the requests are sent in parallel unless they contain logs
+ * of the same test. Logs of a test are always sent in the order they were appended.
+ * <p>If the buffer is created with deferred formatting, only the raw event is kept on the test thread when possible.
+ * Its message is formatted and the event is converted to {@link Log} on the flushing thread (see {@link LogEventConverter}).
+ * Events reused by the logging framework are copied into the buffer instead, so garbage-free logging stays garbage-free.
+ * <p>Every shard is a bounded {@link LogsRingBuffer}. Logs which do not fit it are handled according
+ * to the configured overflow policy, and logs lost because of that are reported on every flush. If the overflow
+ * exceeds the spill threshold, it goes to a memory-mapped file which is deleted on shutdown.
+ * <p>Lines of a test may be sampled and rate limited before they reach the buffer (see {@link LogsRateLimiter}).
+ * Identical consecutive lines of a test are collapsed into a single log once they are drained (see {@link LogsCollapser}),
+ * so the test threads do not pay for the comparison.
+ * <p>In the failure-focused capture mode, logs of a running test are held until it finishes (see {@link TestLogsCapture}).
+ * <p>Logs of the agent itself are not captured (see {@link LogsCaptureGuard}).
+ * <p>On JVM shutdown, the remaining logs are flushed within the configured timeout.
  *
  * @param <E> the type of the input to the log event converter function
  */
 @Slf4j
 final class FlushingLogsBuffer<E> implements LogsBuffer<E> {
 
-    private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newScheduledThreadPool(4);
+    private static final int MAX_BATCH_SIZE = 5000;
+    private static final int MAX_PARALLEL_REQUESTS_PER_SHARD = 2;
+
+    private static final int FLUSH_MAX_EVENTS = ConfigurationHolder.getLogsFlushMaxEvents();
+    private static final int FLUSH_MAX_BYTES = ConfigurationHolder.getLogsFlushMaxBytes();
+    private static final long FLUSH_MAX_AGE_MILLIS = ConfigurationHolder.getLogsFlushMaxAge();
+    private static final int MAX_REQUEST_BYTES = ConfigurationHolder.getLogsMaxRequestBytes();
+
     private static final ZebrunnerApiClient API_CLIENT = ClientRegistrar.getClient();
-    private static final AtomicBoolean EXECUTOR_ENABLED = new AtomicBoolean();
 
-    private static volatile Queue<Log> QUEUE = new ConcurrentLinkedQueue<>();
-    private final Function<E, Log> converter;
+    private static final Shard[] SHARDS = createShards(
+            ConfigurationHolder.getLogsBufferShards(),
+            ConfigurationHolder.getLogsBufferCapacity(),
+            LogsRingBuffer.OverflowPolicy.parse(ConfigurationHolder.getLogsOverflowPolicy()),
+            ConfigurationHolder.getLogsSpillThreshold()
+    );
+    private static final ExecutorService SEND_EXECUTOR = Executors.newFixedThreadPool(
+            SHARDS.length * MAX_PARALLEL_REQUESTS_PER_SHARD,
+            runnable -> LogsCaptureGuard.newAgentThread(runnable, "zebrunner-logs-sender")
+    );
+    private static final AtomicLong REPORTED_LOST_LOGS = new AtomicLong();
+    private static final LogsRateLimiter RATE_LIMITER = new LogsRateLimiter();
+    private static final boolean COLLAPSE_DUPLICATES = ConfigurationHolder.isLogsCollapseDuplicates();
+    private static final TestLogsCapture CAPTURE = TestLogsCapture.getInstance();
+
+    private static final LogEventConverter<Log> CONVERTED_LOG = log -> log;
+
+    static {
+        // the shards are shared by all the instances of the buffer, so they are flushed by a single hook
+        Runtime.getRuntime().addShutdownHook(LogsCaptureGuard.newAgentThread(FlushingLogsBuffer::shutdown, "zebrunner-logs-shutdown"));
+    }
+
+    private final LogEventConverter<E> converter;
+    private final boolean deferredFormatting;
 
     /**
      * Allocates a new {@code LogsBuffer} object bound to certain logging framework event type.
@@ -37,8 +96,29 @@ final class FlushingLogsBuffer<E> implements LogsBuffer<E> {
      * @param converter logging framework specific event converter
      */
     FlushingLogsBuffer(Function<E, Log> converter) {
+        this(converter::apply, false);
+    }
+
+    /**
+     * @param converter          logging framework specific event converter
+     * @param deferredFormatting true if events should be converted on the flushing thread rather than on the test thread
+     */
+    FlushingLogsBuffer(LogEventConverter<E> converter, boolean deferredFormatting) {
         this.converter = converter;
-        Runtime.getRuntime().addShutdownHook(new Thread(FlushingLogsBuffer::shutdown));
+        this.deferredFormatting = deferredFormatting;
+        CAPTURE.setSink(FlushingLogsBuffer::putReleased);
+    }
+
+    private static Shard[] createShards(int count, int totalCapacity, LogsRingBuffer.OverflowPolicy overflowPolicy, long totalSpillThreshold) {
+        int capacity = (totalCapacity + count - 1) / count;
+        long spillThreshold = totalSpillThreshold / count;
+        Path spillDirectory = Paths.get(ConfigurationHolder.getLogsSpillDir());
+        Shard[] shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            LogsRingBuffer buffer = new LogsRingBuffer(capacity, overflowPolicy, spillThreshold, new LogsSpillFile(spillDirectory));
+            shards[i] = new Shard(i, buffer, capacity);
+        }
+        return shards;
     }
 
     /**
@@ -48,45 +128,269 @@ final class FlushingLogsBuffer<E> implements LogsBuffer<E> {
      */
     @Override
     public void put(E event) {
-        Optional<TestDescriptor> currentTest = RunContext.getCurrentTest();
+        if (!LogsCaptureGuard.enter()) {
+            return;
+        }
+        try {
+            this.append(event);
+        } finally {
+            LogsCaptureGuard.exit();
+        }
+    }
 
-        if (currentTest.isPresent()) {
-            Log log = converter.apply(event);
-            log.setTestId(String.valueOf(currentTest.get().getZebrunnerId()));
+    private void append(E event) {
+        TestDescriptor currentTest = RunContext.getCurrentTestOrNull(converter.getThreadId(event));
 
-            QUEUE.add(log);
+        if (currentTest != null) {
+            Long testId = currentTest.getZebrunnerId();
+            Shard shard = getShard(testId);
+
+            String level = RATE_LIMITER.isEnabled() ? converter.getLevel(event) : null;
+            if (level != null && !shard.acquire(testId, level)) {
+                return;
+            }
 
-            // lazily enables buffer and schedules flushes on the very first event to be buffered
-            if (EXECUTOR_ENABLED.compareAndSet(false, true)) {
-                scheduleFlush();
+            if (deferredFormatting && converter.canDefer(event)) {
+                if (CAPTURE.hold(testId, event, converter)) {
+                    return;
+                }
+                int size = LogsBatches.estimateSize(converter.estimateMessageLength(event));
+                shard.put(event, converter, testId, size);
+            } else if (deferredFormatting && converter.canCopy(event) && !CAPTURE.isHolding(testId)) {
+                // the event is reused by the logging framework, so only its copy is buffered
+                int size = LogsBatches.estimateSize(converter.estimateMessageLength(event));
+                shard.putCopy(event, converter, testId, size);
+            } else {
+                Log log = converter.convert(event);
+                if (level == null && !shard.acquire(testId, log.getLevel())) {
+                    return;
+                }
+                if (CAPTURE.hold(testId, log, null)) {
+                    return;
+                }
+                shard.put(log, CONVERTED_LOG, testId, LogsBatches.estimateSize(log));
             }
         }
     }
 
-    private static void scheduleFlush() {
-        FLUSH_EXECUTOR.scheduleWithFixedDelay(FlushingLogsBuffer::flush, 1, 1, TimeUnit.SECONDS);
+    /**
+     * Buffers a log released by {@link TestLogsCapture} once its test finished.
+     */
+    private static void putReleased(Long testId, Object event, LogEventConverter<Object> converter) {
+        Shard shard = getShard(testId);
+        if (converter != null) {
+            shard.put(event, converter, testId, LogsBatches.estimateSize(converter.estimateMessageLength(event)));
+        } else {
+            Log log = (Log) event;
+            shard.put(log, CONVERTED_LOG, testId, LogsBatches.estimateSize(log));
+        }
     }
 
-    private static void flush() {
-        if (!QUEUE.isEmpty()) {
-            Long runId = RunContext.getZebrunnerRunId();
-            Queue<Log> logsBatch = QUEUE;
-            QUEUE = new ConcurrentLinkedQueue<>();
-            API_CLIENT.sendLogs(logsBatch, runId);
+    private static Shard getShard(Long testId) {
+        return SHARDS[Math.floorMod(Long.hashCode(testId != null ? testId : 0), SHARDS.length)];
+    }
+
+    private static void reportLostLogs() {
+        long lostLogs = LogsBufferMetrics.getInstance().getLostLogs();
+        long reportedLostLogs = REPORTED_LOST_LOGS.getAndSet(lostLogs);
+        if (lostLogs > reportedLostLogs) {
+            log.warn(
+                    "{} logs were not sent to Zebrunner because the logs buffer (capacity {}) overflowed.",
+                    lostLogs - reportedLostLogs, LogsBufferMetrics.getInstance().getCapacity()
+            );
+        }
+    }
+
+    /**
+     * Sends the logs in parallel. Requests with logs of the same test are chained, so that the logs of a test
+     * arrive in the order of the requests.
+     *
+     * @param requests logs of the requests in the order they were buffered
+     * @return requests sending the logs
+     */
+    private static List<CompletableFuture<Void>> sendInOrder(List<List<Log>> requests, Long runId) {
+        List<CompletableFuture<Void>> sentRequests = new ArrayList<>(requests.size());
+        Map<String, CompletableFuture<Void>> lastRequestByTestId = new HashMap<>();
+        for (List<Log> requestLogs : requests) {
+            Set<String> testIds = new LinkedHashSet<>();
+            for (Log log : requestLogs) {
+                testIds.add(log.getTestId());
+            }
+
+            List<CompletableFuture<Void>> precedingRequests = new ArrayList<>();
+            for (String testId : testIds) {
+                CompletableFuture<Void> precedingRequest = lastRequestByTestId.get(testId);
+                if (precedingRequest != null) {
+                    precedingRequests.add(precedingRequest);
+                }
+            }
+
+            CompletableFuture<Void> sentRequest = CompletableFuture.allOf(precedingRequests.toArray(new CompletableFuture[0]))
+                                                                   .thenRunAsync(() -> API_CLIENT.sendLogs(requestLogs, runId), SEND_EXECUTOR)
+                                                                   .exceptionally(FlushingLogsBuffer::logSendFailure);
+            for (String testId : testIds) {
+                lastRequestByTestId.put(testId, sentRequest);
+            }
+            sentRequests.add(sentRequest);
         }
+        return sentRequests;
+    }
+
+    private static Void logSendFailure(Throwable e) {
+        log.error("Could not send a batch of test logs: {}", RetryPolicy.unwrap(e).getMessage());
+        return null;
     }
 
     private static void shutdown() {
-        FLUSH_EXECUTOR.shutdown();
+        long timeoutSeconds = ConfigurationHolder.getLogsShutdownTimeout();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
         try {
-            if (!FLUSH_EXECUTOR.awaitTermination(10, TimeUnit.SECONDS)) {
-                FLUSH_EXECUTOR.shutdownNow();
+            // logs of unfinished tests are released while the workers may still free up space for them
+            CAPTURE.releaseAll();
+            for (Shard shard : SHARDS) {
+                shard.worker.shutdown(Math.max(0, deadline - System.nanoTime()));
+            }
+
+            List<CompletableFuture<Void>> flushes = new ArrayList<>();
+            for (Shard shard : SHARDS) {
+                flushes.add(CompletableFuture.runAsync(shard::flush, SEND_EXECUTOR));
+            }
+            CompletableFuture.allOf(flushes.toArray(new CompletableFuture[0]))
+                             .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            int unsentLogs = 0;
+            for (Shard shard : SHARDS) {
+                unsentLogs += shard.buffer.size();
             }
-        } catch (InterruptedException e) {
+            log.warn(
+                    "Not all the logs were sent to Zebrunner within {} seconds of shutdown timeout: {} logs are left unsent.",
+                    timeoutSeconds, unsentLogs
+            );
+        } catch (InterruptedException | ExecutionException e) {
             log.error(e.getMessage(), e);
+        } finally {
+            int discardedLogs = 0;
+            for (Shard shard : SHARDS) {
+                discardedLogs += shard.buffer.close();
+            }
+            if (discardedLogs > 0) {
+                log.warn("{} logs spilled to disk were not sent to Zebrunner and are discarded along with the spill files.", discardedLogs);
+            }
+        }
+    }
+
+    /**
+     * Part of the buffer holding logs of a subset of tests. Flushes of a shard are performed one by one
+     * by a dedicated {@link LogsFlushWorker}, so a flush is started only once the logs of the previous one are sent.
+     */
+    private static final class Shard {
+
+        private final LogsRingBuffer buffer;
+        private final LogsFlushWorker worker;
+        private final BooleanSupplier flushThresholdReached = this::isFlushThresholdReached;
+        /**
+         * A shard holds only its part of the buffer capacity, so it is flushed once half of it is used at the latest.
+         * Otherwise the count threshold might be reached only after the shard overflowed.
+         */
+        private final int flushMaxEvents;
+
+        private Shard(int index, LogsRingBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.flushMaxEvents = Math.min(FLUSH_MAX_EVENTS, Math.max(1, capacity / 2));
+            this.worker = new LogsFlushWorker("zebrunner-logs-flusher-" + index, FLUSH_MAX_AGE_MILLIS, this::flush);
+        }
+
+        private void put(Object event, LogEventConverter<?> converter, Long testId, int size) {
+            buffer.put(event, converter, testId, size);
+            worker.onAppended(flushThresholdReached);
+        }
+
+        private void putCopy(Object event, LogEventConverter<?> converter, Long testId, int size) {
+            buffer.putCopy(event, converter, testId, size);
+            worker.onAppended(flushThresholdReached);
+        }
+
+        /**
+         * @return false if the line is suppressed by the rate limiter
+         */
+        private boolean acquire(Long testId, String level) {
+            long suppressedLines = RATE_LIMITER.acquire(testId, level);
+            if (suppressedLines > 0) {
+                this.putSummary(testId, suppressedLines);
+            }
+            return suppressedLines >= 0;
+        }
+
+        private void putSummary(Long testId, long suppressedLines) {
+            Log summary = LogsRateLimiter.toSummary(testId, suppressedLines);
+            this.put(summary, CONVERTED_LOG, testId, LogsBatches.estimateSize(summary));
+        }
+
+        private boolean isFlushThresholdReached() {
+            return buffer.size() >= flushMaxEvents || buffer.getBufferedBytes() >= FLUSH_MAX_BYTES;
+        }
+
+        /**
+         * Sends the logs buffered by the moment of the call. Logs appended during the flush are left for the next one,
+         * so a flush always comes to an end.
+         * <p>Logs are drained and sent in rounds of a few batches, so that a large backlog (e.g. logs spilled to disk)
+         * is brought back to memory only as fast as it is sent.
+         */
+        private void flush() {
+            reportLostLogs();
+
+            Long runId = RunContext.getZebrunnerRunId();
+            int remainingLogs = buffer.size();
+            while (remainingLogs > 0) {
+                List<List<Log>> requests = new ArrayList<>();
+                int drainedLogs = this.drain(remainingLogs, requests);
+                if (drainedLogs == 0) {
+                    break;
+                }
+                remainingLogs -= drainedLogs;
+
+                List<CompletableFuture<Void>> sentRequests = sendInOrder(requests, runId);
+                CompletableFuture.allOf(sentRequests.toArray(new CompletableFuture[0])).join();
+            }
+
+            // summaries are sent along with the flushed logs, since the flushing thread must never wait for the buffer
+            List<Log> summaries = new ArrayList<>();
+            RATE_LIMITER.forEachSuppressed(
+                    testId -> getShard(testId) == this,
+                    (testId, suppressedLines) -> summaries.add(LogsRateLimiter.toSummary(testId, suppressedLines))
+            );
+            if (!summaries.isEmpty()) {
+                sendInOrder(Collections.singletonList(summaries), runId).forEach(CompletableFuture::join);
+            }
+        }
+
+        /**
+         * Drains up to {@link #MAX_PARALLEL_REQUESTS_PER_SHARD} batches of logs.
+         *
+         * @param maxLogs  max number of logs to drain
+         * @param requests list to add logs of the requests to
+         * @return number of logs taken from the buffer
+         */
+        private int drain(int maxLogs, List<List<Log>> requests) {
+            int drainedLogs = 0;
+            for (int i = 0; i < MAX_PARALLEL_REQUESTS_PER_SHARD && drainedLogs < maxLogs; i++) {
+                int batchSize = Math.min(ConcurrencyLimiter.getInstance().scaleBatchSize(MAX_BATCH_SIZE), maxLogs - drainedLogs);
+                List<Log> logsBatch = new ArrayList<>(batchSize);
+                int drainedBatchLogs = buffer.drainTo(logsBatch, batchSize);
+                if (drainedBatchLogs == 0) {
+                    break;
+                }
+                drainedLogs += drainedBatchLogs;
+
+                if (COLLAPSE_DUPLICATES) {
+                    logsBatch = LogsCollapser.collapse(logsBatch);
+                }
+                requests.addAll(LogsBatches.split(logsBatch, MAX_REQUEST_BYTES));
+            }
+            return drainedLogs;
         }
 
-        flush();
     }
 
 }
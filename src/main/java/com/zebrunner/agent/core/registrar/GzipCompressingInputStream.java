@@ -0,0 +1,102 @@
+package com.zebrunner.agent.core.registrar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the source stream into gzip format while it is being read. Unlike {@link java.util.zip.GZIPOutputStream},
+ * compression is driven by the reader, so neither the source nor the compressed content is ever buffered as a whole:
+ * a http client reading the stream compresses just as many bytes as it is about to send.
+ */
+class GzipCompressingInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b,   // magic number
+            Deflater.DEFLATED,   // compression method
+            0,                   // flags
+            0, 0, 0, 0,          // modification time
+            0,                   // extra flags
+            (byte) 0xff          // operating system (unknown)
+    };
+    private static final int TRAILER_SIZE = 8;
+
+    private final InputStream source;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] sourceBuffer = new byte[BUFFER_SIZE];
+    private final byte[] singleByte = new byte[1];
+
+    private int headerPosition;
+    private byte[] trailer;
+    private int trailerPosition;
+
+    GzipCompressingInputStream(InputStream source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = this.read(singleByte, 0, 1);
+        return read == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (headerPosition < HEADER.length) {
+            int count = Math.min(length, HEADER.length - headerPosition);
+            System.arraycopy(HEADER, headerPosition, buffer, offset, count);
+            headerPosition += count;
+            return count;
+        }
+
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer, offset, length);
+            if (count > 0) {
+                return count;
+            }
+            if (deflater.needsInput()) {
+                int read = source.read(sourceBuffer);
+                if (read == -1) {
+                    deflater.finish();
+                } else if (read > 0) {
+                    crc.update(sourceBuffer, 0, read);
+                    deflater.setInput(sourceBuffer, 0, read);
+                }
+            }
+        }
+
+        if (trailer == null) {
+            trailer = this.createTrailer();
+        }
+        if (trailerPosition == TRAILER_SIZE) {
+            return -1;
+        }
+        int count = Math.min(length, TRAILER_SIZE - trailerPosition);
+        System.arraycopy(trailer, trailerPosition, buffer, offset, count);
+        trailerPosition += count;
+        return count;
+    }
+
+    private byte[] createTrailer() {
+        long checksum = crc.getValue();
+        long size = deflater.getBytesRead();
+        return new byte[]{
+                (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+                (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        source.close();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.google.gson.stream.JsonWriter;
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * JSON request body encoded without materializing it as a string.
+ * <p>Collections (e.g. batches of logs) are serialized element by element while the request is being written,
+ * so memory needed to send a collection does not depend on its size. Other objects are serialized right away
+ * straight into UTF-8 bytes, since they may be modified by the caller after the request is issued.
+ * <p>If gzip compression is enabled, bodies exceeding the configured threshold are compressed on the fly
+ * and must be sent with 'Content-Encoding: gzip'. Logs already encoded to JSON (see {@link EncodedLogs}) are copied
+ * to the request as is. A body can be sent only once, so every attempt to send a request
+ * must encode its own body.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class JsonBody {
+
+    static final String GZIP_ENCODING = "gzip";
+
+    private static final int MIN_PREFIX_SIZE = 8 * 1024;
+    private static final JsonMapper JSON_MAPPER = new JsonMapper();
+
+    /**
+     * Content of the body if it is small enough to be kept in memory, otherwise null
+     */
+    private final byte[] bytes;
+    /**
+     * Content of the body if it is streamed, otherwise null
+     */
+    private final InputStream stream;
+    /**
+     * Length of the streamed content if it is known upfront, otherwise -1
+     */
+    private final long streamLength;
+    private final boolean gzipped;
+
+    static JsonBody of(Object body) throws IOException {
+        if (body instanceof EncodedLogs) {
+            return encoded((EncodedLogs) body);
+        }
+        if (body instanceof Collection) {
+            return streamed((Collection<?>) body);
+        }
+        return buffered(body);
+    }
+
+    private static JsonBody buffered(Object body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonWriter writer = JSON_MAPPER.newJsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            JSON_MAPPER.writeValue(body, writer);
+        }
+
+        if (isCompressible(buffer.size())) {
+            return new JsonBody(null, new GzipCompressingInputStream(new ByteArrayInputStream(buffer.toByteArray())), -1, true);
+        }
+        return new JsonBody(buffer.toByteArray(), null, -1, false);
+    }
+
+    private static JsonBody streamed(Collection<?> body) throws IOException {
+        InputStream json = new JsonSerializingInputStream(JSON_MAPPER, body);
+
+        // small bodies are sent as is, so that their length is known upfront and the request is not chunked
+        int prefixSize = Math.max(MIN_PREFIX_SIZE, ConfigurationHolder.getClientGzipThreshold());
+        byte[] prefix = new byte[prefixSize];
+        int prefixLength = 0;
+        int read;
+        while (prefixLength < prefixSize && (read = json.read(prefix, prefixLength, prefixSize - prefixLength)) != -1) {
+            prefixLength += read;
+        }
+        if (prefixLength < prefixSize) {
+            json.close();
+            return new JsonBody(Arrays.copyOf(prefix, prefixLength), null, -1, false);
+        }
+
+        InputStream content = new SequenceInputStream(new ByteArrayInputStream(prefix), json);
+        if (isCompressible(prefixLength)) {
+            return new JsonBody(null, new GzipCompressingInputStream(content), -1, true);
+        }
+        return new JsonBody(null, content, -1, false);
+    }
+
+    /**
+     * Logs already encoded to JSON are streamed straight from their buffers, so the length of the body is known upfront.
+     */
+    private static JsonBody encoded(EncodedLogs logs) {
+        long length = logs.getJsonLength();
+        if (isCompressible(length)) {
+            return new JsonBody(null, new GzipCompressingInputStream(logs.newInputStream()), -1, true);
+        }
+        return new JsonBody(null, logs.newInputStream(), length, false);
+    }
+
+    private static boolean isCompressible(long size) {
+        return ConfigurationHolder.isClientGzipEnabled() && size >= ConfigurationHolder.getClientGzipThreshold();
+    }
+
+}
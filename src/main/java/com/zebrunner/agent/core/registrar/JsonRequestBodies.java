@@ -0,0 +1,37 @@
+package com.zebrunner.agent.core.registrar;
+
+import kong.unirest.HeaderNames;
+import kong.unirest.HttpRequestWithBody;
+import kong.unirest.RequestBodyEntity;
+import kong.unirest.UnirestException;
+
+import java.io.IOException;
+
+/**
+ * Attaches {@link JsonBody JSON bodies} to Unirest requests. Every call creates a new body,
+ * so a request executor invoking it can be safely retried.
+ */
+final class JsonRequestBodies {
+
+    private JsonRequestBodies() {
+    }
+
+    static RequestBodyEntity body(HttpRequestWithBody request, Object body) {
+        JsonBody json;
+        try {
+            json = JsonBody.of(body);
+        } catch (IOException e) {
+            throw new UnirestException(e);
+        }
+
+        if (json.isGzipped()) {
+            request.header(HeaderNames.CONTENT_ENCODING, JsonBody.GZIP_ENCODING);
+        }
+        if (json.getBytes() != null) {
+            return request.body(json.getBytes());
+        }
+        String endpoint = UnirestApiClientInstrumentation.toEndpoint(request.toSummary());
+        return request.body(ApiClientMetrics.getInstance().countSentBytes(endpoint, json.getStream()));
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.google.gson.stream.JsonWriter;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Serializes a collection into a json array while the stream is being read.
+ * <p>Elements are written one by one into a reusable buffer, so memory needed to serialize the collection
+ * is bounded by the size of its largest element rather than by the size of the whole collection.
+ * The collection must not be modified until the stream is read to the end.
+ */
+class JsonSerializingInputStream extends InputStream {
+
+    private final JsonMapper jsonMapper;
+    private final Iterator<?> elements;
+    private final ReusableByteArrayOutputStream buffer = new ReusableByteArrayOutputStream();
+    private final JsonWriter writer;
+    private final byte[] singleByte = new byte[1];
+
+    private boolean started;
+    private boolean finished;
+    private int position;
+
+    JsonSerializingInputStream(JsonMapper jsonMapper, Collection<?> collection) throws IOException {
+        this.jsonMapper = jsonMapper;
+        this.elements = collection.iterator();
+        this.writer = jsonMapper.newJsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+    }
+
+    private static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        private int copyTo(int position, byte[] target, int offset, int length) {
+            int count = Math.min(length, this.count - position);
+            System.arraycopy(buf, position, target, offset, count);
+            return count;
+        }
+
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = this.read(singleByte, 0, 1);
+        return read == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == buffer.size()) {
+            if (!this.serializeNext()) {
+                return -1;
+            }
+        }
+        int count = buffer.copyTo(position, target, offset, length);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Serializes the next chunk of the json array into the buffer.
+     *
+     * @return false if the whole array is already serialized
+     */
+    private boolean serializeNext() throws IOException {
+        if (finished) {
+            return false;
+        }
+
+        buffer.reset();
+        position = 0;
+        if (!started) {
+            writer.beginArray();
+            started = true;
+        } else if (elements.hasNext()) {
+            jsonMapper.writeValue(elements.next(), writer);
+        } else {
+            writer.endArray();
+            finished = true;
+        }
+        writer.flush();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+}
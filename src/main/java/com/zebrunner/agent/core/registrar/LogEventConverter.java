@@ -0,0 +1,166 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts events of a logging framework to logs sent to Zebrunner.
+ * <p>If possible, only the event itself is kept on the thread that logged it, while its conversion (including formatting
+ * of the message) is deferred to the thread flushing the logs. So logging takes as little time of the test threads as possible.
+ *
+ * @param <E> the type of events of the logging framework
+ */
+@FunctionalInterface
+public interface LogEventConverter<E> {
+
+    /**
+     * Approximate length of a formatted argument of a message
+     */
+    int ARGUMENT_LENGTH_ESTIMATE = 16;
+
+    /**
+     * Prefix of names of the loggers of the agent
+     */
+    String AGENT_LOGGER_PREFIX = "com.zebrunner.agent.";
+
+    /**
+     * Types of message arguments whose instances cannot change after they were logged
+     */
+    Set<Class<?>> IMMUTABLE_ARGUMENT_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, Class.class
+    )));
+
+    /**
+     * Invoked on the thread that logged the event. Conversion cannot be deferred if the logging framework reuses
+     * the event object, or if the message arguments may change by the moment of conversion.
+     * Such events are converted right away.
+     *
+     * @param event logged event
+     * @return true if the event can be converted later on another thread
+     */
+    default boolean canDefer(E event) {
+        return true;
+    }
+
+    /**
+     * Invoked on the thread that logged the event if its conversion cannot be deferred. A copied event is formatted
+     * into a reusable builder owned by the buffer (see {@link #formatMessageTo(Object, StringBuilder)}), so neither
+     * a message string nor a {@link Log} is created on the thread that logged the event.
+     * <p>Events which can be copied must provide their level and timestamp as well.
+     *
+     * @param event logged event
+     * @return true if the event can be copied
+     */
+    default boolean canCopy(E event) {
+        return false;
+    }
+
+    /**
+     * Invoked on the thread that logged the event if it is copied. Converters copying events should override it,
+     * since the default implementation converts the event to take its message.
+     *
+     * @param event  logged event
+     * @param target builder to append the formatted message to
+     */
+    default void formatMessageTo(E event, StringBuilder target) {
+        target.append(this.convert(event).getMessage());
+    }
+
+    /**
+     * Invoked on the thread that logged the event if it is copied. Converters copying events should override it,
+     * since the default implementation converts the event to take its timestamp.
+     *
+     * @param event logged event
+     * @return timestamp of the event in milliseconds
+     */
+    default long getTimestamp(E event) {
+        return this.convert(event).getTimestamp();
+    }
+
+    /**
+     * Invoked on the thread that passed the event to the appender. It differs from the thread that logged the event
+     * if the logging is asynchronous (e.g. async loggers of log4j2), so the event is attributed to the test
+     * running in the thread that logged it.
+     *
+     * @param event logged event
+     * @return id of the thread that logged the event
+     */
+    default long getThreadId(E event) {
+        return Thread.currentThread().getId();
+    }
+
+    /**
+     * Invoked on the thread that logged the event if its conversion is deferred or the event is copied.
+     * Estimates length of the message without formatting it.
+     *
+     * @param event logged event
+     * @return approximate length of the formatted message
+     */
+    default int estimateMessageLength(E event) {
+        return 0;
+    }
+
+    /**
+     * Invoked on the thread that logged the event if logs are rate limited or sampled (see {@link LogsRateLimiter}),
+     * so that lines of low levels can be suppressed without conversion, and if the event is copied.
+     *
+     * @param event logged event
+     * @return name of the level of the event, or null if it is known only once the event is converted
+     */
+    default String getLevel(E event) {
+        return null;
+    }
+
+    /**
+     * Invoked on the thread flushing the logs, or on the thread that logged the event if conversion cannot be deferred.
+     *
+     * @param event logged event
+     * @return log with formatted message, level and timestamp of the event
+     */
+    Log convert(E event);
+
+    /**
+     * Logs of the agent are never sent as logs of tests, since a failure to send logs would produce more logs to be sent.
+     *
+     * @param loggerName name of the logger of an event, may be null
+     * @return true if the logger belongs to the agent
+     */
+    static boolean isAgentLogger(String loggerName) {
+        return loggerName != null && loggerName.startsWith(AGENT_LOGGER_PREFIX);
+    }
+
+    /**
+     * @param arguments arguments of a message, may be null
+     * @return true if none of the arguments can change, so the message may be formatted later
+     */
+    static boolean areImmutable(Object[] arguments) {
+        if (arguments != null) {
+            for (Object argument : arguments) {
+                if (argument != null && !(argument instanceof Enum) && !IMMUTABLE_ARGUMENT_TYPES.contains(argument.getClass())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param pattern   pattern of a message, may be null
+     * @param arguments arguments of the message, may be null
+     * @return approximate length of the formatted message
+     */
+    static int estimateMessageLength(String pattern, Object[] arguments) {
+        int patternLength = pattern != null ? pattern.length() : 0;
+        int argumentsLength = arguments != null ? arguments.length * ARGUMENT_LENGTH_ESTIMATE : 0;
+        return patternLength + argumentsLength;
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes logs to JSON straight into UTF-8 bytes, so that no intermediate strings or serializers are involved.
+ * The output is the same as of {@link com.zebrunner.agent.core.registrar.domain.JsonMapper}: fields with null values
+ * are omitted and characters are escaped the same way, including HTML-sensitive ones.
+ */
+final class LogJsonEncoder {
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+    /**
+     * Size of {@code ,{"testId":"","message":"","level":"","timestamp":}} without the values of the fields
+     */
+    private static final int RECORD_OVERHEAD = 64;
+    /**
+     * Max number of bytes a single character may take once it is escaped
+     */
+    private static final int MAX_ESCAPED_CHAR_SIZE = 6;
+
+    private LogJsonEncoder() {
+    }
+
+    /**
+     * Appends the log to the buffer as a JSON object preceded by a comma, so that encoded logs can be simply
+     * concatenated into an array. If the log does not fit the buffer, the buffer is left unchanged.
+     *
+     * @param target buffer to append the log to
+     * @param testId id of the test the log belongs to
+     * @param log    log to encode
+     * @return false if the log does not fit the buffer
+     */
+    static boolean encode(ByteBuffer target, Long testId, Log log) {
+        int start = target.position();
+        try {
+            target.put((byte) ',').put((byte) '{');
+            putAscii(target, "\"testId\":\"");
+            if (testId != null) {
+                putLong(target, testId);
+            } else {
+                putAscii(target, "null");
+            }
+            target.put((byte) '"');
+            if (log.getMessage() != null) {
+                putAscii(target, ",\"message\":");
+                putString(target, log.getMessage());
+            }
+            if (log.getLevel() != null) {
+                putAscii(target, ",\"level\":");
+                putString(target, log.getLevel());
+            }
+            putAscii(target, ",\"timestamp\":");
+            putLong(target, log.getTimestamp());
+            target.put((byte) '}');
+            return true;
+        } catch (BufferOverflowException e) {
+            target.position(start);
+            return false;
+        }
+    }
+
+    /**
+     * @return max number of bytes the log may take once it is encoded
+     */
+    static int maxEncodedSize(Log log) {
+        return RECORD_OVERHEAD + 2 * 20
+                + MAX_ESCAPED_CHAR_SIZE * (length(log.getMessage()) + length(log.getLevel()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static void putAscii(ByteBuffer target, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            target.put((byte) value.charAt(i));
+        }
+    }
+
+    private static void putLong(ByteBuffer target, long value) {
+        if (value < 0) {
+            target.put((byte) '-');
+        } else {
+            value = -value;
+        }
+        // digits are computed on the negative value, so that Long.MIN_VALUE is handled as well
+        long divisor = -1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor != 0) {
+            target.put((byte) ('0' + value / divisor));
+            value %= divisor;
+            divisor /= 10;
+        }
+    }
+
+    private static void putString(ByteBuffer target, String value) {
+        target.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    target.put((byte) '\\').put((byte) c);
+                    break;
+                case '\t':
+                    target.put((byte) '\\').put((byte) 't');
+                    break;
+                case '\b':
+                    target.put((byte) '\\').put((byte) 'b');
+                    break;
+                case '\n':
+                    target.put((byte) '\\').put((byte) 'n');
+                    break;
+                case '\r':
+                    target.put((byte) '\\').put((byte) 'r');
+                    break;
+                case '\f':
+                    target.put((byte) '\\').put((byte) 'f');
+                    break;
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    putUnicodeEscape(target, c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        putUnicodeEscape(target, c);
+                    } else if (c < 0x80) {
+                        target.put((byte) c);
+                    } else if (c < 0x800) {
+                        target.put((byte) (0xC0 | (c >> 6)))
+                              .put((byte) (0x80 | (c & 0x3F)));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        target.put((byte) (0xF0 | (codePoint >> 18)))
+                              .put((byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                              .put((byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                              .put((byte) (0x80 | (codePoint & 0x3F)));
+                    } else if (Character.isSurrogate(c)) {
+                        // unpaired surrogates cannot be encoded, so they are replaced the same way as by String#getBytes
+                        target.put((byte) '?');
+                    } else {
+                        target.put((byte) (0xE0 | (c >> 12)))
+                              .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                              .put((byte) (0x80 | (c & 0x3F)));
+                    }
+            }
+        }
+        target.put((byte) '"');
+    }
+
+    private static void putUnicodeEscape(ByteBuffer target, char c) {
+        target.put((byte) '\\').put((byte) 'u')
+              .put(HEX_DIGITS[(c >> 12) & 0xF])
+              .put(HEX_DIGITS[(c >> 8) & 0xF])
+              .put(HEX_DIGITS[(c >> 4) & 0xF])
+              .put(HEX_DIGITS[c & 0xF]);
+    }
+
+}
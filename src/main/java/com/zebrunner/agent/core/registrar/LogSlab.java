@@ -0,0 +1,73 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Buffer holding consecutive logs encoded to JSON, every log preceded by a comma (see {@link LogJsonEncoder}).
+ */
+@Getter
+final class LogSlab {
+
+    private final ByteBuffer buffer;
+    /**
+     * True if the buffer belongs to {@link LogSlabPool} and must be returned to it once the logs are sent
+     */
+    private final boolean pooled;
+    private int logs;
+    /**
+     * True if some of the logs belong to tests whose registration may still be in progress
+     */
+    private boolean provisionalTestIds;
+    /**
+     * Ids of the tests the logs belong to
+     */
+    private final Set<Long> testIds = new HashSet<>();
+
+    LogSlab(ByteBuffer buffer, boolean pooled) {
+        this.buffer = buffer;
+        this.pooled = pooled;
+    }
+
+    /**
+     * @return false if the log does not fit the remaining space of the slab
+     */
+    boolean append(Long testId, Log log) {
+        if (!LogJsonEncoder.encode(buffer, testId, log)) {
+            return false;
+        }
+        logs++;
+        if (testId != null) {
+            testIds.add(testId);
+            if (testId < 0) {
+                provisionalTestIds = true;
+            }
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return logs == 0;
+    }
+
+    /**
+     * @return number of bytes taken by the encoded logs
+     */
+    int getLength() {
+        return buffer.position();
+    }
+
+    /**
+     * @return independent read-only view of the encoded logs, including the leading comma
+     */
+    ByteBuffer content() {
+        ByteBuffer content = buffer.asReadOnlyBuffer();
+        content.flip();
+        return content;
+    }
+
+}
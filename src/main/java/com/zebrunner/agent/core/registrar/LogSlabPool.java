@@ -0,0 +1,65 @@
+package com.zebrunner.agent.core.registrar;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of direct buffers which logs are encoded to (see {@link OffHeapLogsBuffer}).
+ * <p>Buffers are allocated lazily up to the max number and reused once the logs they hold are sent,
+ * so the encoded logs take neither heap nor garbage collection time.
+ */
+final class LogSlabPool {
+
+    private final int slabSize;
+    private final int maxSlabs;
+    private final Queue<ByteBuffer> freeSlabs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger allocatedSlabs = new AtomicInteger();
+
+    LogSlabPool(int slabSize, int maxSlabs) {
+        this.slabSize = slabSize;
+        this.maxSlabs = Math.max(1, maxSlabs);
+    }
+
+    /**
+     * @return cleared buffer, or null if all the buffers of the pool are in use
+     */
+    ByteBuffer acquire() {
+        ByteBuffer slab = freeSlabs.poll();
+        if (slab != null) {
+            slab.clear();
+            return slab;
+        }
+        int allocated;
+        while ((allocated = allocatedSlabs.get()) < maxSlabs) {
+            if (allocatedSlabs.compareAndSet(allocated, allocated + 1)) {
+                return ByteBuffer.allocateDirect(slabSize);
+            }
+        }
+        return null;
+    }
+
+    void release(ByteBuffer slab) {
+        freeSlabs.add(slab);
+    }
+
+    int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * @return size of the direct buffers allocated so far
+     */
+    long getAllocatedBytes() {
+        return (long) allocatedSlabs.get() * slabSize;
+    }
+
+    /**
+     * @return max size of the direct buffers of the pool
+     */
+    long getMaxBytes() {
+        return (long) maxSlabs * slabSize;
+    }
+
+}
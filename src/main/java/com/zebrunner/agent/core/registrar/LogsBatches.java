@@ -0,0 +1,82 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates size of logs serialized to JSON and splits batches of logs, so that every request
+ * fits the limit of body size accepted by Zebrunner.
+ */
+final class LogsBatches {
+
+    /**
+     * Size of {@code {"testId":"","message":"","level":"","timestamp":0000000000000},} without the values of the fields
+     */
+    private static final int LOG_JSON_OVERHEAD = 64;
+    /**
+     * Typical length of id of a test and level of a log
+     */
+    private static final int TEST_ID_AND_LEVEL_LENGTH_ESTIMATE = 15;
+    /**
+     * Size of the brackets enclosing an array
+     */
+    private static final int BATCH_JSON_OVERHEAD = 2;
+
+    private LogsBatches() {
+    }
+
+    /**
+     * Estimates size of the log serialized to JSON. Every character of the message is considered to take a single byte,
+     * so the estimate does not account for escaped and non-ASCII characters.
+     *
+     * @return approximate size of the log in bytes
+     */
+    static int estimateSize(Log log) {
+        return LOG_JSON_OVERHEAD + length(log.getTestId()) + length(log.getLevel()) + length(log.getMessage());
+    }
+
+    /**
+     * Estimates size of a log serialized to JSON by the length of its message only.
+     *
+     * @return approximate size of the log in bytes
+     */
+    static int estimateSize(int messageLength) {
+        return LOG_JSON_OVERHEAD + TEST_ID_AND_LEVEL_LENGTH_ESTIMATE + messageLength;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * Splits the logs into consecutive batches which approximate JSON size does not exceed the given one.
+     * A log which alone exceeds the limit is put to a batch of its own.
+     * <p>Every batch is a separate list rather than a view of the given one, so the batches can be modified independently.
+     *
+     * @param logs     logs to split
+     * @param maxBytes max size of a batch in bytes
+     * @return list of batches keeping the original order of the logs
+     */
+    static List<List<Log>> split(List<Log> logs, int maxBytes) {
+        List<List<Log>> batches = new ArrayList<>();
+        List<Log> batch = new ArrayList<>();
+        long batchBytes = BATCH_JSON_OVERHEAD;
+        for (Log log : logs) {
+            int size = estimateSize(log);
+            if (!batch.isEmpty() && batchBytes + size > maxBytes) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = BATCH_JSON_OVERHEAD;
+            }
+            batch.add(log);
+            batchBytes += size;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+}
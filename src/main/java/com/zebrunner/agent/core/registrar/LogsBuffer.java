@@ -8,13 +8,30 @@ import java.util.function.Function;
 public interface LogsBuffer<E> {
 
     static <E> LogsBuffer<E> create(Function<E, Log> converter) {
-        if (ConfigurationHolder.isReportingEnabled()) {
+        if (ConfigurationHolder.isReportingEnabled() && ConfigurationHolder.isLogsOffHeapEnabled()) {
+            return new OffHeapLogsBuffer<>(converter::apply);
+        } else if (ConfigurationHolder.isReportingEnabled()) {
             return new FlushingLogsBuffer<>(converter);
         } else {
             return new NoOpLogsBuffer<>();
         }
     }
 
+    /**
+     * Creates a buffer which formats messages of the events on the thread flushing the logs rather than on the thread
+     * that logged them (see {@link LogEventConverter}).
+     */
+    static <E> LogsBuffer<E> createDeferred(LogEventConverter<E> converter) {
+        if (ConfigurationHolder.isReportingEnabled() && ConfigurationHolder.isLogsOffHeapEnabled()) {
+            // logs are encoded on the test thread anyway, so there is nothing to defer
+            return new OffHeapLogsBuffer<>(converter);
+        } else if (ConfigurationHolder.isReportingEnabled()) {
+            return new FlushingLogsBuffer<>(converter, true);
+        } else {
+            return new NoOpLogsBuffer<>();
+        }
+    }
+
     void put(E event);
 
 }
\ No newline at end of file
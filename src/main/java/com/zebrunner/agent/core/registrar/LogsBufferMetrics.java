@@ -0,0 +1,216 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters of all the logs buffers, so that logs lost because of buffer overflows are visible.
+ */
+@Slf4j
+class LogsBufferMetrics implements LogsBufferMetricsMXBean {
+
+    private static final class InstanceHolder {
+
+        private static final LogsBufferMetrics INSTANCE = new LogsBufferMetrics();
+
+    }
+
+    static LogsBufferMetrics getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Part of a logs buffer whose state is exposed by the metrics
+     */
+    interface Buffer {
+
+        /**
+         * @return max number of logs the buffer holds, or 0 if the buffer is bounded by size rather than by number of logs
+         */
+        int getCapacity();
+
+        int size();
+
+    }
+
+    private final List<Buffer> buffers = new CopyOnWriteArrayList<>();
+    private final List<LogSlabPool> slabPools = new CopyOnWriteArrayList<>();
+    private final List<LogsSpillFile> spillFiles = new CopyOnWriteArrayList<>();
+    private final LongAdder appendedLogs = new LongAdder();
+    private final LongAdder droppedLogs = new LongAdder();
+    private final LongAdder evictedLogs = new LongAdder();
+    private final LongAdder spilledLogs = new LongAdder();
+    private final LongAdder blockedAppends = new LongAdder();
+    private final LongAdder suppressedLogs = new LongAdder();
+    private final LongAdder collapsedLogs = new LongAdder();
+    private final LongAdder discardedLogs = new LongAdder();
+    private final LongAdder logsSpilledToDisk = new LongAdder();
+    private final LongAdder bytesSpilledToDisk = new LongAdder();
+    private final LongAdder logsDrainedFromDisk = new LongAdder();
+    private final LongAdder bytesDrainedFromDisk = new LongAdder();
+
+    private LogsBufferMetrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, new ObjectName("com.zebrunner.agent:type=LogsBufferMetrics"));
+        } catch (Exception e) {
+            log.debug("Could not register logs buffer metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    void register(Buffer buffer) {
+        buffers.add(buffer);
+    }
+
+    void register(LogSlabPool slabPool) {
+        slabPools.add(slabPool);
+    }
+
+    void register(LogsSpillFile spillFile) {
+        spillFiles.add(spillFile);
+    }
+
+    void onAppended() {
+        appendedLogs.increment();
+    }
+
+    void onDropped() {
+        droppedLogs.increment();
+    }
+
+    void onEvicted() {
+        evictedLogs.increment();
+    }
+
+    void onEvicted(int logs) {
+        evictedLogs.add(logs);
+    }
+
+    void onSpilled() {
+        spilledLogs.increment();
+    }
+
+    void onBlocked() {
+        blockedAppends.increment();
+    }
+
+    void onSuppressed() {
+        suppressedLogs.increment();
+    }
+
+    void onCollapsed() {
+        collapsedLogs.increment();
+    }
+
+    void onDiscarded(long logs) {
+        discardedLogs.add(logs);
+    }
+
+    void onSpilledToDisk(int bytes) {
+        logsSpilledToDisk.increment();
+        bytesSpilledToDisk.add(bytes);
+    }
+
+    void onDrainedFromDisk(int bytes) {
+        logsDrainedFromDisk.increment();
+        bytesDrainedFromDisk.add(bytes);
+    }
+
+    /**
+     * @return number of logs lost because of buffer overflows, i.e. both dropped and evicted ones
+     */
+    long getLostLogs() {
+        return droppedLogs.sum() + evictedLogs.sum();
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffers.stream().mapToInt(Buffer::getCapacity).sum();
+    }
+
+    @Override
+    public int getBufferedLogs() {
+        return buffers.stream().mapToInt(Buffer::size).sum();
+    }
+
+    @Override
+    public long getOffHeapAllocatedBytes() {
+        return slabPools.stream().mapToLong(LogSlabPool::getAllocatedBytes).sum();
+    }
+
+    @Override
+    public long getOffHeapCapacityBytes() {
+        return slabPools.stream().mapToLong(LogSlabPool::getMaxBytes).sum();
+    }
+
+    @Override
+    public long getAppendedLogs() {
+        return appendedLogs.sum();
+    }
+
+    @Override
+    public long getDroppedLogs() {
+        return droppedLogs.sum();
+    }
+
+    @Override
+    public long getEvictedLogs() {
+        return evictedLogs.sum();
+    }
+
+    @Override
+    public long getSpilledLogs() {
+        return spilledLogs.sum();
+    }
+
+    @Override
+    public long getBlockedAppends() {
+        return blockedAppends.sum();
+    }
+
+    @Override
+    public long getSuppressedLogs() {
+        return suppressedLogs.sum();
+    }
+
+    @Override
+    public long getCollapsedLogs() {
+        return collapsedLogs.sum();
+    }
+
+    @Override
+    public long getDiscardedLogs() {
+        return discardedLogs.sum();
+    }
+
+    @Override
+    public long getDiskBufferedBytes() {
+        return spillFiles.stream().mapToLong(LogsSpillFile::getBytes).sum();
+    }
+
+    @Override
+    public long getLogsSpilledToDisk() {
+        return logsSpilledToDisk.sum();
+    }
+
+    @Override
+    public long getBytesSpilledToDisk() {
+        return bytesSpilledToDisk.sum();
+    }
+
+    @Override
+    public long getLogsDrainedFromDisk() {
+        return logsDrainedFromDisk.sum();
+    }
+
+    @Override
+    public long getBytesDrainedFromDisk() {
+        return bytesDrainedFromDisk.sum();
+    }
+
+}
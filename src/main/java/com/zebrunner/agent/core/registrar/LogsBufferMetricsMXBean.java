@@ -0,0 +1,42 @@
+package com.zebrunner.agent.core.registrar;
+
+/**
+ * Management interface exposing counters of logs buffered by the agent (see {@link LogsBufferMetrics}).
+ */
+public interface LogsBufferMetricsMXBean {
+
+    int getCapacity();
+
+    int getBufferedLogs();
+
+    long getOffHeapAllocatedBytes();
+
+    long getOffHeapCapacityBytes();
+
+    long getAppendedLogs();
+
+    long getDroppedLogs();
+
+    long getEvictedLogs();
+
+    long getSpilledLogs();
+
+    long getBlockedAppends();
+
+    long getSuppressedLogs();
+
+    long getCollapsedLogs();
+
+    long getDiscardedLogs();
+
+    long getDiskBufferedBytes();
+
+    long getLogsSpilledToDisk();
+
+    long getBytesSpilledToDisk();
+
+    long getLogsDrainedFromDisk();
+
+    long getBytesDrainedFromDisk();
+
+}
@@ -0,0 +1,69 @@
+package com.zebrunner.agent.core.registrar;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps logs of the agent itself from being captured as logs of tests. Otherwise, if a reporting appender is bound
+ * at root level, a failure to send logs produces more logs to be sent, and logging during a flush feeds the buffer
+ * being flushed.
+ * <p>Logs are not captured on threads owned by the agent (see {@link #newAgentThread(Runnable, String)}),
+ * nor on a thread that is already appending a log to the buffer. The state is kept in a thread-local counter,
+ * so the check is as cheap as looking up the current test.
+ */
+final class LogsCaptureGuard {
+
+    /**
+     * Number of nested appends on the thread, which is never less than one on threads owned by the agent
+     */
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private LogsCaptureGuard() {
+    }
+
+    /**
+     * Invoked before a log is appended to the buffer. Every successful call must be followed by {@link #exit()}.
+     *
+     * @return false if the log must not be captured
+     */
+    static boolean enter() {
+        int[] depth = DEPTH.get();
+        if (depth[0] > 0) {
+            return false;
+        }
+        depth[0]++;
+        return true;
+    }
+
+    static void exit() {
+        DEPTH.get()[0]--;
+    }
+
+    /**
+     * Creates a daemon thread whose logs are never captured.
+     *
+     * @param runnable task of the thread
+     * @param name     name of the thread
+     * @return new thread
+     */
+    static Thread newAgentThread(Runnable runnable, String name) {
+        Thread thread = new Thread(guarded(runnable), name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @param delegate factory creating the threads
+     * @return factory creating threads whose logs are never captured
+     */
+    static ThreadFactory agentThreadFactory(ThreadFactory delegate) {
+        return runnable -> delegate.newThread(guarded(runnable));
+    }
+
+    private static Runnable guarded(Runnable runnable) {
+        return () -> {
+            DEPTH.get()[0]++;
+            runnable.run();
+        };
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.registrar.descriptor.TestDescriptor;
+import com.zebrunner.agent.core.registrar.descriptor.TestFinishDescriptor;
+import com.zebrunner.agent.core.registrar.descriptor.TestStartDescriptor;
+
+class LogsCapturingRegistrationListener implements RegistrationListener {
+
+    private final TestLogsCapture testLogsCapture = TestLogsCapture.getInstance();
+
+    @Override
+    public void onAfterTestStart(TestStartDescriptor startDescriptor) {
+        if (testLogsCapture.isEnabled()) {
+            RunContext.getCurrentTest()
+                      .map(TestDescriptor::getZebrunnerId)
+                      .ifPresent(testLogsCapture::start);
+        }
+    }
+
+    @Override
+    public void onBeforeTestFinish(TestFinishDescriptor finishDescriptor) {
+        if (testLogsCapture.isEnabled()) {
+            RunContext.getCurrentTest()
+                      .map(TestDescriptor::getZebrunnerId)
+                      .ifPresent(testId -> testLogsCapture.release(testId, finishDescriptor.getStatus()));
+        }
+    }
+
+}
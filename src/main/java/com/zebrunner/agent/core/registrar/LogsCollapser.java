@@ -0,0 +1,89 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Collapses runs of identical consecutive lines of a test (e.g. produced by wait loops and retries) into a single log.
+ * <p>Lines are compared by hash of the message first, so telling distinct lines apart is cheap. A collapsed log keeps
+ * the timestamp of the first line of the run, while the number of lines and the timestamp of the last one are appended
+ * to its message, since the logs API of Zebrunner has no dedicated fields for them.
+ */
+final class LogsCollapser {
+
+    private LogsCollapser() {
+    }
+
+    /**
+     * Run of identical consecutive lines of a test.
+     */
+    static final class Run {
+
+        private final Log first;
+        private final int hash;
+        private int count = 1;
+        private long lastTimestamp;
+
+        Run(Log first) {
+            this.first = first;
+            this.hash = Objects.hashCode(first.getMessage());
+            this.lastTimestamp = first.getTimestamp();
+        }
+
+        boolean matches(Log log) {
+            return hash == Objects.hashCode(log.getMessage())
+                    && Objects.equals(first.getLevel(), log.getLevel())
+                    && Objects.equals(first.getMessage(), log.getMessage());
+        }
+
+        void repeat(Log log) {
+            count++;
+            lastTimestamp = log.getTimestamp();
+            LogsBufferMetrics.getInstance().onCollapsed();
+        }
+
+        /**
+         * @return the first line of the run, with the number of lines and timestamp of the last one if the line was repeated
+         */
+        Log complete() {
+            if (count > 1) {
+                first.setMessage(first.getMessage() + " [repeated " + count + " times, last at " + Instant.ofEpochMilli(lastTimestamp) + "]");
+                count = 1;
+            }
+            return first;
+        }
+
+    }
+
+    /**
+     * Collapses identical consecutive lines of every test, even if lines of other tests are interleaved with them.
+     *
+     * @param logs logs with ids of the tests they belong to, in the order they were appended
+     * @return collapsed logs in the original order
+     */
+    static List<Log> collapse(List<Log> logs) {
+        List<Log> collapsed = new ArrayList<>(logs.size());
+        Map<String, Run> runs = new HashMap<>();
+        for (Log log : logs) {
+            Run run = runs.get(log.getTestId());
+            if (run != null && run.matches(log)) {
+                run.repeat(log);
+            } else {
+                if (run != null) {
+                    run.complete();
+                }
+                runs.put(log.getTestId(), new Run(log));
+                collapsed.add(log);
+            }
+        }
+        runs.values().forEach(Run::complete);
+        return collapsed;
+    }
+
+}
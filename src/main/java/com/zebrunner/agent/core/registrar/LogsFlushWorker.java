@@ -0,0 +1,87 @@
+package com.zebrunner.agent.core.registrar;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Schedules flushes of a part of a logs buffer. A flush is started once the oldest log that is not sent yet
+ * reaches the max age, or right away if the buffered logs reached the max number or size.
+ * <p>Flushes are performed one by one by a dedicated thread, so a flush is started only once the previous one is over.
+ */
+@Slf4j
+final class LogsFlushWorker {
+
+    private final long maxAgeMillis;
+    private final Runnable flush;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * True if a flush is scheduled to send logs that reach the max age
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    /**
+     * True if a flush is requested since the buffered logs reached the max number or size
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    LogsFlushWorker(String threadName, long maxAgeMillis, Runnable flush) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.flush = flush;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> LogsCaptureGuard.newAgentThread(runnable, threadName));
+        // pending flushes are superseded by the final one
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Invoked after a log is appended to the buffer.
+     *
+     * @param thresholdReached tells whether the buffered logs reached the max number or size. It is not invoked
+     *                         if a flush is already requested
+     */
+    void onAppended(BooleanSupplier thresholdReached) {
+        // the first log appended since the last flush started determines when the next flush is due
+        if (!flushScheduled.get() && flushScheduled.compareAndSet(false, true)) {
+            this.submit(maxAgeMillis);
+        }
+        if (!flushRequested.get() && thresholdReached.getAsBoolean() && flushRequested.compareAndSet(false, true)) {
+            this.submit(0);
+        }
+    }
+
+    private void submit(long delayMillis) {
+        try {
+            executor.schedule(() -> this.run(), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // JVM is shutting down, so the logs are sent by the final flush
+        }
+    }
+
+    private void run() {
+        // logs appended from now on trigger the next flush
+        flushScheduled.set(false);
+        flushRequested.set(false);
+        try {
+            flush.run();
+        } catch (RuntimeException e) {
+            log.error("Could not flush logs: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cancels pending flushes and waits for the running one to complete.
+     *
+     * @param timeoutNanos max time to wait
+     */
+    void shutdown(long timeoutNanos) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(timeoutNanos, TimeUnit.NANOSECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+}
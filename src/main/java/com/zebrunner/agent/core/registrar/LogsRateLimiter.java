@@ -0,0 +1,226 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.logging.Log;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Keeps a single test from swamping the logs buffer, e.g. with a polling loop logging at DEBUG level.
+ * <p>Once a test produced the configured number of lines, only one of every N lines below the keep level is accepted.
+ * Lines that pass sampling are then rate limited per test with a token bucket, which allows short bursts
+ * while the average rate stays within the limit. Lines at or above the keep level (WARN by default) are always accepted.
+ * <p>Suppressed lines are counted per test and reported with a summary log, either before the next accepted line
+ * of the test or on the next flush of the buffer.
+ */
+final class LogsRateLimiter {
+
+    /**
+     * Tests that did not log anything for this time are forgotten, so the state does not grow with the number of tests
+     */
+    private static final long IDLE_TEST_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int rateLimit;
+    private final int burst;
+    private final int samplingThreshold;
+    private final int samplingRate;
+    private final int keepSeverity;
+
+    private final Map<Long, TestState> states = new ConcurrentHashMap<>();
+    private final LogsBufferMetrics metrics = LogsBufferMetrics.getInstance();
+
+    LogsRateLimiter() {
+        this(
+                ConfigurationHolder.getLogsRateLimit(),
+                ConfigurationHolder.getLogsRateLimitBurst(),
+                ConfigurationHolder.getLogsSamplingThreshold(),
+                ConfigurationHolder.getLogsSamplingRate(),
+                ConfigurationHolder.getLogsKeepLevel()
+        );
+    }
+
+    /**
+     * @param rateLimit         max number of lines per second of a test, or 0 if lines are not rate limited
+     * @param burst             max number of lines a test may produce at once
+     * @param samplingThreshold number of lines of a test after which lines are sampled, or 0 if lines are not sampled
+     * @param samplingRate      N, so that one of every N sampled lines is accepted
+     * @param keepLevel         min level of lines which are always accepted
+     */
+    LogsRateLimiter(int rateLimit, int burst, int samplingThreshold, int samplingRate, String keepLevel) {
+        this.rateLimit = rateLimit;
+        this.burst = Math.max(1, burst);
+        this.samplingThreshold = samplingThreshold;
+        this.samplingRate = samplingRate;
+        this.keepSeverity = severity(keepLevel);
+    }
+
+    private static final class TestState {
+
+        private double tokens;
+        private long lastRefillNanos;
+        private long lines;
+        private long sampledLines;
+        private long suppressedLines;
+
+    }
+
+    boolean isEnabled() {
+        return rateLimit > 0 || samplingThreshold > 0;
+    }
+
+    /**
+     * @param testId id of the test the line belongs to
+     * @param level  level of the line, may be null
+     * @return -1 if the line is suppressed, otherwise the number of lines of the test suppressed since the last summary
+     */
+    long acquire(Long testId, String level) {
+        if (!this.isEnabled() || severity(level) >= keepSeverity) {
+            return this.takeSuppressedLines(testId);
+        }
+
+        long now = System.nanoTime();
+        TestState state = states.computeIfAbsent(testId != null ? testId : 0L, $ -> {
+            TestState newState = new TestState();
+            newState.tokens = burst;
+            newState.lastRefillNanos = now;
+            return newState;
+        });
+
+        synchronized (state) {
+            boolean accepted = this.isSampled(state) && this.tryTakeToken(state, now);
+            if (!accepted) {
+                state.suppressedLines++;
+                metrics.onSuppressed();
+                return -1;
+            }
+            long suppressedLines = state.suppressedLines;
+            state.suppressedLines = 0;
+            return suppressedLines;
+        }
+    }
+
+    private boolean isSampled(TestState state) {
+        if (samplingThreshold <= 0 || ++state.lines <= samplingThreshold) {
+            return true;
+        }
+        return state.sampledLines++ % samplingRate == 0;
+    }
+
+    private boolean tryTakeToken(TestState state, long now) {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        double refill = (double) (now - state.lastRefillNanos) * rateLimit / NANOS_PER_SECOND;
+        state.tokens = Math.min(burst, state.tokens + refill);
+        state.lastRefillNanos = now;
+        if (state.tokens >= 1) {
+            state.tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    private long takeSuppressedLines(Long testId) {
+        if (!this.isEnabled()) {
+            return 0;
+        }
+        TestState state = states.get(testId != null ? testId : 0L);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            long suppressedLines = state.suppressedLines;
+            state.suppressedLines = 0;
+            return suppressedLines;
+        }
+    }
+
+    /**
+     * Reports lines suppressed since the last summary and forgets the tests that do not log anymore.
+     *
+     * @param testFilter tells whether the test belongs to the caller, e.g. to a shard of the buffer
+     * @param action     accepts id of a test and the number of its suppressed lines
+     */
+    void forEachSuppressed(LongPredicate testFilter, BiConsumer<Long, Long> action) {
+        if (!this.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Long, TestState>> iterator = states.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, TestState> entry = iterator.next();
+            if (!testFilter.test(entry.getKey())) {
+                continue;
+            }
+            TestState state = entry.getValue();
+            long suppressedLines;
+            synchronized (state) {
+                suppressedLines = state.suppressedLines;
+                state.suppressedLines = 0;
+                if (now - state.lastRefillNanos > IDLE_TEST_NANOS) {
+                    iterator.remove();
+                }
+            }
+            if (suppressedLines > 0) {
+                action.accept(entry.getKey(), suppressedLines);
+            }
+        }
+    }
+
+    /**
+     * @param testId          id of the test the lines belong to
+     * @param suppressedLines number of suppressed lines
+     * @return log telling how many lines of the test were suppressed
+     */
+    static Log toSummary(Long testId, long suppressedLines) {
+        return Log.builder()
+                  .testId(String.valueOf(testId))
+                  .message(suppressedLines + " log lines were suppressed by rate limiting and sampling of Zebrunner agent.")
+                  .level("WARN")
+                  .timestamp(System.currentTimeMillis())
+                  .build();
+    }
+
+    /**
+     * Ranks levels of the supported logging frameworks, including java.util.logging.
+     *
+     * @param level name of a level, may be null
+     * @return severity of the level, where unknown levels are considered as INFO
+     */
+    static int severity(String level) {
+        if (level == null) {
+            return 2;
+        }
+        switch (level.toUpperCase(Locale.ROOT)) {
+            case "ALL":
+            case "TRACE":
+            case "FINEST":
+            case "FINER":
+                return 0;
+            case "DEBUG":
+            case "FINE":
+            case "CONFIG":
+                return 1;
+            case "WARN":
+            case "WARNING":
+                return 3;
+            case "ERROR":
+            case "SEVERE":
+                return 4;
+            case "FATAL":
+            case "OFF":
+                return 5;
+            case "INFO":
+            default:
+                return 2;
+        }
+    }
+
+}
@@ -0,0 +1,430 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free buffer of logs written by many test threads and drained by a single flushing thread.
+ * <p>Slots of the buffer are preallocated and reused, so appending a log does not allocate anything.
+ * A slot keeps the captured event of a logging framework along with its converter, and the event is converted
+ * to {@link Log} only once it is taken from the buffer (see {@link LogEventConverter}). Every slot has a sequence
+ * number telling whether the slot is free to be written at the given position or holds a log to be read at it
+ * (see bounded MPMC queue by Dmitry Vyukov). Producers claim a position with a single CAS, so they never wait
+ * for each other unless they contend for the very same slot.
+ * <p>Events which cannot be kept until the flush, e.g. reusable events of garbage-free logging, may be copied instead.
+ * Their message is formatted into a builder owned by the slot, and the builder is reused by the next rounds
+ * of producers, so copying does not allocate anything either in the steady state.
+ * <p>Logs which do not fit the buffer are handled according to {@link OverflowPolicy}. With {@link OverflowPolicy#SPILL},
+ * the overflow is kept in memory up to the spill threshold, and the rest of it goes to {@link LogsSpillFile},
+ * so that a slow Zebrunner does not make the buffer grow in heap without limit.
+ */
+@Slf4j
+final class LogsRingBuffer implements LogsBufferMetrics.Buffer {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long BLOCKED_PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int INITIAL_MESSAGE_CAPACITY = 128;
+    /**
+     * Builders grown beyond this capacity by a long message are not reused, so they do not stay in heap
+     */
+    private static final int MAX_RETAINED_MESSAGE_CAPACITY = 4096;
+
+    enum OverflowPolicy {
+
+        /**
+         * The producer waits until the flushing thread frees a slot. Test threads are slowed down rather than
+         * losing logs, so this policy should be used with care
+         */
+        BLOCK,
+        /**
+         * The oldest buffered log is discarded in favor of the new one
+         */
+        DROP_OLDEST,
+        /**
+         * The new log is discarded
+         */
+        DROP_NEWEST,
+        /**
+         * The new log is kept in an overflow queue which is drained once the buffer is empty. Once the queue
+         * reaches the spill threshold, the overflow goes to disk. Logs are never lost, while the buffer
+         * still serves regular load without allocations
+         */
+        SPILL;
+
+        static OverflowPolicy parse(String value) {
+            if (value == null) {
+                return SPILL;
+            }
+            for (OverflowPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value.replace('-', '_'))) {
+                    return policy;
+                }
+            }
+            log.warn("Unknown overflow policy of logs buffer '{}', so {} policy is used.", value, SPILL);
+            return SPILL;
+        }
+
+    }
+
+    private static final class Slot {
+
+        private Object event;
+        private LogEventConverter<Object> converter;
+        private Long testId;
+        /**
+         * Approximate size of the log serialized to JSON
+         */
+        private int size;
+
+        /**
+         * True if the slot holds a copy of the event rather than the event itself
+         */
+        private boolean copied;
+        private StringBuilder message;
+        private String level;
+        private long timestamp;
+
+        private void copy(Object event, LogEventConverter<Object> converter) {
+            if (message == null) {
+                message = new StringBuilder(INITIAL_MESSAGE_CAPACITY);
+            }
+            try {
+                converter.formatMessageTo(event, message);
+                level = converter.getLevel(event);
+                timestamp = converter.getTimestamp(event);
+                copied = true;
+            } catch (RuntimeException e) {
+                // the slot is claimed already, so it is published empty and skipped by the flushing thread
+                message.setLength(0);
+                log.warn("Could not copy log event to be sent to Zebrunner: {}", e.getMessage());
+            }
+        }
+
+        private Log takeCopy() {
+            Log entry = Log.builder()
+                           .testId(String.valueOf(testId))
+                           .message(message.toString())
+                           .level(level)
+                           .timestamp(timestamp)
+                           .build();
+            this.clearCopy();
+            return entry;
+        }
+
+        private void clearCopy() {
+            copied = false;
+            level = null;
+            if (message.capacity() > MAX_RETAINED_MESSAGE_CAPACITY) {
+                message = null;
+            } else {
+                message.setLength(0);
+            }
+        }
+
+    }
+
+    private final int mask;
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    /**
+     * Next position to be written
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Next position to be read
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    private final OverflowPolicy overflowPolicy;
+    private final Queue<Log> overflow = new ConcurrentLinkedQueue<>();
+    /**
+     * Size of the overflow queue, since {@link ConcurrentLinkedQueue#size()} traverses the whole queue
+     */
+    private final LongAdder overflowSize = new LongAdder();
+    /**
+     * Approximate size of the logs in the overflow queue serialized to JSON
+     */
+    private final LongAdder overflowBytes = new LongAdder();
+    private final long spillThreshold;
+    /**
+     * Logs which do not fit the overflow queue. All the subsequent logs go to the file until it is drained
+     */
+    private final LogsSpillFile spillFile;
+    /**
+     * Approximate size of the buffered logs serialized to JSON (see {@link LogsBatches#estimateSize(Log)})
+     */
+    private final LongAdder bufferedBytes = new LongAdder();
+    private final LogsBufferMetrics metrics = LogsBufferMetrics.getInstance();
+
+    /**
+     * @param capacity       min capacity of the buffer. Actual capacity is the closest power of two
+     * @param overflowPolicy policy applied to logs which do not fit the buffer
+     * @param spillThreshold max size of the overflow kept in memory, in bytes
+     * @param spillFile      file keeping the overflow exceeding the threshold
+     */
+    LogsRingBuffer(int capacity, OverflowPolicy overflowPolicy, long spillThreshold, LogsSpillFile spillFile) {
+        int actualCapacity = Integer.highestOneBit(Math.min(Math.max(2, capacity), MAX_CAPACITY) - 1) << 1;
+        this.mask = actualCapacity - 1;
+        this.slots = new Slot[actualCapacity];
+        this.sequences = new AtomicLongArray(actualCapacity);
+        for (int i = 0; i < actualCapacity; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.overflowPolicy = overflowPolicy;
+        this.spillThreshold = spillThreshold;
+        this.spillFile = spillFile;
+        metrics.register(this);
+    }
+
+    /**
+     * Appends the event to the buffer applying the overflow policy if the buffer is full.
+     *
+     * @param event     captured event of a logging framework
+     * @param converter converter of the event to {@link Log}
+     * @param testId    id of the test the event belongs to
+     * @param size      approximate size of the log serialized to JSON
+     */
+    void put(Object event, LogEventConverter<?> converter, Long testId, int size) {
+        this.put(event, converter, testId, size, false);
+    }
+
+    /**
+     * Same as {@link #put(Object, LogEventConverter, Long, int)}, but the event is copied into the buffer rather than kept
+     * (see {@link LogEventConverter#canCopy(Object)}). So the event may be reused once the method returns.
+     */
+    void putCopy(Object event, LogEventConverter<?> converter, Long testId, int size) {
+        this.put(event, converter, testId, size, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(Object event, LogEventConverter<?> converter, Long testId, int size, boolean copy) {
+        LogEventConverter<Object> eventConverter = (LogEventConverter<Object>) converter;
+        // once logs start to overflow, all the subsequent logs go to the overflow queue to keep the order
+        if (overflowPolicy == OverflowPolicy.SPILL && this.isOverflowing()) {
+            this.spill(event, eventConverter, testId);
+            return;
+        }
+
+        boolean blocked = false;
+        while (!this.offer(event, eventConverter, testId, size, copy)) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    metrics.onDropped();
+                    return;
+                case DROP_OLDEST:
+                    if (this.poll(null)) {
+                        metrics.onEvicted();
+                    }
+                    break;
+                case BLOCK:
+                    if (!blocked) {
+                        blocked = true;
+                        metrics.onBlocked();
+                    }
+                    LockSupport.parkNanos(BLOCKED_PRODUCER_PARK_NANOS);
+                    break;
+                case SPILL:
+                default:
+                    this.spill(event, eventConverter, testId);
+                    return;
+            }
+        }
+        bufferedBytes.add(size);
+        metrics.onAppended();
+    }
+
+    private boolean isOverflowing() {
+        return !overflow.isEmpty() || !spillFile.isEmpty();
+    }
+
+    /**
+     * Overflow is not expected under regular load, so spilled events are converted right away
+     * rather than keeping the events along with their converters.
+     */
+    private void spill(Object event, LogEventConverter<Object> converter, Long testId) {
+        Log entry = convert(event, converter, testId);
+        if (entry == null) {
+            return;
+        }
+        int size = LogsBatches.estimateSize(entry);
+        // once logs go to disk, the subsequent ones follow them to keep the order
+        boolean spilledToDisk = (!spillFile.isEmpty() || overflowBytes.sum() >= spillThreshold) && spillFile.append(entry);
+        if (!spilledToDisk) {
+            overflow.add(entry);
+            overflowSize.increment();
+            overflowBytes.add(size);
+        }
+        bufferedBytes.add(size);
+        metrics.onAppended();
+        metrics.onSpilled();
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    private boolean offer(Object event, LogEventConverter<Object> converter, Long testId, int size, boolean copy) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    if (copy) {
+                        slot.copy(event, converter);
+                    } else {
+                        slot.event = event;
+                        slot.converter = converter;
+                    }
+                    slot.testId = testId;
+                    slot.size = size;
+                    // publishes the log to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                // another producer has just claimed the position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest log from the buffer. Normally, logs are taken by the flushing thread only,
+     * but producers evict logs as well if {@link OverflowPolicy#DROP_OLDEST} is applied, so positions are claimed with CAS.
+     *
+     * @param target collection to add the log to, or null if the log is discarded without conversion
+     * @return false if the buffer is empty
+     */
+    private boolean poll(Collection<? super Log> target) {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    // a copy is taken before the slot is freed, since its builder is reused by the next producer
+                    Log copiedEntry = null;
+                    if (slot.copied && target != null) {
+                        copiedEntry = slot.takeCopy();
+                    } else if (slot.copied) {
+                        slot.clearCopy();
+                    }
+                    Object event = slot.event;
+                    LogEventConverter<Object> converter = slot.converter;
+                    Long testId = slot.testId;
+                    int size = slot.size;
+                    slot.event = null;
+                    slot.converter = null;
+                    slot.testId = null;
+                    // frees the slot for the next round of producers
+                    sequences.set(index, position + mask + 1);
+                    bufferedBytes.add(-size);
+
+                    if (copiedEntry != null) {
+                        target.add(copiedEntry);
+                    } else if (target != null && converter != null) {
+                        Log entry = convert(event, converter, testId);
+                        if (entry != null) {
+                            target.add(entry);
+                        }
+                    }
+                    return true;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to the given number of the oldest logs to the collection. Logs from the overflow queue
+     * are taken only once the buffer itself is empty, since they are newer than the buffered ones.
+     * Likewise, logs spilled to disk are taken only once the overflow queue is empty.
+     *
+     * @return number of logs taken from the buffer, including the ones that could not be converted
+     */
+    int drainTo(Collection<? super Log> target, int maxLogs) {
+        int drained = 0;
+        while (drained < maxLogs && this.poll(target)) {
+            drained++;
+        }
+        Log entry;
+        while (drained < maxLogs && (entry = overflow.poll()) != null) {
+            int size = LogsBatches.estimateSize(entry);
+            overflowSize.decrement();
+            overflowBytes.add(-size);
+            bufferedBytes.add(-size);
+            target.add(entry);
+            drained++;
+        }
+        while (drained < maxLogs && (entry = spillFile.poll()) != null) {
+            bufferedBytes.add(-LogsBatches.estimateSize(entry));
+            target.add(entry);
+            drained++;
+        }
+        return drained;
+    }
+
+    private static Log convert(Object event, LogEventConverter<Object> converter, Long testId) {
+        try {
+            Log entry = converter.convert(event);
+            entry.setTestId(String.valueOf(testId));
+            return entry;
+        } catch (RuntimeException e) {
+            log.warn("Could not convert log event to be sent to Zebrunner: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public int size() {
+        long buffered = tail.get() - head.get();
+        return (int) Math.max(0, Math.max(0, Math.min(buffered, mask + 1)) + overflowSize.sum() + spillFile.size());
+    }
+
+    /**
+     * @return approximate size of the buffered logs serialized to JSON
+     */
+    long getBufferedBytes() {
+        return Math.max(0, bufferedBytes.sum());
+    }
+
+    boolean isEmpty() {
+        return tail.get() == head.get() && overflow.isEmpty() && spillFile.isEmpty();
+    }
+
+    /**
+     * Deletes the logs spilled to disk, so it is expected to be invoked on shutdown once the logs are sent.
+     *
+     * @return number of the spilled logs that were not sent yet and got deleted
+     */
+    int close() {
+        int unsentLogs = spillFile.size();
+        spillFile.close();
+        return unsentLogs;
+    }
+
+    @Override
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+}
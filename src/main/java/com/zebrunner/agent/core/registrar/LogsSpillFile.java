@@ -0,0 +1,238 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.logging.Log;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Disk overflow of a logs buffer backed by memory-mapped segment files. Logs are appended to the last segment
+ * and read back from the first one in the same order, so the file acts as a FIFO queue.
+ * <p>Every record consists of its length followed by test id, message, level and timestamp of the log.
+ * A segment is deleted once all of its logs are read, and the last segment is reused once it is drained.
+ * Unlike {@link ApiCallSpool}, the logs are not meant to survive the process, so the whole directory
+ * is deleted on shutdown.
+ */
+@Slf4j
+final class LogsSpillFile {
+
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int NULL_STRING_LENGTH = -1;
+
+    private static final String DIRECTORY_PREFIX = "zebrunner-logs-";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".spill";
+
+    private final Path rootDirectory;
+    private final LogsBufferMetrics metrics = LogsBufferMetrics.getInstance();
+
+    /**
+     * Created along with the first segment, so the file system is not touched unless the logs are spilled
+     */
+    private Path directory;
+    /**
+     * Segments in the order they were created. Logs are appended to the last one and read from the first one
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentIndex;
+    private boolean closed;
+
+    private volatile int records;
+    private volatile long bytes;
+
+    LogsSpillFile(Path rootDirectory) {
+        this.rootDirectory = rootDirectory;
+        metrics.register(this);
+    }
+
+    @RequiredArgsConstructor
+    private static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+    }
+
+    /**
+     * Appends the log to the end of the file.
+     *
+     * @param entry log with id of the test it belongs to
+     * @return false if the log could not be written to disk
+     */
+    synchronized boolean append(Log entry) {
+        if (closed) {
+            return false;
+        }
+        byte[] testId = toBytes(entry.getTestId());
+        byte[] message = toBytes(entry.getMessage());
+        byte[] level = toBytes(entry.getLevel());
+        int length = 3 * Integer.BYTES + length(testId) + length(message) + length(level) + Long.BYTES;
+        int recordSize = Integer.BYTES + length;
+
+        try {
+            Segment segment = segments.peekLast();
+            if (segment == null || segment.writePosition + recordSize > segment.buffer.capacity()) {
+                segment = this.openSegment(Math.max(SEGMENT_SIZE, recordSize));
+            }
+
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.position(segment.writePosition);
+            buffer.putInt(length);
+            putBytes(buffer, testId);
+            putBytes(buffer, message);
+            putBytes(buffer, level);
+            buffer.putLong(entry.getTimestamp());
+            segment.writePosition += recordSize;
+        } catch (IOException e) {
+            log.warn("Could not spill logs to {}: {}", rootDirectory, e.getMessage());
+            return false;
+        }
+
+        records++;
+        bytes += recordSize;
+        metrics.onSpilledToDisk(recordSize);
+        return true;
+    }
+
+    /**
+     * Takes the oldest log from the file.
+     *
+     * @return the log, or null if all the logs are read
+     */
+    synchronized Log poll() {
+        Segment segment = segments.peekFirst();
+        while (segment != null && segment.readPosition == segment.writePosition) {
+            if (segment == segments.peekLast()) {
+                // the last segment is drained, so it is overwritten from the beginning rather than growing further
+                segment.readPosition = 0;
+                segment.writePosition = 0;
+                return null;
+            }
+            segments.removeFirst();
+            this.deleteSegment(segment);
+            segment = segments.peekFirst();
+        }
+        if (segment == null) {
+            return null;
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.position(segment.readPosition);
+        int recordSize = Integer.BYTES + buffer.getInt();
+        Log entry = Log.builder()
+                       .testId(getString(buffer))
+                       .message(getString(buffer))
+                       .level(getString(buffer))
+                       .timestamp(buffer.getLong())
+                       .build();
+        segment.readPosition += recordSize;
+
+        records--;
+        bytes -= recordSize;
+        metrics.onDrainedFromDisk(recordSize);
+        return entry;
+    }
+
+    boolean isEmpty() {
+        return records == 0;
+    }
+
+    int size() {
+        return records;
+    }
+
+    /**
+     * @return size of the logs that are not read yet
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Deletes all the segments along with the logs that are not read yet.
+     */
+    synchronized void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            this.deleteSegment(segment);
+        }
+        segments.clear();
+        records = 0;
+        bytes = 0;
+
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                log.debug("Could not delete logs spill directory {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+
+    private Segment openSegment(int size) throws IOException {
+        if (directory == null) {
+            Files.createDirectories(rootDirectory);
+            directory = Files.createTempDirectory(rootDirectory, DIRECTORY_PREFIX);
+            directory.toFile().deleteOnExit();
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_FILE_PREFIX, nextSegmentIndex++, SEGMENT_FILE_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // the files must not outlive the process even if the shutdown hook does not complete
+        path.toFile().deleteOnExit();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        Segment segment = new Segment(path, channel, buffer);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // the file may still be mapped on some platforms, and it is deleted on exit anyway
+            log.debug("Could not delete logs spill file {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] value) {
+        return value != null ? value.length : 0;
+    }
+
+    private static void putBytes(MappedByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_STRING_LENGTH);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+}
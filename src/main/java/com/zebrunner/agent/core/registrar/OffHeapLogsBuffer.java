@@ -0,0 +1,477 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.descriptor.TestDescriptor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Logs buffer keeping the logs encoded to JSON in direct buffers (slabs) rather than as objects on the heap.
+ * It is meant for test runs producing large volumes of logs, where the buffered logs would otherwise put pressure
+ * on the garbage collector of the tested application.
+ * <p>A log is converted and encoded straight into the current slab of its shard on the test thread, so the converted
+ * {@link Log} object is short-lived. Slabs are taken from a bounded {@link LogSlabPool} and returned to it once
+ * the logs they hold are sent. On flush, the bytes of the slabs are copied to the request body as is
+ * (see {@link EncodedLogs}), so the logs are neither serialized nor materialized again.
+ * <p>Like {@link FlushingLogsBuffer}, the buffer is split into shards by test, and every shard is flushed by its own
+ * {@link LogsFlushWorker} once the number, size or age threshold is reached. Requests of a shard are sent one by one,
+ * so logs of a test arrive in the order they were appended. If all the slabs of the pool are in use,
+ * the configured overflow policy is applied.
+ * <p>Lines of a test may be sampled and rate limited before they are encoded (see {@link LogsRateLimiter}).
+ * Identical consecutive lines of a test are collapsed into a single log (see {@link LogsCollapser}), so the first line
+ * of a run is encoded once the run is over or on the next flush.
+ * <p>Logs of the agent itself are not captured (see {@link LogsCaptureGuard}).
+ * <p>In the failure-focused capture mode, logs of a running test are held until it finishes (see {@link TestLogsCapture}).
+ *
+ * @param <E> the type of events of the logging framework
+ */
+@Slf4j
+final class OffHeapLogsBuffer<E> implements LogsBuffer<E> {
+
+    private static final long BLOCKED_PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /**
+     * Size of the brackets enclosing an array
+     */
+    private static final int BATCH_JSON_OVERHEAD = 2;
+
+    private static final int FLUSH_MAX_EVENTS = ConfigurationHolder.getLogsFlushMaxEvents();
+    private static final int FLUSH_MAX_BYTES = ConfigurationHolder.getLogsFlushMaxBytes();
+    private static final long FLUSH_MAX_AGE_MILLIS = ConfigurationHolder.getLogsFlushMaxAge();
+    private static final int MAX_REQUEST_BYTES = ConfigurationHolder.getLogsMaxRequestBytes();
+    private static final LogsRingBuffer.OverflowPolicy OVERFLOW_POLICY =
+            LogsRingBuffer.OverflowPolicy.parse(ConfigurationHolder.getLogsOverflowPolicy());
+
+    private static final ZebrunnerApiClient API_CLIENT = ClientRegistrar.getClient();
+
+    private static final LogSlabPool SLAB_POOL = new LogSlabPool(
+            // a slab must fit a single request
+            Math.min(ConfigurationHolder.getLogsSlabSize(), MAX_REQUEST_BYTES - BATCH_JSON_OVERHEAD),
+            ConfigurationHolder.getLogsMaxSlabs()
+    );
+    private static final Shard[] SHARDS = createShards(ConfigurationHolder.getLogsBufferShards());
+    /**
+     * Slabs are shared by the shards, so a shard is flushed once it holds half of its share of the pool at the latest.
+     * Otherwise the size threshold might be reached by all the shards only after the pool is exhausted.
+     */
+    private static final long SHARD_FLUSH_MAX_BYTES = Math.min(FLUSH_MAX_BYTES, Math.max(1, SLAB_POOL.getMaxBytes() / (2L * SHARDS.length)));
+    private static final ExecutorService SEND_EXECUTOR = Executors.newFixedThreadPool(
+            SHARDS.length,
+            runnable -> LogsCaptureGuard.newAgentThread(runnable, "zebrunner-logs-sender")
+    );
+    private static final AtomicLong REPORTED_LOST_LOGS = new AtomicLong();
+    private static final LogsRateLimiter RATE_LIMITER = new LogsRateLimiter();
+    private static final boolean COLLAPSE_DUPLICATES = ConfigurationHolder.isLogsCollapseDuplicates();
+    private static final TestLogsCapture CAPTURE = TestLogsCapture.getInstance();
+
+    static {
+        // the shards are shared by all the instances of the buffer, so they are flushed by a single hook
+        Runtime.getRuntime().addShutdownHook(LogsCaptureGuard.newAgentThread(OffHeapLogsBuffer::shutdown, "zebrunner-logs-shutdown"));
+    }
+
+    private final LogEventConverter<E> converter;
+
+    /**
+     * @param converter logging framework specific event converter
+     */
+    OffHeapLogsBuffer(LogEventConverter<E> converter) {
+        this.converter = converter;
+        CAPTURE.setSink(OffHeapLogsBuffer::putReleased);
+    }
+
+    private static Shard[] createShards(int count) {
+        LogsBufferMetrics.getInstance().register(SLAB_POOL);
+        Shard[] shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+            LogsBufferMetrics.getInstance().register(shards[i]);
+        }
+        return shards;
+    }
+
+    @Override
+    public void put(E event) {
+        if (!LogsCaptureGuard.enter()) {
+            return;
+        }
+        try {
+            this.append(event);
+        } finally {
+            LogsCaptureGuard.exit();
+        }
+    }
+
+    private void append(E event) {
+        TestDescriptor currentTest = RunContext.getCurrentTestOrNull(converter.getThreadId(event));
+
+        if (currentTest != null) {
+            Long testId = currentTest.getZebrunnerId();
+            Shard shard = getShard(testId);
+
+            String level = RATE_LIMITER.isEnabled() ? converter.getLevel(event) : null;
+            if (level != null && !shard.acquire(testId, level)) {
+                return;
+            }
+            Log log = converter.convert(event);
+            if (level == null && !shard.acquire(testId, log.getLevel())) {
+                return;
+            }
+            if (CAPTURE.hold(testId, log, null)) {
+                return;
+            }
+            shard.put(testId, log);
+        }
+    }
+
+    /**
+     * Buffers a log released by {@link TestLogsCapture} once its test finished. The logs are held already converted,
+     * since this buffer converts events on the test thread anyway.
+     */
+    private static void putReleased(Long testId, Object event, LogEventConverter<Object> converter) {
+        getShard(testId).put(testId, (Log) event);
+    }
+
+    private static Shard getShard(Long testId) {
+        return SHARDS[Math.floorMod(Long.hashCode(testId != null ? testId : 0), SHARDS.length)];
+    }
+
+    private static void reportLostLogs() {
+        long lostLogs = LogsBufferMetrics.getInstance().getLostLogs();
+        long reportedLostLogs = REPORTED_LOST_LOGS.getAndSet(lostLogs);
+        if (lostLogs > reportedLostLogs) {
+            log.warn(
+                    "{} logs were not sent to Zebrunner because the off-heap logs buffer ({} bytes) overflowed.",
+                    lostLogs - reportedLostLogs, SLAB_POOL.getMaxBytes()
+            );
+        }
+    }
+
+    private static void shutdown() {
+        long timeoutSeconds = ConfigurationHolder.getLogsShutdownTimeout();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+        try {
+            // logs of unfinished tests are released while the workers may still free up space for them
+            CAPTURE.releaseAll();
+            for (Shard shard : SHARDS) {
+                shard.worker.shutdown(Math.max(0, deadline - System.nanoTime()));
+            }
+
+            List<CompletableFuture<Void>> flushes = new ArrayList<>();
+            for (Shard shard : SHARDS) {
+                flushes.add(CompletableFuture.runAsync(shard::flush, SEND_EXECUTOR));
+            }
+            CompletableFuture.allOf(flushes.toArray(new CompletableFuture[0]))
+                             .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Not all the logs were sent to Zebrunner within {} seconds of shutdown timeout.", timeoutSeconds);
+        } catch (InterruptedException | ExecutionException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Part of the buffer holding logs of a subset of tests. Logs are appended to the current slab, and slabs are sealed
+     * once they are full. A flush takes all the sealed slabs along with the current one.
+     */
+    private static final class Shard implements LogsBufferMetrics.Buffer {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LogsFlushWorker worker;
+        private final BooleanSupplier flushThresholdReached = this::isFlushThresholdReached;
+
+        /**
+         * Slab the logs are appended to, guarded by the lock
+         */
+        private LogSlab current;
+        /**
+         * Full slabs in the order they were filled, guarded by the lock
+         */
+        private final Deque<LogSlab> sealed = new ArrayDeque<>();
+        /**
+         * Runs of identical lines by test, whose first lines are not encoded yet, guarded by the lock
+         */
+        private final Map<Long, LogsCollapser.Run> runs = new HashMap<>();
+        /**
+         * Written under the lock only, but read by the test threads to check the flush thresholds
+         */
+        private volatile int bufferedLogs;
+        private volatile long bufferedBytes;
+
+        private Shard(int index) {
+            this.worker = new LogsFlushWorker("zebrunner-logs-flusher-" + index, FLUSH_MAX_AGE_MILLIS, this::flush);
+        }
+
+        private void put(Long testId, Log log) {
+            boolean blocked = false;
+            while (!this.append(testId, log)) {
+                // all the slabs are in use and the producer has to wait until a flush returns some of them to the pool
+                if (!blocked) {
+                    blocked = true;
+                    LogsBufferMetrics.getInstance().onBlocked();
+                }
+                worker.onAppended(() -> true);
+                LockSupport.parkNanos(BLOCKED_PRODUCER_PARK_NANOS);
+            }
+            worker.onAppended(flushThresholdReached);
+        }
+
+        /**
+         * @return false if the log could not be appended because of {@link LogsRingBuffer.OverflowPolicy#BLOCK} policy
+         */
+        private boolean append(Long testId, Log log) {
+            lock.lock();
+            try {
+                if (!COLLAPSE_DUPLICATES) {
+                    return this.encode(testId, log);
+                }
+                // the first line of a run is encoded once the run is over, so that repeats are collapsed into it
+                LogsCollapser.Run run = runs.get(testId);
+                if (run != null && run.matches(log)) {
+                    run.repeat(log);
+                    return true;
+                }
+                if (run != null && !this.encode(testId, run.complete())) {
+                    return false;
+                }
+                runs.put(testId, new LogsCollapser.Run(log));
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Must be invoked under the lock.
+         *
+         * @return false if the log could not be appended because of {@link LogsRingBuffer.OverflowPolicy#BLOCK} policy
+         */
+        private boolean encode(Long testId, Log log) {
+            int length = current != null ? current.getLength() : 0;
+            if (current != null && current.append(testId, log)) {
+                this.onAppended(current.getLength() - length, !current.isPooled());
+                return true;
+            }
+            if (current != null && current.isEmpty()) {
+                this.appendOversized(testId, log);
+                return true;
+            }
+
+            ByteBuffer buffer = SLAB_POOL.acquire();
+            boolean pooled = buffer != null;
+            if (buffer == null) {
+                switch (OVERFLOW_POLICY) {
+                    case DROP_NEWEST:
+                        LogsBufferMetrics.getInstance().onDropped();
+                        return true;
+                    case DROP_OLDEST:
+                        buffer = this.evictOldestSlab();
+                        pooled = true;
+                        if (buffer == null) {
+                            LogsBufferMetrics.getInstance().onDropped();
+                            return true;
+                        }
+                        break;
+                    case BLOCK:
+                        return false;
+                    case SPILL:
+                    default:
+                        // the slab is not returned to the pool, so the heap takes the excess of logs
+                        buffer = ByteBuffer.allocate(SLAB_POOL.getSlabSize());
+                        break;
+                }
+            }
+
+            if (current != null) {
+                sealed.add(current);
+            }
+            current = new LogSlab(buffer, pooled);
+            if (current.append(testId, log)) {
+                this.onAppended(current.getLength(), !pooled);
+            } else {
+                this.appendOversized(testId, log);
+            }
+            return true;
+        }
+
+        /**
+         * The log does not fit even an empty slab, so it gets a slab of its own.
+         */
+        private void appendOversized(Long testId, Log log) {
+            LogSlab oversized = new LogSlab(ByteBuffer.allocate(LogJsonEncoder.maxEncodedSize(log)), false);
+            oversized.append(testId, log);
+            sealed.add(oversized);
+            this.onAppended(oversized.getLength(), false);
+        }
+
+        /**
+         * Encodes the pending runs of identical lines into a slab of their own. The slab is not taken from the pool,
+         * so that the flushing thread never waits for it. Must be invoked under the lock.
+         */
+        private void sealRuns() {
+            if (runs.isEmpty()) {
+                return;
+            }
+            int size = 0;
+            for (LogsCollapser.Run run : runs.values()) {
+                size += LogJsonEncoder.maxEncodedSize(run.complete());
+            }
+            LogSlab slab = new LogSlab(ByteBuffer.allocate(size), false);
+            for (Map.Entry<Long, LogsCollapser.Run> run : runs.entrySet()) {
+                slab.append(run.getKey(), run.getValue().complete());
+                LogsBufferMetrics.getInstance().onAppended();
+            }
+            runs.clear();
+            sealed.add(slab);
+        }
+
+        private void onAppended(int bytes, boolean spilled) {
+            bufferedLogs++;
+            bufferedBytes += bytes;
+            LogsBufferMetrics.getInstance().onAppended();
+            if (spilled) {
+                LogsBufferMetrics.getInstance().onSpilled();
+            }
+        }
+
+        /**
+         * Discards the oldest slab of the shard along with its logs, so that the new logs take its place.
+         *
+         * @return buffer of the discarded slab, or null if the shard has no pooled slabs
+         */
+        private ByteBuffer evictOldestSlab() {
+            LogSlab oldest = sealed.isEmpty() ? current : sealed.peekFirst();
+            if (oldest == null || !oldest.isPooled()) {
+                return null;
+            }
+            if (oldest == current) {
+                current = null;
+            } else {
+                sealed.removeFirst();
+            }
+            bufferedLogs -= oldest.getLogs();
+            bufferedBytes -= oldest.getLength();
+            LogsBufferMetrics.getInstance().onEvicted(oldest.getLogs());
+            ByteBuffer buffer = oldest.getBuffer();
+            buffer.clear();
+            return buffer;
+        }
+
+        /**
+         * @return false if the line is suppressed by the rate limiter
+         */
+        private boolean acquire(Long testId, String level) {
+            long suppressedLines = RATE_LIMITER.acquire(testId, level);
+            if (suppressedLines > 0) {
+                this.putSummary(testId, suppressedLines);
+            }
+            return suppressedLines >= 0;
+        }
+
+        private void putSummary(Long testId, long suppressedLines) {
+            this.put(testId, LogsRateLimiter.toSummary(testId, suppressedLines));
+        }
+
+        private boolean isFlushThresholdReached() {
+            return bufferedLogs >= FLUSH_MAX_EVENTS || bufferedBytes >= SHARD_FLUSH_MAX_BYTES;
+        }
+
+        /**
+         * Sends the logs buffered by the moment of the call. Requests are sent one by one, and the slabs of a request
+         * are returned to the pool once it is sent.
+         */
+        private void flush() {
+            reportLostLogs();
+
+            List<LogSlab> slabs;
+            lock.lock();
+            try {
+                if (current != null && !current.isEmpty()) {
+                    sealed.add(current);
+                    current = null;
+                }
+                this.sealRuns();
+                slabs = new ArrayList<>(sealed);
+                sealed.clear();
+                bufferedLogs = 0;
+                bufferedBytes = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            Long runId = RunContext.getZebrunnerRunId();
+            List<LogSlab> requestSlabs = new ArrayList<>();
+            long requestBytes = BATCH_JSON_OVERHEAD;
+            for (LogSlab slab : slabs) {
+                if (!requestSlabs.isEmpty() && requestBytes + slab.getLength() > MAX_REQUEST_BYTES) {
+                    send(requestSlabs, runId);
+                    requestSlabs = new ArrayList<>();
+                    requestBytes = BATCH_JSON_OVERHEAD;
+                }
+                requestSlabs.add(slab);
+                requestBytes += slab.getLength();
+            }
+            if (!requestSlabs.isEmpty()) {
+                send(requestSlabs, runId);
+            }
+
+            // summaries are sent along with the flushed logs, since the flushing thread must never wait for the pool
+            List<Log> summaries = new ArrayList<>();
+            RATE_LIMITER.forEachSuppressed(
+                    testId -> getShard(testId) == this,
+                    (testId, suppressedLines) -> summaries.add(LogsRateLimiter.toSummary(testId, suppressedLines))
+            );
+            if (!summaries.isEmpty()) {
+                try {
+                    API_CLIENT.sendLogs(summaries, runId);
+                } catch (RuntimeException e) {
+                    log.error("Could not send a batch of test logs: {}", RetryPolicy.unwrap(e).getMessage());
+                }
+            }
+        }
+
+        private static void send(List<LogSlab> slabs, Long runId) {
+            try {
+                API_CLIENT.sendLogs(new EncodedLogs(slabs), runId);
+            } catch (RuntimeException e) {
+                log.error("Could not send a batch of test logs: {}", RetryPolicy.unwrap(e).getMessage());
+            } finally {
+                for (LogSlab slab : slabs) {
+                    if (slab.isPooled()) {
+                        SLAB_POOL.release(slab.getBuffer());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int getCapacity() {
+            // the buffer is bounded by the size of the slab pool rather than by the number of logs
+            return 0;
+        }
+
+        @Override
+        public int size() {
+            return bufferedLogs;
+        }
+
+    }
+
+}
@@ -24,6 +24,7 @@ public class RegistrationListenerRegistry {
         listeners.add(new ZephyrCasesCollectingRegistrationListener());
         listeners.add(new TestCasesCollectingRegistrationListener());
         listeners.add(new TestCaseStatusSubmittingRegistrationListener());
+        listeners.add(new LogsCapturingRegistrationListener());
     }
 
     public void forEach(Consumer<RegistrationListener> listenerConsumer) {
@@ -1,6 +1,7 @@
 package com.zebrunner.agent.core.registrar;
 
 import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.logging.console.ReportingPrintStream;
 import com.zebrunner.agent.core.registrar.ci.CiContextResolver;
 import com.zebrunner.agent.core.registrar.ci.CompositeCiContextResolver;
 import com.zebrunner.agent.core.registrar.descriptor.TestDescriptor;
@@ -16,6 +17,9 @@ import com.zebrunner.agent.core.registrar.label.CompositeLabelResolver;
 import com.zebrunner.agent.core.registrar.maintainer.ChainedMaintainerResolver;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -24,6 +28,7 @@ import java.util.Set;
 class ReportingRegistrar implements TestRunRegistrar {
 
     private static final String TEST_RUN_WARNING_MSG_FORMAT = "[TEST RUN '{}' WARNING]: {}";
+    private static final String API_CLIENT_METRICS_ARTIFACT_NAME = "zebrunner-api-calls.txt";
 
     private static volatile ReportingRegistrar instance;
 
@@ -78,6 +83,9 @@ class ReportingRegistrar implements TestRunRegistrar {
             RunContext.setRun(testRunDescriptor);
             logTestRunWarnings(testRun);
             saveRunLocaleFromProgramArguments();
+            if (ConfigurationHolder.isLogsCaptureStdStreams()) {
+                ReportingPrintStream.install();
+            }
         }
     }
 
@@ -134,6 +142,9 @@ class ReportingRegistrar implements TestRunRegistrar {
                                        .id(RunContext.getZebrunnerRunId())
                                        .endedAt(finishDescriptor.getEndedAt())
                                        .build();
+        if (ConfigurationHolder.isClientMetricsReportEnabled()) {
+            this.reportApiClientMetrics(testRun.getId());
+        }
         apiClient.registerTestRunFinish(testRun);
 
         TestRunDescriptor run = RunContext.getRun();
@@ -142,6 +153,14 @@ class ReportingRegistrar implements TestRunRegistrar {
         }
     }
 
+    private void reportApiClientMetrics(Long testRunId) {
+        String summary = ApiClientMetrics.getInstance().getSummary();
+        log.info(summary);
+
+        InputStream artifact = new ByteArrayInputStream(summary.getBytes(StandardCharsets.UTF_8));
+        apiClient.uploadTestRunArtifact(artifact, API_CLIENT_METRICS_ARTIFACT_NAME, testRunId);
+    }
+
     @Override
     public void registerHeadlessTestStart(String id, TestStartDescriptor ts) {
         if (!RunContext.getCurrentTest().isPresent()) { // we should not register the same headless test twice
@@ -225,6 +244,7 @@ class ReportingRegistrar implements TestRunRegistrar {
                                     .endedAt(tf.getEndedAt())
                                     .build();
 
+            ScreenshotUploader.getInstance().awaitUploads(test.getZebrunnerId());
             apiClient.registerTestFinish(RunContext.getZebrunnerRunId(), result);
 
             registrationListenerRegistry.forEach(listener -> listener.onAfterTestFinish(tf));
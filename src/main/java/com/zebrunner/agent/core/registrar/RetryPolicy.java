@@ -0,0 +1,405 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.exception.ServerException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.ObjectName;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether and when a failed call to Zebrunner should be retried.
+ * <p>A call is retried if Zebrunner responded with one of {@link #RETRYABLE_STATUSES}, or if the call failed
+ * because of a network issue (timeout, connection reset or refused, etc.). Delay between attempts grows exponentially
+ * and is randomized (jitter), so concurrent callers do not retry in lockstep. If Zebrunner sent 'Retry-After' header,
+ * the requested delay is honored instead.
+ * <p>Blocking calls are performed by test threads, so the total delay between their attempts is limited by a few seconds.
+ * Longer outages are handled by the circuit breaker, while only non-blocking calls wait as long as Zebrunner requests.
+ * <p>Calls which are not idempotent (e.g. start of a test) are retried only if they certainly were not processed
+ * by Zebrunner: the connection could not be established, or Zebrunner rejected the call with 429 or 503 status.
+ * Otherwise a timed out call might have been processed already, and another attempt would create a duplicate.
+ * <p>All the calls share the same {@link CircuitBreaker}, so once Zebrunner is considered unhealthy,
+ * calls fail fast with 503 status instead of piling up on the server. Every attempt also holds a permit
+ * of {@link ConcurrencyLimiter} while it is in flight, so the number of concurrent calls adapts to the load on Zebrunner.
+ */
+@Slf4j
+class RetryPolicy implements RetryPolicyMXBean {
+
+    static final int MAX_ATTEMPTS = 5;
+
+    private static final long BASE_DELAY_MILLIS = 250;
+    private static final long MAX_DELAY_MILLIS = 10_000;
+    private static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+    /**
+     * Max total delay between attempts of a blocking call
+     */
+    private static final long MAX_BLOCKING_DELAYS_MILLIS = 5_000;
+
+    private static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = 10;
+    private static final long CIRCUIT_BREAKER_MIN_OPEN_PERIOD_MILLIS = 5_000;
+    private static final long CIRCUIT_BREAKER_MAX_OPEN_PERIOD_MILLIS = 60_000;
+
+    private static final Set<Integer> RETRYABLE_STATUSES = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+    /**
+     * Statuses telling that the call was not processed by Zebrunner
+     */
+    private static final Set<Integer> UNPROCESSED_STATUSES = new HashSet<>(Arrays.asList(429, 503));
+    /**
+     * Connect timeout of Apache http client used by Unirest, which is an optional dependency
+     */
+    private static final String APACHE_CONNECT_TIMEOUT_EXCEPTION = "org.apache.http.conn.ConnectTimeoutException";
+    private static final int SERVICE_UNAVAILABLE_STATUS = 503;
+
+    private static final class InstanceHolder {
+
+        private static final RetryPolicy INSTANCE = new RetryPolicy();
+
+    }
+
+    static RetryPolicy getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(
+            CIRCUIT_BREAKER_FAILURE_THRESHOLD, CIRCUIT_BREAKER_MIN_OPEN_PERIOD_MILLIS, CIRCUIT_BREAKER_MAX_OPEN_PERIOD_MILLIS
+    );
+
+    private final ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.getInstance();
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong retryableFailures = new AtomicLong();
+    private final AtomicLong exhaustedCalls = new AtomicLong();
+
+    private RetryPolicy() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, new ObjectName("com.zebrunner.agent:type=RetryPolicy"));
+        } catch (Exception e) {
+            log.debug("Could not register retry policy MBean: {}", e.getMessage());
+        }
+    }
+
+    <T> T execute(CallPriority priority, Supplier<T> call) {
+        return this.execute(priority, call, MAX_ATTEMPTS);
+    }
+
+    /**
+     * Performs the call, retrying it while the failure is retryable and attempts are not exhausted.
+     *
+     * @param priority    priority class of the call
+     * @param call        call to perform
+     * @param maxAttempts max number of attempts. Calls with non-repeatable request body must be performed only once
+     * @return result of the call
+     */
+    <T> T execute(CallPriority priority, Supplier<T> call, int maxAttempts) {
+        return this.execute(priority, call, maxAttempts, true);
+    }
+
+    /**
+     * @param idempotent false if another attempt of the call may have a different effect, e.g. create a duplicate
+     */
+    <T> T execute(CallPriority priority, Supplier<T> call, int maxAttempts, boolean idempotent) {
+        long delaysMillis = 0;
+        for (int attempt = 1; ; attempt++) {
+            ConcurrencyLimiter.Permit permit;
+            try {
+                permit = concurrencyLimiter.acquireBlocking(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a call to Zebrunner to be allowed.", e);
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                permit.release(ConcurrencyLimiter.Outcome.IGNORED);
+                throw this.circuitOpenException();
+            }
+            attempts.incrementAndGet();
+            try {
+                T result = call.get();
+                permit.release(ConcurrencyLimiter.Outcome.SUCCESS);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                permit.release(this.toOutcome(e));
+                long delayMillis = this.getDelayMillis(e, attempt);
+                delaysMillis += delayMillis;
+                // once the delays exceed the budget, the attempt is treated as the last one
+                int effectiveAttempt = delaysMillis <= MAX_BLOCKING_DELAYS_MILLIS ? attempt : maxAttempts;
+                if (!this.onFailure(e, effectiveAttempt, maxAttempts, idempotent)) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    <T> CompletableFuture<T> executeAsync(CallPriority priority, Supplier<CompletableFuture<T>> call) {
+        return this.executeAsync(priority, call, MAX_ATTEMPTS);
+    }
+
+    /**
+     * Non-blocking flavor of {@link #execute(CallPriority, Supplier, int)}. Delays between attempts do not occupy any thread.
+     */
+    <T> CompletableFuture<T> executeAsync(CallPriority priority, Supplier<CompletableFuture<T>> call, int maxAttempts) {
+        return this.executeAsync(priority, call, maxAttempts, true);
+    }
+
+    /**
+     * Non-blocking flavor of {@link #execute(CallPriority, Supplier, int, boolean)}.
+     */
+    <T> CompletableFuture<T> executeAsync(CallPriority priority, Supplier<CompletableFuture<T>> call, int maxAttempts, boolean idempotent) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        this.attemptAsync(priority, call, maxAttempts, idempotent, 1, result);
+        return result;
+    }
+
+    private <T> void attemptAsync(CallPriority priority,
+                                  Supplier<CompletableFuture<T>> call,
+                                  int maxAttempts,
+                                  boolean idempotent,
+                                  int attempt,
+                                  CompletableFuture<T> result) {
+        // the attempt is queued without occupying a thread until the limiter lets it through
+        CompletableFuture<ConcurrencyLimiter.Permit> permit = concurrencyLimiter.acquire(priority);
+        if (permit.isDone()) {
+            this.attemptAsync(priority, call, maxAttempts, idempotent, attempt, result, permit.join());
+        } else {
+            permit.thenAcceptAsync(
+                    grantedPermit -> this.attemptAsync(priority, call, maxAttempts, idempotent, attempt, result, grantedPermit),
+                    concurrencyLimiter.getDispatcher()
+            );
+        }
+    }
+
+    private <T> void attemptAsync(CallPriority priority,
+                                  Supplier<CompletableFuture<T>> call,
+                                  int maxAttempts,
+                                  boolean idempotent,
+                                  int attempt,
+                                  CompletableFuture<T> result,
+                                  ConcurrencyLimiter.Permit permit) {
+        if (!circuitBreaker.tryAcquire()) {
+            permit.release(ConcurrencyLimiter.Outcome.IGNORED);
+            result.completeExceptionally(this.circuitOpenException());
+            return;
+        }
+        attempts.incrementAndGet();
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                permit.release(ConcurrencyLimiter.Outcome.SUCCESS);
+                circuitBreaker.onSuccess();
+                result.complete(value);
+                return;
+            }
+
+            Throwable e = unwrap(throwable);
+            permit.release(this.toOutcome(e));
+            if (!this.onFailure(e, attempt, maxAttempts, idempotent)) {
+                result.completeExceptionally(e);
+                return;
+            }
+            CompletableFuture.delayedExecutor(this.getDelayMillis(e, attempt), TimeUnit.MILLISECONDS)
+                             .execute(() -> this.attemptAsync(priority, call, maxAttempts, idempotent, attempt + 1, result));
+        });
+    }
+
+    /**
+     * Records the failure and decides whether the call should be retried.
+     *
+     * @return true if another attempt should be performed
+     */
+    private boolean onFailure(Throwable e, int attempt, int maxAttempts, boolean idempotent) {
+        if (!this.isRetryable(e, idempotent)) {
+            if (e instanceof ServerException) {
+                // Zebrunner is healthy enough to reject the request
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onIgnored();
+            }
+            return false;
+        }
+
+        circuitBreaker.onFailure();
+        retryableFailures.incrementAndGet();
+        if (attempt >= maxAttempts) {
+            exhaustedCalls.incrementAndGet();
+            log.debug("All attempts have been exhausted. Final exception is {}: {}", e.getClass(), e.getMessage());
+            return false;
+        }
+
+        retries.incrementAndGet();
+        log.debug("Retrying failed call after attempt #{}. Exception is {}: {}", attempt, e.getClass(), e.getMessage());
+        return true;
+    }
+
+    /**
+     * Classifies failed attempt for {@link ConcurrencyLimiter}: rejections and timeouts signal overload of Zebrunner,
+     * while responses with other error statuses still reflect latency of the server.
+     */
+    private ConcurrencyLimiter.Outcome toOutcome(Throwable e) {
+        if (this.isRetryable(e)) {
+            return ConcurrencyLimiter.Outcome.DROPPED;
+        }
+        return unwrap(e) instanceof ServerException
+                ? ConcurrencyLimiter.Outcome.SUCCESS
+                : ConcurrencyLimiter.Outcome.IGNORED;
+    }
+
+    /**
+     * @return true if the failure is transient, so the same call may succeed later
+     */
+    boolean isRetryable(Throwable e) {
+        return this.isRetryable(e, true);
+    }
+
+    /**
+     * @param idempotent false if another attempt of the call may have a different effect
+     * @return true if the failure is transient, and another attempt of the call is safe
+     */
+    boolean isRetryable(Throwable e, boolean idempotent) {
+        e = unwrap(e);
+        while (e != null) {
+            if (e instanceof ServerException) {
+                Integer status = ((ServerException) e).getStatus();
+                return status != null && (idempotent ? RETRYABLE_STATUSES : UNPROCESSED_STATUSES).contains(status);
+            }
+            if (e instanceof UnknownHostException || e instanceof SSLException) {
+                return false;
+            }
+            if (isConnectFailure(e)) {
+                return true;
+            }
+            if (e instanceof IOException || e instanceof TimeoutException) {
+                // the request might have reached Zebrunner before the failure
+                return idempotent;
+            }
+            e = e.getCause() != e ? e.getCause() : null;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the connection to Zebrunner could not be established, so the request was not sent
+     */
+    private static boolean isConnectFailure(Throwable e) {
+        return e instanceof ConnectException
+                || e instanceof NoRouteToHostException
+                || e instanceof HttpConnectTimeoutException
+                || APACHE_CONNECT_TIMEOUT_EXCEPTION.equals(e.getClass().getName());
+    }
+
+    private long getDelayMillis(Throwable e, int attempt) {
+        if (e instanceof ServerException && ((ServerException) e).getRetryAfter() != null) {
+            long retryAfterMillis = ((ServerException) e).getRetryAfter().toMillis();
+            return Math.max(0, Math.min(retryAfterMillis, MAX_RETRY_AFTER_MILLIS));
+        }
+        long backoff = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+        // half of the delay is fixed and the other half is random
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private ServerException circuitOpenException() {
+        return new ServerException(
+                "Zebrunner is not available at the moment, so the call was not performed.", SERVICE_UNAVAILABLE_STATUS, null
+        );
+    }
+
+    /**
+     * Parses value of 'Retry-After' header, which is either a number of seconds or a http date.
+     *
+     * @param retryAfter value of the header
+     * @return requested delay, or null if the header is absent or malformed
+     */
+    static Duration parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+            } catch (RuntimeException parseException) {
+                return null;
+            }
+        }
+    }
+
+    static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    @Override
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public long getRetryableFailures() {
+        return retryableFailures.get();
+    }
+
+    @Override
+    public long getExhaustedCalls() {
+        return exhaustedCalls.get();
+    }
+
+    @Override
+    public long getShortCircuitedCalls() {
+        return circuitBreaker.getRejectedCalls();
+    }
+
+    @Override
+    public long getCircuitBreakerOpenings() {
+        return circuitBreaker.getOpenings();
+    }
+
+    @Override
+    public String getCircuitBreakerState() {
+        return circuitBreaker.getState().name();
+    }
+
+}
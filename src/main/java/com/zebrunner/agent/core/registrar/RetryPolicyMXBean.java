@@ -0,0 +1,22 @@
+package com.zebrunner.agent.core.registrar;
+
+/**
+ * Management interface exposing counters of {@link RetryPolicy} and state of its circuit breaker.
+ */
+public interface RetryPolicyMXBean {
+
+    long getAttempts();
+
+    long getRetries();
+
+    long getRetryableFailures();
+
+    long getExhaustedCalls();
+
+    long getShortCircuitedCalls();
+
+    long getCircuitBreakerOpenings();
+
+    String getCircuitBreakerState();
+
+}
@@ -20,6 +20,10 @@ class RunContext {
     private static final ThreadLocal<TestDescriptor> CURRENT_THREAD_LOCAL_TEST = new InheritableThreadLocal<>();
     private static final ThreadLocal<TestDescriptor> CURRENT_THREAD_LOCAL_AFTER_METHOD = new InheritableThreadLocal<>();
     private static final ThreadLocal<TestDescriptor> PREVIOUS_COMPLETED_THREAD_LOCAL_TEST = new ThreadLocal<>();
+    /**
+     * Same as {@link #CURRENT_THREAD_LOCAL_TEST}, but readable from other threads, e.g. by asynchronous log appenders
+     */
+    private static final Map<Long, TestDescriptor> CURRENT_TESTS_BY_THREAD_ID = new ConcurrentHashMap<>();
 
     static void setRun(TestRunDescriptor testRunDescriptor) {
         RunContext.testRun = testRunDescriptor;
@@ -43,18 +47,51 @@ class RunContext {
 
     static void addCurrentTest(String id, TestDescriptor testDescriptor) {
         TESTS.put(id, testDescriptor);
-        CURRENT_THREAD_LOCAL_TEST.set(testDescriptor);
+        setCurrentTest(testDescriptor);
     }
 
     static Optional<TestDescriptor> getCurrentTest() {
         return Optional.ofNullable(CURRENT_THREAD_LOCAL_TEST.get());
     }
 
+    /**
+     * Same as {@link #getCurrentTest()}, but does not allocate anything. Meant for hot paths, e.g. capturing of logs.
+     *
+     * @return test running in the current thread, or null
+     */
+    static TestDescriptor getCurrentTestOrNull() {
+        return CURRENT_THREAD_LOCAL_TEST.get();
+    }
+
+    /**
+     * Same as {@link #getCurrentTestOrNull()}, but for the given thread. Tests inherited by child threads
+     * are known only within the child threads themselves.
+     *
+     * @param threadId id of a thread
+     * @return test running in the thread, or null
+     */
+    static TestDescriptor getCurrentTestOrNull(long threadId) {
+        if (threadId == Thread.currentThread().getId()) {
+            return CURRENT_THREAD_LOCAL_TEST.get();
+        }
+        return CURRENT_TESTS_BY_THREAD_ID.get(threadId);
+    }
+
+    private static void setCurrentTest(TestDescriptor testDescriptor) {
+        CURRENT_THREAD_LOCAL_TEST.set(testDescriptor);
+        CURRENT_TESTS_BY_THREAD_ID.put(Thread.currentThread().getId(), testDescriptor);
+    }
+
+    private static void removeCurrentTestOfThread() {
+        CURRENT_THREAD_LOCAL_TEST.remove();
+        CURRENT_TESTS_BY_THREAD_ID.remove(Thread.currentThread().getId());
+    }
+
     static Optional<TestDescriptor> removeCurrentTest() {
         Optional<TestDescriptor> maybeCurrentTest = getCurrentTest();
         maybeCurrentTest.ifPresent(currentTest -> {
             TESTS.values().removeIf(test -> test == currentTest);
-            CURRENT_THREAD_LOCAL_TEST.remove();
+            removeCurrentTestOfThread();
         });
 
         return maybeCurrentTest;
@@ -68,7 +105,7 @@ class RunContext {
 
             TestDescriptor threadLocalTest = CURRENT_THREAD_LOCAL_TEST.get();
             if (threadLocalTest == testToComplete) {
-                CURRENT_THREAD_LOCAL_TEST.remove();
+                removeCurrentTestOfThread();
                 PREVIOUS_COMPLETED_THREAD_LOCAL_TEST.set(testToComplete);
             }
         }
@@ -81,7 +118,7 @@ class RunContext {
             TestDescriptor previousTest = PREVIOUS_COMPLETED_THREAD_LOCAL_TEST.get();
             if (previousTest != null) {
                 PREVIOUS_COMPLETED_THREAD_LOCAL_TEST.remove();
-                CURRENT_THREAD_LOCAL_TEST.set(previousTest);
+                setCurrentTest(previousTest);
                 CURRENT_THREAD_LOCAL_AFTER_METHOD.set(previousTest);
             }
         }
@@ -91,7 +128,7 @@ class RunContext {
         TestDescriptor testToComplete = CURRENT_THREAD_LOCAL_AFTER_METHOD.get();
         if (testToComplete != null) {
             PREVIOUS_COMPLETED_THREAD_LOCAL_TEST.set(testToComplete);
-            CURRENT_THREAD_LOCAL_TEST.remove();
+            removeCurrentTestOfThread();
             CURRENT_THREAD_LOCAL_AFTER_METHOD.remove();
         }
     }
@@ -6,12 +6,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public final class Screenshot {
 
-    private static final ZebrunnerApiClient API_CLIENT = ClientRegistrar.getClient();
-
     /**
      * Sends screenshot captured in scope of current test execution to Zebrunner. Captured at timestamp accuracy
      * matters - it is strongly recommended to explicitly set this value. If {@code null} is provided - it will be
      * generated automatically
+     * <p>The screenshot is uploaded in background, and the test waits only if too many screenshots are not uploaded yet
+     * (see {@link ScreenshotUploader}). Pending screenshots of the test are uploaded before its finish is registered.
      *
      * @param screenshot       screenshot bytes
      * @param capturedAtMillis unix timestamp representing a moment in time when screenshot got captured in milliseconds
@@ -22,7 +22,7 @@ public final class Screenshot {
 
         RunContext.getCurrentTest()
                   .map(TestDescriptor::getZebrunnerId)
-                  .ifPresent(testId -> API_CLIENT.uploadScreenshot(screenshot, runId, testId, capturedAt));
+                  .ifPresent(testId -> ScreenshotUploader.getInstance().upload(screenshot, runId, testId, capturedAt));
     }
 
 }
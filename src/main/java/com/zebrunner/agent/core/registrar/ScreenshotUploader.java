@@ -0,0 +1,286 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Uploads screenshots in background, so tests taking a screenshot at every step are not blocked by the uploads.
+ * <p>Test id and capture timestamp of a screenshot are bound on the test thread, and the screenshot is uploaded
+ * by one of a few agent threads. The queue is bounded by total size of the screenshots. Once it is full,
+ * the test thread waits for space up to the configured time, and then the screenshot is dropped.
+ * Dropped screenshots are counted and reported on finish of their test.
+ * <p>Finish of a test waits for its pending uploads (see {@link #awaitUploads(Long)}), so the screenshots
+ * are attached before the test is reported as finished.
+ */
+@Slf4j
+final class ScreenshotUploader implements ScreenshotUploaderMXBean {
+
+    /**
+     * Space in the queue is accounted in units of this size, so that it fits permits of a semaphore
+     */
+    private static final int PERMIT_BYTES = 1024;
+    /**
+     * Max time the JVM shutdown waits for the queued screenshots. Unlike finish of a test, it does not delay the tests
+     */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private static final class InstanceHolder {
+
+        private static final ScreenshotUploader INSTANCE = new ScreenshotUploader();
+
+    }
+
+    static ScreenshotUploader getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private final ZebrunnerApiClient apiClient = ClientRegistrar.getClient();
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            ConfigurationHolder.getClientScreenshotUploadThreads(),
+            runnable -> LogsCaptureGuard.newAgentThread(runnable, "zebrunner-screenshot-uploader")
+    );
+    private final int totalPermits = Math.max(1, ConfigurationHolder.getClientScreenshotQueueBytes() / PERMIT_BYTES);
+    private final Semaphore queueSpace = new Semaphore(totalPermits);
+    private final long maxWaitMillis = ConfigurationHolder.getClientScreenshotMaxWait();
+    private final long flushTimeoutMillis = ConfigurationHolder.getClientScreenshotFlushTimeout();
+
+    private final Map<Long, PendingUploads> pendingUploadsByTestId = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedScreenshots = new AtomicInteger();
+    private final LongAdder queuedBytes = new LongAdder();
+    private final LongAdder uploadedScreenshots = new LongAdder();
+    private final LongAdder failedUploads = new LongAdder();
+    private final LongAdder delayedScreenshots = new LongAdder();
+    private final LongAdder droppedScreenshots = new LongAdder();
+
+    private ScreenshotUploader() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this, new ObjectName("com.zebrunner.agent:type=ScreenshotUploader"));
+        } catch (Exception e) {
+            log.debug("Could not register screenshot uploader MBean: {}", e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(LogsCaptureGuard.newAgentThread(this::shutdown, "zebrunner-screenshot-shutdown"));
+    }
+
+    /**
+     * Uploads of a test which are not completed yet, guarded by the instance lock. Pending uploads are removed
+     * from the map once there is nothing left to wait for or to report, and they are never reused afterwards.
+     */
+    private static final class PendingUploads {
+
+        private final Set<CompletableFuture<Void>> uploads = new HashSet<>();
+        private int droppedScreenshots;
+        /**
+         * Set once finish of the test started waiting for the uploads. Later uploads of the test are not awaited
+         */
+        private boolean finished;
+        private boolean removed;
+
+    }
+
+    /**
+     * Updates pending uploads of the test under their lock, creating them if needed.
+     */
+    private void updatePendingUploads(Long testId, Consumer<PendingUploads> update) {
+        while (true) {
+            PendingUploads pendingUploads = pendingUploadsByTestId.computeIfAbsent(testId, $ -> new PendingUploads());
+            synchronized (pendingUploads) {
+                // pending uploads might have been removed by the moment the lock is acquired, and then they are created anew
+                if (!pendingUploads.removed) {
+                    update.accept(pendingUploads);
+                    this.removeIfDone(testId, pendingUploads);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be invoked under the lock of the pending uploads.
+     */
+    private void removeIfDone(Long testId, PendingUploads pendingUploads) {
+        if (pendingUploads.uploads.isEmpty() && (pendingUploads.finished || pendingUploads.droppedScreenshots == 0)) {
+            pendingUploads.removed = true;
+            pendingUploadsByTestId.remove(testId, pendingUploads);
+        }
+    }
+
+    /**
+     * Queues the screenshot to be uploaded, waiting for space in the queue if it is full.
+     *
+     * @param screenshot screenshot bytes
+     * @param testRunId  id of the test run
+     * @param testId     id of the test the screenshot belongs to
+     * @param capturedAt moment the screenshot was captured at, in milliseconds
+     */
+    void upload(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        int permits = Math.min(totalPermits, Math.max(1, (screenshot.length + PERMIT_BYTES - 1) / PERMIT_BYTES));
+        if (!this.acquire(permits)) {
+            droppedScreenshots.increment();
+            this.updatePendingUploads(testId, pendingUploads -> pendingUploads.droppedScreenshots++);
+            return;
+        }
+
+        queuedScreenshots.incrementAndGet();
+        queuedBytes.add(screenshot.length);
+        Runnable upload = () -> {
+            try {
+                apiClient.uploadScreenshot(screenshot, testRunId, testId, capturedAt);
+                uploadedScreenshots.increment();
+            } catch (RuntimeException e) {
+                failedUploads.increment();
+                log.warn("Could not upload screenshot of test {}: {}", testId, e.getMessage());
+            } finally {
+                queuedScreenshots.decrementAndGet();
+                queuedBytes.add(-screenshot.length);
+                queueSpace.release(permits);
+            }
+        };
+
+        CompletableFuture<Void> pendingUpload;
+        try {
+            pendingUpload = CompletableFuture.runAsync(upload, executor);
+        } catch (RejectedExecutionException e) {
+            // JVM is shutting down, so there is nobody to upload the screenshot but the test thread
+            upload.run();
+            return;
+        }
+        this.updatePendingUploads(testId, pendingUploads -> {
+            pendingUploads.uploads.add(pendingUpload);
+            pendingUpload.whenComplete((result, e) -> {
+                synchronized (pendingUploads) {
+                    pendingUploads.uploads.remove(pendingUpload);
+                    this.removeIfDone(testId, pendingUploads);
+                }
+            });
+        });
+    }
+
+    private boolean acquire(int permits) {
+        if (queueSpace.tryAcquire(permits)) {
+            return true;
+        }
+        delayedScreenshots.increment();
+        try {
+            return maxWaitMillis > 0 && queueSpace.tryAcquire(permits, maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits up to the configured timeout for the screenshots of the test to be uploaded.
+     * Invoked before finish of the test is registered.
+     *
+     * @param testId id of the finished test
+     */
+    void awaitUploads(Long testId) {
+        if (testId == null) {
+            return;
+        }
+        CompletableFuture<?>[] uploads = null;
+        int dropped = 0;
+        PendingUploads pendingUploads;
+        while (uploads == null && (pendingUploads = pendingUploadsByTestId.get(testId)) != null) {
+            synchronized (pendingUploads) {
+                if (!pendingUploads.removed) {
+                    pendingUploads.finished = true;
+                    uploads = pendingUploads.uploads.toArray(new CompletableFuture[0]);
+                    dropped = pendingUploads.droppedScreenshots;
+                    pendingUploads.droppedScreenshots = 0;
+                    this.removeIfDone(testId, pendingUploads);
+                }
+            }
+        }
+        if (uploads == null) {
+            return;
+        }
+
+        try {
+            CompletableFuture.allOf(uploads).get(flushTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn(
+                    "Screenshots of test {} were not uploaded within {} ms, so they are uploaded after the test finish.",
+                    testId, flushTimeoutMillis
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // failures are logged by the uploads themselves
+        }
+
+        if (dropped > 0) {
+            log.warn("{} screenshots of test {} were not uploaded because the screenshot upload queue was full.", dropped, testId);
+        }
+    }
+
+    private void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn(
+                        "{} screenshots were not uploaded to Zebrunner within {} ms of shutdown timeout.",
+                        queuedScreenshots.get(), SHUTDOWN_TIMEOUT_MILLIS
+                );
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int getQueuedScreenshots() {
+        return queuedScreenshots.get();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return queuedBytes.sum();
+    }
+
+    @Override
+    public long getQueueCapacityBytes() {
+        return (long) totalPermits * PERMIT_BYTES;
+    }
+
+    @Override
+    public long getUploadedScreenshots() {
+        return uploadedScreenshots.sum();
+    }
+
+    @Override
+    public long getFailedUploads() {
+        return failedUploads.sum();
+    }
+
+    @Override
+    public long getDelayedScreenshots() {
+        return delayedScreenshots.sum();
+    }
+
+    @Override
+    public long getDroppedScreenshots() {
+        return droppedScreenshots.sum();
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.zebrunner.agent.core.registrar;
+
+/**
+ * Management interface exposing state of {@link ScreenshotUploader}.
+ */
+public interface ScreenshotUploaderMXBean {
+
+    int getQueuedScreenshots();
+
+    long getQueuedBytes();
+
+    long getQueueCapacityBytes();
+
+    long getUploadedScreenshots();
+
+    long getFailedUploads();
+
+    long getDelayedScreenshots();
+
+    long getDroppedScreenshots();
+
+}
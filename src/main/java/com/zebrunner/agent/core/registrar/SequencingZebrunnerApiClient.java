@@ -0,0 +1,449 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.exception.ServerException;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Blocking {@link ZebrunnerApiClient} that takes test registration out of the critical path of tests.
+ * <p>Start of a test is sent to Zebrunner in background and a local provisional id is returned immediately.
+ * Provisional ids are negative, so they never clash with ids issued by Zebrunner. All the later calls
+ * referring to a provisional id are queued per test: every call is sent once the previous one for the same test
+ * is completed and the real id is known. Calls related to different tests are still dispatched in parallel.
+ * <p>Since test calls are sent in background, their failures are logged instead of being rethrown.
+ * Calls that are not related to tests are delegated as is. Finish of the test run waits for all the calls
+ * sent in background, including session updates and logs of tests whose registration was in progress.
+ * <p>Queues of tests and sessions are removed once they are drained. Real ids of finished tests are kept for a while,
+ * so that logs flushed after finish of a test can still be attributed to it.
+ */
+@Slf4j
+class SequencingZebrunnerApiClient implements ZebrunnerApiClient {
+
+    private static final long RUN_FINISH_AWAIT_TIMEOUT_SECONDS = 60;
+    private static final long FINISHED_TEST_RETENTION_MINUTES = 10;
+
+    private final AtomicLong provisionalIdSequence = new AtomicLong();
+    private final Map<Long, CompletableFuture<Long>> provisionalIdToRealId = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Void>> testQueues = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> sessionQueues = new ConcurrentHashMap<>();
+    /**
+     * Calls sent in background which are not queued, e.g. calls referring to real test ids
+     */
+    private final Set<CompletableFuture<?>> pendingCalls = ConcurrentHashMap.newKeySet();
+    /**
+     * Guards queueing of calls related to several tests, so that two such calls never wait for each other
+     */
+    private final Object multiTestQueueLock = new Object();
+
+    private final AsyncZebrunnerApiClient delegate;
+    private final ZebrunnerApiClient blockingDelegate;
+
+    SequencingZebrunnerApiClient(AsyncZebrunnerApiClient delegate) {
+        this.delegate = delegate;
+        this.blockingDelegate = new BlockingZebrunnerApiClient(delegate);
+    }
+
+    private static boolean isProvisional(Long testId) {
+        return testId != null && testId < 0;
+    }
+
+    private TestDTO registerProvisionally(TestDTO test, CompletableFuture<TestDTO> registration) {
+        Long provisionalId = provisionalIdSequence.decrementAndGet();
+        CompletableFuture<Long> realId = registration.thenApply(registeredTest -> {
+            if (registeredTest == null) {
+                throw new ServerException("Test '" + test.getName() + "' was not registered.");
+            }
+            return registeredTest.getId();
+        });
+        realId.whenComplete((id, e) -> {
+            if (e != null) {
+                log.error("Could not register start of the test '{}': {}", test.getName(), RetryPolicy.unwrap(e).getMessage());
+            } else {
+                log.debug("Test '{}' with provisional id {} got registered with id {}", test.getName(), provisionalId, id);
+            }
+        });
+
+        provisionalIdToRealId.put(provisionalId, realId);
+        CompletableFuture<Void> registrationCall = realId.handle((id, e) -> null);
+        testQueues.put(provisionalId, registrationCall);
+        registrationCall.whenComplete(($, e) -> testQueues.remove(provisionalId, registrationCall));
+
+        return TestDTO.builder()
+                      .id(provisionalId)
+                      .name(test.getName())
+                      .build();
+    }
+
+    /**
+     * Queues the call behind all previously queued calls for the same test.
+     *
+     * @param testId      test id, either provisional or real one
+     * @param call        call accepting real test id
+     * @param description description of the call used to report its failure
+     * @return future completed with result of the call
+     */
+    private <T> CompletableFuture<T> enqueue(Long testId, Function<Long, CompletableFuture<T>> call, String description) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (!isProvisional(testId)) {
+            this.track(call.apply(testId).whenComplete(completeWith(result, description)));
+            return result;
+        }
+
+        CompletableFuture<Long> realId = provisionalIdToRealId.get(testId);
+        if (realId == null) {
+            log.error("{} failed: test with provisional id {} is unknown.", description, testId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> tail = testQueues.compute(testId, (id, previousTail) ->
+                (previousTail != null ? previousTail : CompletableFuture.<Void>completedFuture(null))
+                        .thenCompose($ -> realId)
+                        .thenCompose(call)
+                        .whenComplete(completeWith(result, description))
+                        .handle((value, e) -> null)
+        );
+        // the queue is removed once it is drained, and a later call starts a new one
+        tail.whenComplete(($, e) -> testQueues.remove(testId, tail));
+        return result;
+    }
+
+    /**
+     * Queues the call behind all previously queued calls for every of the given tests, so that it is sent once
+     * all of them are completed, and later calls for the tests are sent after it.
+     *
+     * @param testIds ids of the tests the call is related to
+     * @param call    call to be sent, it must resolve the ids by itself
+     */
+    private void enqueue(Set<Long> testIds, Supplier<CompletableFuture<Void>> call) {
+        CompletableFuture<Void> head = new CompletableFuture<>();
+        CompletableFuture<Void> tail = head.thenCompose($ -> call.get());
+        List<CompletableFuture<Void>> previousTails = new ArrayList<>();
+        synchronized (multiTestQueueLock) {
+            for (Long testId : testIds) {
+                testQueues.compute(testId, (id, previousTail) -> {
+                    if (previousTail != null) {
+                        previousTails.add(previousTail);
+                    }
+                    return tail;
+                });
+            }
+        }
+        for (Long testId : testIds) {
+            tail.whenComplete(($, e) -> testQueues.remove(testId, tail));
+        }
+        CompletableFuture.allOf(previousTails.toArray(new CompletableFuture[0]))
+                         .whenComplete(($, e) -> head.complete(null));
+    }
+
+    private static <T> BiConsumer<T, Throwable> completeWith(CompletableFuture<T> result, String description) {
+        return (value, e) -> {
+            if (e != null) {
+                log.error("{} failed: {}", description, RetryPolicy.unwrap(e).getMessage());
+                result.completeExceptionally(RetryPolicy.unwrap(e));
+            } else {
+                result.complete(value);
+            }
+        };
+    }
+
+    private void track(CompletableFuture<?> call) {
+        pendingCalls.add(call);
+        call.whenComplete(($, e) -> pendingCalls.remove(call));
+    }
+
+    /**
+     * Forgets the provisional id of a finished test after a while, since logs of the test may be flushed after its finish.
+     */
+    private void forgetLater(Long testId) {
+        if (isProvisional(testId)) {
+            CompletableFuture.delayedExecutor(FINISHED_TEST_RETENTION_MINUTES, TimeUnit.MINUTES)
+                             .execute(() -> provisionalIdToRealId.remove(testId));
+        }
+    }
+
+    private CompletableFuture<Long> resolve(Long testId) {
+        if (!isProvisional(testId)) {
+            return CompletableFuture.completedFuture(testId);
+        }
+        return provisionalIdToRealId.getOrDefault(testId, CompletableFuture.completedFuture(null));
+    }
+
+    private CompletableFuture<TestSessionDTO> resolveTestIds(TestSessionDTO testSession) {
+        Set<Long> testIds = new HashSet<>(testSession.getTestIds());
+        Map<Long, CompletableFuture<Long>> resolvedIds = new HashMap<>();
+        testIds.forEach(testId -> resolvedIds.put(testId, resolve(testId).exceptionally(e -> null)));
+
+        return CompletableFuture.allOf(resolvedIds.values().toArray(new CompletableFuture[0]))
+                                .thenApply($ -> {
+                                    Set<Long> realIds = new HashSet<>();
+                                    resolvedIds.values().forEach(realId -> {
+                                        Long id = realId.join();
+                                        if (id != null) {
+                                            realIds.add(id);
+                                        }
+                                    });
+                                    return TestSessionDTO.builder()
+                                                         .id(testSession.getId())
+                                                         .sessionId(testSession.getSessionId())
+                                                         .initiatedAt(testSession.getInitiatedAt())
+                                                         .startedAt(testSession.getStartedAt())
+                                                         .endedAt(testSession.getEndedAt())
+                                                         .status(testSession.getStatus())
+                                                         .desiredCapabilities(testSession.getDesiredCapabilities())
+                                                         .capabilities(testSession.getCapabilities())
+                                                         .testIds(realIds)
+                                                         .failureReason(testSession.getFailureReason())
+                                                         .build();
+                                });
+    }
+
+    @Override
+    public TestRunDTO registerTestRunStart(TestRunDTO testRun) {
+        return blockingDelegate.registerTestRunStart(testRun);
+    }
+
+    @Override
+    public void patchTestRunBuild(Long testRunId, String build) {
+        blockingDelegate.patchTestRunBuild(testRunId, build);
+    }
+
+    @Override
+    public void setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
+        blockingDelegate.setTestRunPlatform(testRunId, platformName, platformVersion);
+    }
+
+    @Override
+    public void registerTestRunFinish(TestRunDTO testRun) {
+        List<CompletableFuture<?>> backgroundCalls = new ArrayList<>(testQueues.values());
+        backgroundCalls.addAll(sessionQueues.values());
+        backgroundCalls.addAll(pendingCalls);
+        try {
+            CompletableFuture.allOf(backgroundCalls.toArray(new CompletableFuture[0]))
+                             .get(RUN_FINISH_AWAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Not all the calls of tests and sessions were sent to Zebrunner before finish of the test run.");
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        blockingDelegate.registerTestRunFinish(testRun);
+    }
+
+    @Override
+    public TestDTO registerTestStart(Long testRunId, TestDTO test, boolean headless) {
+        return this.registerProvisionally(test, delegate.registerTestStart(testRunId, test, headless));
+    }
+
+    @Override
+    public TestDTO registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
+        return this.registerProvisionally(test, delegate.registerTestRerunStart(testRunId, testId, test, headless));
+    }
+
+    @Override
+    public TestDTO registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
+        Long testId = test.getId();
+        if (!isProvisional(testId)) {
+            return blockingDelegate.registerHeadlessTestUpdate(testRunId, test);
+        }
+
+        // the call is sent after this method returns, so later changes of the caller's test must not affect it
+        TestDTO update = test.toBuilder().build();
+        this.enqueue(testId, realId -> {
+            update.setId(realId);
+            return delegate.registerHeadlessTestUpdate(testRunId, update);
+        }, "Update of headless test '" + test.getName() + "'");
+
+        return TestDTO.builder()
+                      .id(testId)
+                      .name(test.getName())
+                      .build();
+    }
+
+    @Override
+    public void revertTestRegistration(Long testRunId, Long testId) {
+        this.enqueue(testId, realId -> delegate.revertTestRegistration(testRunId, realId), "Revert of test registration");
+    }
+
+    @Override
+    public void registerTestFinish(Long testRunId, TestDTO test) {
+        Long testId = test.getId();
+        TestDTO finish = test.toBuilder().build();
+        this.enqueue(testId, realId -> {
+            finish.setId(realId);
+            return delegate.registerTestFinish(testRunId, finish);
+        }, "Registration of test finish").whenComplete(($, e) -> this.forgetLater(testId));
+    }
+
+    @Override
+    public void sendLogs(Collection<Log> logs, Long testRunId) {
+        if (logs instanceof EncodedLogs) {
+            if (((EncodedLogs) logs).hasProvisionalTestIds()) {
+                // encoded logs are read-only and their buffers are reused once this method returns
+                this.resolveTestIdsAndSendLogs(new ArrayList<>(logs), testRunId);
+            } else {
+                blockingDelegate.sendLogs(logs, testRunId);
+            }
+        } else {
+            this.resolveTestIdsAndSendLogs(logs, testRunId);
+        }
+    }
+
+    private void resolveTestIdsAndSendLogs(Collection<Log> logs, Long testRunId) {
+        Set<Long> provisionalIds = new HashSet<>();
+        for (Log logEntry : logs) {
+            String testId = logEntry.getTestId();
+            if (testId != null && testId.startsWith("-")) {
+                provisionalIds.add(Long.valueOf(testId));
+            }
+        }
+
+        if (provisionalIds.isEmpty()) {
+            blockingDelegate.sendLogs(logs, testRunId);
+        } else {
+            // logs of tests whose registration is still in progress are sent in background once it is completed,
+            // and they are queued along with other calls of the tests, so that the logs of a test are sent in order
+            this.enqueue(provisionalIds, () -> this.resolveTestIds(logs)
+                                                   .thenCompose(resolvedLogs -> delegate.sendLogs(resolvedLogs, testRunId))
+                                                   .handle((value, e) -> {
+                                                       if (e != null) {
+                                                           log.error(RetryPolicy.unwrap(e).getMessage());
+                                                       }
+                                                       return null;
+                                                   }));
+        }
+    }
+
+    private CompletableFuture<Collection<Log>> resolveTestIds(Collection<Log> logs) {
+        Map<String, CompletableFuture<Long>> resolvedIds = new HashMap<>();
+        for (Log logEntry : logs) {
+            String testId = logEntry.getTestId();
+            if (testId != null && testId.startsWith("-")) {
+                resolvedIds.computeIfAbsent(testId, id -> resolve(Long.valueOf(id)).exceptionally(e -> null));
+            }
+        }
+
+        return CompletableFuture.allOf(resolvedIds.values().toArray(new CompletableFuture[0]))
+                                .thenApply($ -> {
+                                    logs.removeIf(logEntry -> {
+                                        CompletableFuture<Long> realId = resolvedIds.get(logEntry.getTestId());
+                                        if (realId != null) {
+                                            Long id = realId.join();
+                                            if (id == null) {
+                                                log.debug("Log of test {} is not sent since the test is not registered.", logEntry.getTestId());
+                                                return true;
+                                            }
+                                            logEntry.setTestId(id.toString());
+                                        }
+                                        return false;
+                                    });
+                                    return logs;
+                                });
+    }
+
+    @Override
+    public void upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
+        this.enqueue(testId, realId -> delegate.upsertTestCaseResults(testRunId, realId, testCaseResults), "Upsert of test case results");
+    }
+
+    @Override
+    public void uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        this.enqueue(testId, realId -> delegate.uploadScreenshot(screenshot, testRunId, realId, capturedAt), "Screenshot upload");
+    }
+
+    @Override
+    public void uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
+        blockingDelegate.uploadTestRunArtifact(artifact, name, testRunId);
+    }
+
+    @Override
+    public void uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
+        this.enqueue(testId, realId -> delegate.uploadTestArtifact(artifact, name, testRunId, realId), "Upload of test artifact " + name);
+    }
+
+    @Override
+    public void attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference) {
+        blockingDelegate.attachArtifactReferenceToTestRun(testRunId, artifactReference);
+    }
+
+    @Override
+    public void attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
+        this.enqueue(
+                testId,
+                realId -> delegate.attachArtifactReferenceToTest(testRunId, realId, artifactReference),
+                "Attachment of test artifact reference " + artifactReference
+        );
+    }
+
+    @Override
+    public void attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
+        blockingDelegate.attachLabelsToTestRun(testRunId, labels);
+    }
+
+    @Override
+    public void attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
+        this.enqueue(testId, realId -> delegate.attachLabelsToTest(testRunId, realId, labels), "Attachment of test labels " + labels);
+    }
+
+    @Override
+    public ExchangeRunContextResponse exchangeRerunCondition(String rerunCondition) {
+        return blockingDelegate.exchangeRerunCondition(rerunCondition);
+    }
+
+    @Override
+    public TestSessionDTO startSession(Long testRunId, TestSessionDTO testSession) {
+        // session id is required right away, so the call is blocking even if it refers to a provisional test id
+        return blockingDelegate.startSession(testRunId, this.resolveTestIds(testSession).join());
+    }
+
+    @Override
+    public void updateSession(Long testRunId, TestSessionDTO testSession) {
+        // session updates carry the whole state of a session, so they must reach Zebrunner in the same order
+        String sessionId = testSession.getSessionId();
+        CompletableFuture<Void> tail = sessionQueues.compute(sessionId, (id, previousTail) ->
+                (previousTail != null ? previousTail : CompletableFuture.<Void>completedFuture(null))
+                        .thenCompose($ -> this.resolveTestIds(testSession))
+                        .thenCompose(resolvedSession -> delegate.updateSession(testRunId, resolvedSession))
+                        .handle((value, e) -> {
+                            if (e != null) {
+                                log.error("Update of test session failed: {}", RetryPolicy.unwrap(e).getMessage());
+                            }
+                            return null;
+                        })
+        );
+        tail.whenComplete(($, e) -> sessionQueues.remove(sessionId, tail));
+    }
+
+    @Override
+    public boolean isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
+        Boolean knownIssue = this.enqueue(
+                testId,
+                realId -> delegate.isKnownIssueAttachedToTest(testRunId, realId, failureStacktrace),
+                "Retrieval of status of attached known issues"
+        ).exceptionally(e -> false).join();
+        return knownIssue != null && knownIssue;
+    }
+
+}
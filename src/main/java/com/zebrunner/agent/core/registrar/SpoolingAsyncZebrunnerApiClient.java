@@ -0,0 +1,629 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.zebrunner.agent.core.exception.TestAgentException;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncZebrunnerApiClient} that journals outbound calls to {@link ApiCallSpool} before sending them.
+ * <p>A journaled call is sent right away and acknowledged in the spool once Zebrunner confirms it.
+ * If Zebrunner is not reachable, the call stays in the spool and a background drainer replays
+ * unacknowledged calls in order of journaling, backing off while Zebrunner remains unavailable.
+ * <p>Calls related to the same test (as well as to the same test session, or to the test run itself) are delivered
+ * in order of journaling: a call is sent only once the preceding related calls are delivered, including replays.
+ * Calls related to different tests are still sent in parallel.
+ * Calls rejected by Zebrunner for a non-transient reason are not replayed, since another attempt would be rejected as well.
+ * <p>Returned futures are completed as soon as a call is journaled, so callers never wait for the network.
+ * The only exception is finish of a test run: it is sent after all the previously journaled calls are delivered,
+ * and the returned future is completed once it is delivered too (or the drain timeout is exceeded).
+ * <p>Calls are written straight into the spool without materializing their payloads on heap: arguments are serialized
+ * to JSON right into the mapped segment, while screenshots and logs already encoded to JSON are copied as is.
+ * Only spool records of pending calls are kept in memory, while their payloads stay on disk and are read back
+ * from the spool whenever the calls are sent.
+ * <p>Calls that need a response from Zebrunner (e.g. test registration) and artifact uploads
+ * (streams are not replayable) are delegated as is.
+ */
+@Slf4j
+class SpoolingAsyncZebrunnerApiClient implements AsyncZebrunnerApiClient {
+
+    private static final long DRAIN_INTERVAL_MILLIS = 1000;
+    private static final long MAX_DRAIN_INTERVAL_MILLIS = 30_000;
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    private static final String REGISTER_TEST_RUN_FINISH = "registerTestRunFinish";
+    /**
+     * Ordering key of calls related to the test run itself
+     */
+    private static final Set<String> RUN_KEYS = Collections.singleton("run");
+    private static final int COPY_CHUNK_SIZE = 8 * 1024;
+
+    private static final Type LOGS_TYPE = new TypeToken<List<Log>>() {
+    }.getType();
+    private static final Type TEST_CASE_RESULTS_TYPE = new TypeToken<List<TestCaseResult>>() {
+    }.getType();
+    private static final Type LABELS_TYPE = new TypeToken<List<LabelDTO>>() {
+    }.getType();
+
+    private final AsyncZebrunnerApiClient delegate;
+    private final ApiCallSpool spool;
+    private final JsonMapper jsonMapper = new JsonMapper();
+    private final ConcurrentSkipListMap<Long, PendingCall> pendingCalls = new ConcurrentSkipListMap<>();
+    /**
+     * Last journaled call for every ordering key, guarded by the map itself while a call is journaled
+     */
+    private final Map<String, PendingCall> lastCallByKey = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor(
+            runnable -> LogsCaptureGuard.newAgentThread(runnable, "zebrunner-spool-drainer")
+    );
+
+    private long drainIntervalMillis = DRAIN_INTERVAL_MILLIS;
+
+    SpoolingAsyncZebrunnerApiClient(AsyncZebrunnerApiClient delegate, Path spoolDirectory) throws IOException {
+        this.delegate = delegate;
+        this.spool = new ApiCallSpool(spoolDirectory);
+
+        List<ApiCallSpool.Record> recoveredRecords = spool.recover(spoolDirectory);
+        for (ApiCallSpool.Record record : recoveredRecords) {
+            PendingCall pendingCall = new PendingCall(record, this.read(record).getMethod(), CompletableFuture.completedFuture(null));
+            pendingCalls.put(record.getSequence(), pendingCall);
+        }
+        if (!recoveredRecords.isEmpty()) {
+            log.info("{} undelivered Zebrunner API calls were recovered from spool and will be replayed.", recoveredRecords.size());
+        }
+
+        drainer.schedule(this::drainAndReschedule, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(LogsCaptureGuard.newAgentThread(this::shutdown, "zebrunner-spool-shutdown"));
+    }
+
+    /**
+     * Call read back from the spool. Arguments are views of the spooled payload, so they are decoded only when the call is sent
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class SpooledCall {
+
+        private final String method;
+        private final List<ByteBuffer> arguments;
+
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingCall {
+
+        private final ApiCallSpool.Record record;
+        private final String method;
+        /**
+         * Completed once the preceding calls with the same ordering keys are delivered
+         */
+        private final CompletableFuture<Void> predecessors;
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+        /**
+         * Set by the attempt that delivered the call, so an acknowledged record is never read back from the spool
+         */
+        private volatile boolean acknowledged;
+        private final CompletableFuture<Void> delivery = new CompletableFuture<>();
+
+    }
+
+    private static Set<String> testKeys(Long testId) {
+        return Collections.singleton("test-" + testId);
+    }
+
+    private static Set<String> sessionKeys(TestSessionDTO testSession) {
+        return Collections.singleton("session-" + testSession.getSessionId());
+    }
+
+    private static Set<String> logsKeys(Collection<Log> logs) {
+        Set<String> keys = new HashSet<>();
+        if (logs instanceof EncodedLogs) {
+            // encoded logs are decoded only to be inspected, so their test ids are tracked separately
+            ((EncodedLogs) logs).getTestIds().forEach(testId -> keys.addAll(testKeys(testId)));
+        } else {
+            logs.forEach(logEntry -> keys.add("test-" + logEntry.getTestId()));
+        }
+        return keys;
+    }
+
+    /**
+     * Journals the call and sends it once the previously journaled calls with the same ordering keys are delivered.
+     *
+     * @param method       name of the method of the call
+     * @param orderingKeys keys of the test, test session or the test run the call is related to
+     * @param direct       sends the call without spooling if it cannot be journaled
+     * @param arguments    arguments of the call
+     */
+    private CompletableFuture<Void> journal(String method,
+                                            Set<String> orderingKeys,
+                                            Supplier<CompletableFuture<Void>> direct,
+                                            Object... arguments) {
+        PendingCall pendingCall;
+        synchronized (lastCallByKey) {
+            // calls are chained under the same lock they are journaled with, so the chains follow order of journaling
+            try {
+                ApiCallSpool.Record record = spool.append(target -> this.write(target, method, arguments));
+                List<CompletableFuture<Void>> predecessors = new ArrayList<>();
+                for (String key : orderingKeys) {
+                    PendingCall previousCall = lastCallByKey.get(key);
+                    if (previousCall != null) {
+                        predecessors.add(previousCall.delivery);
+                    }
+                }
+                pendingCall = new PendingCall(record, method, CompletableFuture.allOf(predecessors.toArray(new CompletableFuture[0])));
+                for (String key : orderingKeys) {
+                    lastCallByKey.put(key, pendingCall);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not journal Zebrunner API call '{}', so it is sent without spooling: {}", method, e.getMessage());
+                pendingCall = null;
+            }
+        }
+        if (pendingCall == null) {
+            return direct.get();
+        }
+
+        PendingCall journaledCall = pendingCall;
+        orderingKeys.forEach(key -> journaledCall.delivery.whenComplete(($, e) -> lastCallByKey.remove(key, journaledCall)));
+        pendingCalls.put(journaledCall.record.getSequence(), journaledCall);
+
+        if (this.isBarrier(journaledCall)) {
+            drainer.execute(this::drain);
+            return journaledCall.delivery.completeOnTimeout(null, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        if (journaledCall.predecessors.isDone()) {
+            this.send(journaledCall);
+        } else {
+            // if a preceding call is replayed later, the drainer sends this one after it
+            journaledCall.predecessors.thenRunAsync(() -> this.send(journaledCall), drainer);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Writes the call straight into the spool: name of the method, number of arguments, and every argument
+     * preceded by its length. Byte arrays (screenshots) are written as is, logs already encoded to JSON are copied,
+     * and other arguments are serialized to JSON.
+     */
+    private void write(ByteBuffer target, String method, Object[] arguments) throws IOException {
+        byte[] methodName = method.getBytes(StandardCharsets.UTF_8);
+        target.putShort((short) methodName.length);
+        target.put(methodName);
+        target.put((byte) arguments.length);
+
+        for (Object argument : arguments) {
+            int lengthPosition = target.position();
+            target.putInt(0);
+            if (argument instanceof byte[]) {
+                target.put((byte[]) argument);
+            } else if (argument instanceof EncodedLogs) {
+                try (InputStream json = ((EncodedLogs) argument).newInputStream()) {
+                    byte[] chunk = new byte[COPY_CHUNK_SIZE];
+                    int read;
+                    while ((read = json.read(chunk)) != -1) {
+                        target.put(chunk, 0, read);
+                    }
+                }
+            } else {
+                // the buffer takes tiny writes of the json writer, so the encoder is not invoked for every token
+                Writer writer = new BufferedWriter(new OutputStreamWriter(new ByteBufferOutputStream(target), StandardCharsets.UTF_8));
+                JsonWriter jsonWriter = jsonMapper.newJsonWriter(writer);
+                jsonMapper.writeValue(argument, jsonWriter);
+                jsonWriter.flush();
+            }
+            target.putInt(lengthPosition, target.position() - lengthPosition - Integer.BYTES);
+        }
+    }
+
+    private boolean isBarrier(PendingCall pendingCall) {
+        return REGISTER_TEST_RUN_FINISH.equals(pendingCall.method);
+    }
+
+    private SpooledCall read(ApiCallSpool.Record record) {
+        ByteBuffer payload = spool.read(record);
+        byte[] methodName = new byte[payload.getShort()];
+        payload.get(methodName);
+        int argumentsCount = payload.get();
+
+        List<ByteBuffer> arguments = new ArrayList<>(argumentsCount);
+        for (int i = 0; i < argumentsCount; i++) {
+            int length = payload.getInt();
+            ByteBuffer argument = payload.slice();
+            argument.limit(length);
+            arguments.add(argument);
+            payload.position(payload.position() + length);
+        }
+        return new SpooledCall(new String(methodName, StandardCharsets.UTF_8), arguments);
+    }
+
+    /**
+     * Reads the call back from the spool and sends it unless it is already in flight.
+     *
+     * @return future completed with true if the call should not be sent anymore, or false if it must be replayed
+     */
+    private CompletableFuture<Boolean> send(PendingCall pendingCall) {
+        if (!pendingCall.inFlight.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (pendingCall.acknowledged) {
+            pendingCall.inFlight.set(false);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        CompletableFuture<Void> dispatch;
+        try {
+            dispatch = this.dispatch(this.read(pendingCall.record));
+        } catch (RuntimeException e) {
+            // a record that cannot be read back is rejected like a call that cannot be dispatched
+            dispatch = new CompletableFuture<>();
+            dispatch.completeExceptionally(e);
+        }
+        return dispatch.handle((result, e) -> {
+            boolean completed = e == null || !this.isRecoverable(e);
+            if (completed) {
+                if (e != null) {
+                    log.error("Zebrunner rejected spooled call '{}': {}", pendingCall.method, RetryPolicy.unwrap(e).getMessage());
+                }
+                spool.acknowledge(pendingCall.record);
+                pendingCall.acknowledged = true;
+                pendingCalls.remove(pendingCall.record.getSequence());
+                pendingCall.delivery.complete(null);
+            } else {
+                log.debug("Spooled call '{}' will be replayed: {}", pendingCall.method, RetryPolicy.unwrap(e).getMessage());
+            }
+            pendingCall.inFlight.set(false);
+            return completed;
+        });
+    }
+
+    private boolean isRecoverable(Throwable e) {
+        return RetryPolicy.getInstance().isRetryable(e);
+    }
+
+    private void drainAndReschedule() {
+        boolean drained = this.drain();
+        drainIntervalMillis = drained
+                ? DRAIN_INTERVAL_MILLIS
+                : Math.min(drainIntervalMillis * 2, MAX_DRAIN_INTERVAL_MILLIS);
+        if (!drainer.isShutdown()) {
+            drainer.schedule(this::drainAndReschedule, drainIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replays pending calls one by one in order of journaling and stops on the first failure.
+     *
+     * @return true if no call failed during the replay
+     */
+    private synchronized boolean drain() {
+        for (PendingCall pendingCall : pendingCalls.values()) {
+            if (pendingCall.inFlight.get() || !pendingCall.predecessors.isDone()) {
+                // the call is either being sent, or it is sent once the preceding calls related to the same test are delivered
+                continue;
+            }
+            if (this.isBarrier(pendingCall) && pendingCalls.firstKey() != pendingCall.record.getSequence()) {
+                // finish of the test run must be the last delivered call, so wait for the preceding ones
+                return true;
+            }
+            if (!this.send(pendingCall).join()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void shutdown() {
+        drainer.shutdownNow();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(DRAIN_TIMEOUT_SECONDS);
+        while (!pendingCalls.isEmpty() && System.currentTimeMillis() < deadline) {
+            if (!this.drain() || !pendingCalls.isEmpty()) {
+                try {
+                    Thread.sleep(DRAIN_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (!pendingCalls.isEmpty()) {
+            log.warn(
+                    "{} Zebrunner API calls were not delivered. They are kept in {} and will be replayed by the next run.",
+                    pendingCalls.size(), spool.getDirectory()
+            );
+        }
+        spool.close();
+    }
+
+    private <T> T argument(SpooledCall call, int index, Type type) {
+        InputStream json = new ByteBufferInputStream(call.getArguments().get(index).duplicate());
+        return jsonMapper.readValue(new InputStreamReader(json, StandardCharsets.UTF_8), type);
+    }
+
+    private byte[] bytesArgument(SpooledCall call, int index) {
+        ByteBuffer argument = call.getArguments().get(index).duplicate();
+        byte[] bytes = new byte[argument.remaining()];
+        argument.get(bytes);
+        return bytes;
+    }
+
+    private static final class ByteBufferOutputStream extends OutputStream {
+
+        private final ByteBuffer target;
+
+        private ByteBufferOutputStream(ByteBuffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            target.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            target.put(bytes, offset, length);
+        }
+
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer source;
+
+        private ByteBufferInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? source.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, source.remaining());
+            source.get(target, offset, read);
+            return read;
+        }
+
+    }
+
+    private CompletableFuture<Void> dispatch(SpooledCall call) {
+        try {
+            switch (call.getMethod()) {
+                case "patchTestRunBuild":
+                    return delegate.patchTestRunBuild(this.argument(call, 0, Long.class), this.argument(call, 1, String.class));
+                case "setTestRunPlatform":
+                    return delegate.setTestRunPlatform(
+                            this.argument(call, 0, Long.class), this.argument(call, 1, String.class), this.argument(call, 2, String.class)
+                    );
+                case REGISTER_TEST_RUN_FINISH:
+                    return delegate.registerTestRunFinish(this.argument(call, 0, TestRunDTO.class));
+                case "revertTestRegistration":
+                    return delegate.revertTestRegistration(this.argument(call, 0, Long.class), this.argument(call, 1, Long.class));
+                case "registerTestFinish":
+                    return delegate.registerTestFinish(this.argument(call, 0, Long.class), this.argument(call, 1, TestDTO.class));
+                case "sendLogs":
+                    return delegate.sendLogs(this.argument(call, 0, LOGS_TYPE), this.argument(call, 1, Long.class));
+                case "upsertTestCaseResults":
+                    return delegate.upsertTestCaseResults(
+                            this.argument(call, 0, Long.class), this.argument(call, 1, Long.class), this.argument(call, 2, TEST_CASE_RESULTS_TYPE)
+                    );
+                case "uploadScreenshot":
+                    return delegate.uploadScreenshot(
+                            this.bytesArgument(call, 0),
+                            this.argument(call, 1, Long.class), this.argument(call, 2, Long.class), this.argument(call, 3, Long.class)
+                    );
+                case "attachArtifactReferenceToTestRun":
+                    return delegate.attachArtifactReferenceToTestRun(
+                            this.argument(call, 0, Long.class), this.argument(call, 1, ArtifactReferenceDTO.class)
+                    );
+                case "attachArtifactReferenceToTest":
+                    return delegate.attachArtifactReferenceToTest(
+                            this.argument(call, 0, Long.class), this.argument(call, 1, Long.class), this.argument(call, 2, ArtifactReferenceDTO.class)
+                    );
+                case "attachLabelsToTestRun":
+                    return delegate.attachLabelsToTestRun(this.argument(call, 0, Long.class), this.argument(call, 1, LABELS_TYPE));
+                case "attachLabelsToTest":
+                    return delegate.attachLabelsToTest(
+                            this.argument(call, 0, Long.class), this.argument(call, 1, Long.class), this.argument(call, 2, LABELS_TYPE)
+                    );
+                case "updateSession":
+                    return delegate.updateSession(this.argument(call, 0, Long.class), this.argument(call, 1, TestSessionDTO.class));
+                default:
+                    throw new TestAgentException("Unknown spooled call '" + call.getMethod() + "'.");
+            }
+        } catch (RuntimeException e) {
+            CompletableFuture<Void> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+    }
+
+    @Override
+    public CompletableFuture<TestRunDTO> registerTestRunStart(TestRunDTO testRun) {
+        return delegate.registerTestRunStart(testRun);
+    }
+
+    @Override
+    public CompletableFuture<Void> patchTestRunBuild(Long testRunId, String build) {
+        return this.journal("patchTestRunBuild", RUN_KEYS, () -> delegate.patchTestRunBuild(testRunId, build), testRunId, build);
+    }
+
+    @Override
+    public CompletableFuture<Void> setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
+        return this.journal(
+                "setTestRunPlatform",
+                RUN_KEYS,
+                () -> delegate.setTestRunPlatform(testRunId, platformName, platformVersion),
+                testRunId, platformName, platformVersion
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestRunFinish(TestRunDTO testRun) {
+        return this.journal(REGISTER_TEST_RUN_FINISH, Collections.emptySet(), () -> delegate.registerTestRunFinish(testRun), testRun);
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestStart(Long testRunId, TestDTO test, boolean headless) {
+        return delegate.registerTestStart(testRunId, test, headless);
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
+        return delegate.registerTestRerunStart(testRunId, testId, test, headless);
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
+        return delegate.registerHeadlessTestUpdate(testRunId, test);
+    }
+
+    @Override
+    public CompletableFuture<Void> revertTestRegistration(Long testRunId, Long testId) {
+        return this.journal("revertTestRegistration", testKeys(testId), () -> delegate.revertTestRegistration(testRunId, testId), testRunId, testId);
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestFinish(Long testRunId, TestDTO test) {
+        return this.journal("registerTestFinish", testKeys(test.getId()), () -> delegate.registerTestFinish(testRunId, test), testRunId, test);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendLogs(Collection<Log> logs, Long testRunId) {
+        return this.journal("sendLogs", logsKeys(logs), () -> delegate.sendLogs(logs, testRunId), logs, testRunId);
+    }
+
+    @Override
+    public CompletableFuture<Void> upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
+        return this.journal(
+                "upsertTestCaseResults",
+                testKeys(testId),
+                () -> delegate.upsertTestCaseResults(testRunId, testId, testCaseResults),
+                testRunId, testId, testCaseResults
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        return this.journal(
+                "uploadScreenshot",
+                testKeys(testId),
+                () -> delegate.uploadScreenshot(screenshot, testRunId, testId, capturedAt),
+                screenshot, testRunId, testId, capturedAt
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
+        return delegate.uploadTestRunArtifact(artifact, name, testRunId);
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
+        return delegate.uploadTestArtifact(artifact, name, testRunId, testId);
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference) {
+        return this.journal(
+                "attachArtifactReferenceToTestRun",
+                RUN_KEYS,
+                () -> delegate.attachArtifactReferenceToTestRun(testRunId, artifactReference),
+                testRunId, artifactReference
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
+        return this.journal(
+                "attachArtifactReferenceToTest",
+                testKeys(testId),
+                () -> delegate.attachArtifactReferenceToTest(testRunId, testId, artifactReference),
+                testRunId, testId, artifactReference
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
+        return this.journal("attachLabelsToTestRun", RUN_KEYS, () -> delegate.attachLabelsToTestRun(testRunId, labels), testRunId, labels);
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
+        return this.journal(
+                "attachLabelsToTest",
+                testKeys(testId),
+                () -> delegate.attachLabelsToTest(testRunId, testId, labels),
+                testRunId, testId, labels
+        );
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRunContextResponse> exchangeRerunCondition(String rerunCondition) {
+        return delegate.exchangeRerunCondition(rerunCondition);
+    }
+
+    @Override
+    public CompletableFuture<TestSessionDTO> startSession(Long testRunId, TestSessionDTO testSession) {
+        return delegate.startSession(testRunId, testSession);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateSession(Long testRunId, TestSessionDTO testSession) {
+        return this.journal("updateSession", sessionKeys(testSession), () -> delegate.updateSession(testRunId, testSession), testRunId, testSession);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
+        return delegate.isKnownIssueAttachedToTest(testRunId, testId, failureStacktrace);
+    }
+
+}
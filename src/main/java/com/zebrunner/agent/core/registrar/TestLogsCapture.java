@@ -0,0 +1,256 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.descriptor.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Failure-focused capture of logs. Most of the tests pass, and their logs are rarely looked at, so in the FAILURES mode
+ * logs of a running test are held in memory rather than sent right away. Once the test finishes, all the held logs
+ * are passed to the logs buffer unless the test passed. For a passed test, only the configured number of last lines
+ * is passed on, or none of them.
+ * <p>Logs are held per test in a bounded ring, so a chatty test keeps only its most recent lines. Events are held
+ * as they were logged if the buffer defers their conversion, so logs of passed tests are never even formatted.
+ * <p>Tests are held from their start to their finish (see {@link LogsCapturingRegistrationListener}). Logs of a test
+ * outside of that window, e.g. logs of its after-methods, go to the buffer directly.
+ */
+@Slf4j
+final class TestLogsCapture {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final class InstanceHolder {
+
+        private static final TestLogsCapture INSTANCE = new TestLogsCapture(
+                Mode.parse(ConfigurationHolder.getLogsCaptureMode()),
+                ConfigurationHolder.getLogsCaptureMaxLines(),
+                ConfigurationHolder.getLogsPassedTailLines()
+        );
+
+    }
+
+    static TestLogsCapture getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    enum Mode {
+
+        /**
+         * Logs are sent as soon as they are flushed from the buffer
+         */
+        ALL,
+        /**
+         * Logs are held until the test finishes, and only a tail of them is sent for a passed test
+         */
+        FAILURES;
+
+        static Mode parse(String value) {
+            for (Mode mode : values()) {
+                if (mode.name().equalsIgnoreCase(value)) {
+                    return mode;
+                }
+            }
+            log.warn("Unknown logs capture mode '{}', so {} mode is used.", value, ALL);
+            return ALL;
+        }
+
+    }
+
+    /**
+     * Logs buffer the held logs are released to
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        /**
+         * @param testId    id of the test the log belongs to
+         * @param event     logged event, or converted {@link Log} if the converter is null
+         * @param converter converter of the event, or null if the event is already converted
+         */
+        void put(Long testId, Object event, LogEventConverter<Object> converter);
+
+    }
+
+    private final Mode mode;
+    private final int maxLines;
+    private final int passedTailLines;
+
+    private final Map<Long, HeldLogs> heldLogsByTestId = new ConcurrentHashMap<>();
+    private final LogsBufferMetrics metrics = LogsBufferMetrics.getInstance();
+    private volatile Sink sink;
+
+    TestLogsCapture(Mode mode, int maxLines, int passedTailLines) {
+        this.mode = mode;
+        this.maxLines = maxLines;
+        this.passedTailLines = Math.min(passedTailLines, maxLines);
+    }
+
+    /**
+     * Logs of a test. Events are kept in a ring which grows up to the max number of lines,
+     * and then the oldest event is overwritten by the newest one.
+     */
+    private static final class HeldLogs {
+
+        private Object[] events;
+        private LogEventConverter<?>[] converters;
+        private int head;
+        private int size;
+        private long overwrittenLines;
+        private boolean released;
+
+        private HeldLogs(int capacity) {
+            this.events = new Object[capacity];
+            this.converters = new LogEventConverter<?>[capacity];
+        }
+
+        private void add(Object event, LogEventConverter<?> converter, int maxLines) {
+            if (size == events.length && size < maxLines) {
+                this.grow(Math.min(maxLines, size * 2));
+            }
+            int index = (head + size) % events.length;
+            events[index] = event;
+            converters[index] = converter;
+            if (size < events.length) {
+                size++;
+            } else {
+                head = (head + 1) % events.length;
+                overwrittenLines++;
+            }
+        }
+
+        private void grow(int capacity) {
+            Object[] newEvents = new Object[capacity];
+            LogEventConverter<?>[] newConverters = new LogEventConverter<?>[capacity];
+            for (int i = 0; i < size; i++) {
+                newEvents[i] = events[(head + i) % events.length];
+                newConverters[i] = converters[(head + i) % events.length];
+            }
+            events = newEvents;
+            converters = newConverters;
+            head = 0;
+        }
+
+    }
+
+    boolean isEnabled() {
+        return mode == Mode.FAILURES;
+    }
+
+    /**
+     * Sets the buffer the held logs are released to. There is a single type of logs buffer in a test project,
+     * so all the instances of the buffer share it.
+     */
+    void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Starts holding logs of the test.
+     *
+     * @param testId id of the started test
+     */
+    void start(Long testId) {
+        if (this.isEnabled() && testId != null) {
+            heldLogsByTestId.putIfAbsent(testId, new HeldLogs(Math.min(INITIAL_CAPACITY, maxLines)));
+        }
+    }
+
+    /**
+     * @return true if logs of the test are held, so its events must be kept until the test finishes
+     */
+    boolean isHolding(Long testId) {
+        return this.isEnabled() && testId != null && heldLogsByTestId.containsKey(testId);
+    }
+
+    /**
+     * @param testId    id of the test the event belongs to
+     * @param event     logged event, or converted {@link Log}
+     * @param converter converter of the event, or null if the event is already converted
+     * @return false if logs of the test are not held, so the event should be buffered right away
+     */
+    boolean hold(Long testId, Object event, LogEventConverter<?> converter) {
+        if (!this.isEnabled() || testId == null) {
+            return false;
+        }
+        HeldLogs heldLogs = heldLogsByTestId.get(testId);
+        if (heldLogs == null) {
+            return false;
+        }
+        synchronized (heldLogs) {
+            if (heldLogs.released) {
+                return false;
+            }
+            heldLogs.add(event, converter, maxLines);
+            return true;
+        }
+    }
+
+    /**
+     * Stops holding logs of the test and releases them to the buffer according to the status of the test.
+     *
+     * @param testId id of the finished test
+     * @param status status of the test, or null if it is unknown
+     */
+    void release(Long testId, Status status) {
+        HeldLogs heldLogs = testId != null ? heldLogsByTestId.remove(testId) : null;
+        if (heldLogs == null) {
+            return;
+        }
+        synchronized (heldLogs) {
+            heldLogs.released = true;
+        }
+
+        // nothing else touches the logs once they are marked as released
+        int releasedLines = status == Status.PASSED ? Math.min(passedTailLines, heldLogs.size) : heldLogs.size;
+        long discardedLines = heldLogs.overwrittenLines + heldLogs.size - releasedLines;
+        if (discardedLines > 0) {
+            metrics.onDiscarded(discardedLines);
+        }
+
+        Sink sink = this.sink;
+        if (sink == null || releasedLines == 0) {
+            return;
+        }
+        int first = heldLogs.size - releasedLines;
+        for (int i = first; i < heldLogs.size; i++) {
+            int index = (heldLogs.head + i) % heldLogs.events.length;
+            Object event = heldLogs.events[index];
+            @SuppressWarnings("unchecked")
+            LogEventConverter<Object> converter = (LogEventConverter<Object>) heldLogs.converters[index];
+            if (i == first && discardedLines > 0) {
+                // the note precedes the released lines, so it takes the timestamp of the first of them
+                Log firstLog = converter != null ? converter.convert(event) : (Log) event;
+                sink.put(testId, toNote(testId, discardedLines, firstLog.getTimestamp()), null);
+                event = firstLog;
+                converter = null;
+            }
+            sink.put(testId, event, converter);
+        }
+        Arrays.fill(heldLogs.events, null);
+    }
+
+    /**
+     * Releases logs of all the tests that did not finish, e.g. on shutdown. Outcome of such tests is unknown,
+     * so all of their logs are released.
+     */
+    void releaseAll() {
+        for (Long testId : heldLogsByTestId.keySet()) {
+            this.release(testId, null);
+        }
+    }
+
+    private static Log toNote(Long testId, long discardedLines, long timestamp) {
+        return Log.builder()
+                  .testId(String.valueOf(testId))
+                  .message(discardedLines + " earlier log lines of the test were not sent by failure-focused capture of Zebrunner agent.")
+                  .level("INFO")
+                  .timestamp(timestamp)
+                  .build();
+    }
+
+}
@@ -0,0 +1,571 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.exception.ServerException;
+import com.zebrunner.agent.core.exception.TestAgentException;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.AutenticationData;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
+import com.zebrunner.agent.core.registrar.domain.KnownIssueConfirmation;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunPlatform;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+import com.zebrunner.agent.core.transport.HttpTransport;
+import com.zebrunner.agent.core.transport.TransportRequest;
+import com.zebrunner.agent.core.transport.TransportResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncZebrunnerApiClient} talking to Zebrunner through a pluggable {@link HttpTransport}.
+ * Unlike Unirest based clients, it has no third-party dependencies except of the transport itself,
+ * so with the transport built on JDK http client the agent does not need Unirest at all.
+ * <p>The client authenticates once it is created. Requests are retried according to {@link RetryPolicy}
+ * and recorded by {@link ApiClientMetrics}, just like the requests of Unirest based clients.
+ */
+@Slf4j
+class TransportAsyncZebrunnerApiClient implements AsyncZebrunnerApiClient {
+
+    private static final String JSON = "application/json";
+    private static final String JSON_PATCH = "application/json-patch+json";
+    private static final String IMAGE_PNG = "image/png";
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private final HttpTransport transport;
+    private final JsonMapper jsonMapper = new JsonMapper();
+
+    private String apiHost;
+    private String authToken;
+
+    TransportAsyncZebrunnerApiClient(HttpTransport transport) {
+        this.transport = transport;
+        if (ConfigurationHolder.isReportingEnabled()) {
+            this.apiHost = ConfigurationHolder.getHost();
+            this.authToken = this.authenticate();
+        }
+    }
+
+    private String authenticate() {
+        ApiRequest request = new ApiRequest("POST", "/api/iam/v1/auth/refresh")
+                .jsonBody(Collections.singletonMap("refreshToken", ConfigurationHolder.getToken()));
+
+        TransportResponse response;
+        try {
+            response = this.send(request).join();
+        } catch (CompletionException e) {
+            throw new TestAgentException("Not able to obtain api token: " + RetryPolicy.unwrap(e).getMessage());
+        }
+        if (!response.isSuccess()) {
+            throw this.toServerException("Not able to obtain api token.", response);
+        }
+        AutenticationData authData = this.readBody(response, AutenticationData.class);
+        return authData.getAuthTokenType() + " " + authData.getAuthToken();
+    }
+
+    /**
+     * Request to Zebrunner API. Path is a template, so all the requests to an endpoint share the same metrics.
+     */
+    private final class ApiRequest {
+
+        private final String method;
+        private final String pathTemplate;
+        private final Map<String, String> routeParams = new LinkedHashMap<>();
+        private final Map<String, String> queryParams = new LinkedHashMap<>();
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private InputStream body;
+        private long contentLength = -1;
+
+        private ApiRequest(String method, String pathTemplate) {
+            this.method = method;
+            this.pathTemplate = pathTemplate;
+            this.headers.put("Accept", JSON);
+        }
+
+        private ApiRequest routeParam(String name, Object value) {
+            routeParams.put(name, value.toString());
+            return this;
+        }
+
+        private ApiRequest queryString(String name, Object value) {
+            queryParams.put(name, String.valueOf(value));
+            return this;
+        }
+
+        private ApiRequest header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        private ApiRequest body(byte[] content, String contentType) {
+            this.headers.put("Content-Type", contentType);
+            this.body = new ByteArrayInputStream(content);
+            this.contentLength = content.length;
+            ApiClientMetrics.getInstance().recordBytesSent(this.getEndpoint(), content.length);
+            return this;
+        }
+
+        private ApiRequest body(InputStream content, String contentType) {
+            return this.body(content, -1, contentType);
+        }
+
+        private ApiRequest body(InputStream content, long contentLength, String contentType) {
+            this.headers.put("Content-Type", contentType);
+            this.body = ApiClientMetrics.getInstance().countSentBytes(this.getEndpoint(), content);
+            this.contentLength = contentLength;
+            return this;
+        }
+
+        private ApiRequest jsonBody(Object value) {
+            JsonBody json;
+            try {
+                json = JsonBody.of(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (json.isGzipped()) {
+                this.header("Content-Encoding", JsonBody.GZIP_ENCODING);
+            }
+            return json.getBytes() != null
+                    ? this.body(json.getBytes(), JSON)
+                    : this.body(json.getStream(), json.getStreamLength(), JSON);
+        }
+
+        private ApiRequest multipartBody(String field, InputStream content, String fileName) {
+            String boundary = "zebrunner-" + UUID.randomUUID();
+            String head = "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + fileName.replace("\"", "%22") + "\"\r\n"
+                    + "Content-Type: " + OCTET_STREAM + "\r\n"
+                    + "\r\n";
+            String tail = "\r\n--" + boundary + "--\r\n";
+
+            InputStream multipart = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(head.getBytes(StandardCharsets.UTF_8)),
+                    content,
+                    new ByteArrayInputStream(tail.getBytes(StandardCharsets.UTF_8))
+            )));
+            return this.body(multipart, "multipart/form-data; boundary=" + boundary);
+        }
+
+        private String getEndpoint() {
+            return ApiClientMetrics.toEndpoint(method, pathTemplate);
+        }
+
+        private TransportRequest build() {
+            String path = pathTemplate;
+            for (Map.Entry<String, String> routeParam : routeParams.entrySet()) {
+                path = path.replace("{" + routeParam.getKey() + "}", encode(routeParam.getValue()));
+            }
+
+            StringBuilder url = new StringBuilder(apiHost).append(path);
+            String separator = "?";
+            for (Map.Entry<String, String> queryParam : queryParams.entrySet()) {
+                url.append(separator).append(encode(queryParam.getKey())).append('=').append(encode(queryParam.getValue()));
+                separator = "&";
+            }
+
+            TransportRequest.TransportRequestBuilder builder = TransportRequest.builder()
+                                                                               .method(method)
+                                                                               .uri(URI.create(url.toString()))
+                                                                               .headers(headers)
+                                                                               .body(body)
+                                                                               .contentLength(contentLength);
+            if (authToken != null) {
+                builder.header("Authorization", authToken);
+            }
+            return builder.build();
+        }
+
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private ApiRequest reportingAPI(String method, String endpointPath) {
+        return new ApiRequest(method, "/api/reporting" + endpointPath);
+    }
+
+    private CompletableFuture<TransportResponse> send(ApiRequest request) {
+        String endpoint = request.getEndpoint();
+        long startedAt = System.nanoTime();
+        return transport.send(request.build())
+                        .whenComplete((response, throwable) -> {
+                            ApiClientMetrics metrics = ApiClientMetrics.getInstance();
+                            metrics.recordRequest(
+                                    endpoint, System.nanoTime() - startedAt, throwable != null || response.getStatus() >= 400
+                            );
+                            if (response != null && response.getBody() != null) {
+                                metrics.recordBytesReceived(endpoint, response.getBody().length);
+                            }
+                        });
+    }
+
+    private String formatError(String message, TransportResponse response) {
+        return String.format(
+                "%s\nResponse status code: %s.\nRaw response body: \n%s",
+                message, response.getStatus(), new String(response.getBody(), StandardCharsets.UTF_8)
+        );
+    }
+
+    private ServerException toServerException(String message, TransportResponse response) {
+        return new ServerException(
+                this.formatError(message, response),
+                response.getStatus(),
+                RetryPolicy.parseRetryAfter(response.getHeader("Retry-After"))
+        );
+    }
+
+    private <T> T readBody(TransportResponse response, Class<T> type) {
+        if (type == null || type == Void.class || response.getBody() == null || response.getBody().length == 0) {
+            return null;
+        }
+        return jsonMapper.readValue(new String(response.getBody(), StandardCharsets.UTF_8), type);
+    }
+
+    private <T> CompletableFuture<T> sendRequest(CallPriority priority,
+                                                 Supplier<ApiRequest> request,
+                                                 Class<T> responseType,
+                                                 String errorMessage) {
+        return this.sendRequest(priority, request, responseType, errorMessage, RetryPolicy.MAX_ATTEMPTS);
+    }
+
+    /**
+     * Sends the request creating an entity on Zebrunner, so it is retried only if it certainly was not processed.
+     */
+    private <T> CompletableFuture<T> sendCreationRequest(CallPriority priority,
+                                                         Supplier<ApiRequest> request,
+                                                         Class<T> responseType,
+                                                         String errorMessage) {
+        return this.sendRequest(priority, request, responseType, errorMessage, RetryPolicy.MAX_ATTEMPTS, false);
+    }
+
+    private <T> CompletableFuture<T> sendRequest(CallPriority priority,
+                                                 Supplier<ApiRequest> request,
+                                                 Class<T> responseType,
+                                                 String errorMessage,
+                                                 int maxAttempts) {
+        return this.sendRequest(priority, request, responseType, errorMessage, maxAttempts, true);
+    }
+
+    /**
+     * @param request      creates the request. It is invoked for every attempt, since request body can be read only once
+     * @param responseType type of response body, or null if the body should be ignored
+     * @param idempotent   false if another attempt of the request may have a different effect
+     */
+    private <T> CompletableFuture<T> sendRequest(CallPriority priority,
+                                                 Supplier<ApiRequest> request,
+                                                 Class<T> responseType,
+                                                 String errorMessage,
+                                                 int maxAttempts,
+                                                 boolean idempotent) {
+        if (authToken == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return RetryPolicy.getInstance().executeAsync(
+                priority,
+                () -> this.send(request.get())
+                          .thenApply(response -> {
+                              if (!response.isSuccess()) {
+                                  throw this.toServerException(errorMessage, response);
+                              }
+                              return this.readBody(response, responseType);
+                          }),
+                maxAttempts,
+                idempotent
+        );
+    }
+
+    private CompletableFuture<Void> sendVoidRequest(CallPriority priority, Supplier<ApiRequest> request, String errorMessage) {
+        return this.<Void>sendRequest(priority, request, null, errorMessage);
+    }
+
+    /**
+     * Sends the request only once, since its body is a stream that cannot be read twice.
+     */
+    private CompletableFuture<Void> sendUploadRequest(CallPriority priority, Supplier<ApiRequest> request, String errorMessage) {
+        return this.<Void>sendRequest(priority, request, null, errorMessage, 1);
+    }
+
+    @Override
+    public CompletableFuture<TestRunDTO> registerTestRunStart(TestRunDTO testRun) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("POST", "/v1/test-runs")
+                    .queryString("projectKey", ConfigurationHolder.getProjectKey())
+                    .jsonBody(testRun),
+                TestRunDTO.class,
+                "Could not register start of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> patchTestRunBuild(Long testRunId, String build) {
+        Map<String, String> operation = new LinkedHashMap<>();
+        operation.put("op", "replace");
+        operation.put("path", "/config/build");
+        operation.put("value", build);
+        byte[] patch = jsonMapper.writeValue(Collections.singletonList(operation)).getBytes(StandardCharsets.UTF_8);
+
+        return this.sendVoidRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("PATCH", "/v1/test-runs/{testRunId}")
+                    .routeParam("testRunId", testRunId)
+                    .body(patch, JSON_PATCH),
+                "Could not patch build of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
+        return this.sendVoidRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/platform")
+                    .routeParam("testRunId", testRunId)
+                    .jsonBody(new TestRunPlatform(platformName, platformVersion)),
+                "Could not set platform of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestRunFinish(TestRunDTO testRun) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}")
+                    .routeParam("testRunId", testRun.getId())
+                    .jsonBody(testRun),
+                "Could not register finish of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestStart(Long testRunId, TestDTO test, boolean headless) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/tests")
+                    .routeParam("testRunId", testRunId)
+                    .queryString("headless", headless)
+                    .jsonBody(test),
+                TestDTO.class,
+                "Could not register start of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/tests/{testId}")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId)
+                    .queryString("headless", headless)
+                    .jsonBody(test),
+                TestDTO.class,
+                "Could not register start of rerun of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
+        return this.sendRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/tests/{testId}")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", test.getId())
+                    .queryString("headless", true)
+                    .jsonBody(test),
+                TestDTO.class,
+                "Could not register start of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> revertTestRegistration(Long testRunId, Long testId) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("DELETE", "/v1/test-runs/{testRunId}/tests/{testId}")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId),
+                "Could not revert test registration."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestFinish(Long testRunId, TestDTO test) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/tests/{testId}")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", test.getId())
+                    .queryString("headless", false)
+                    .jsonBody(test),
+                "Could not register finish of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> sendLogs(Collection<Log> logs, Long testRunId) {
+        return this.sendVoidRequest(CallPriority.LOGS, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/logs")
+                    .routeParam("testRunId", testRunId)
+                    .jsonBody(logs),
+                "Could not send a batch of test logs."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
+        if (authToken == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return RetryPolicy.getInstance().executeAsync(
+                CallPriority.METADATA,
+                () -> this.send(
+                        this.reportingAPI("POST", "/v1/test-runs/{testRunId}/tests/{testId}/test-cases:upsert")
+                            .routeParam("testRunId", testRunId)
+                            .routeParam("testId", testId)
+                            .jsonBody(Collections.singletonMap("testCases", testCaseResults))
+                ).thenApply(response -> {
+                    if (response.getStatus() == 404) {
+                        log.warn("This functionality is not available for your Zebrunner distribution");
+                    } else if (!response.isSuccess()) {
+                        throw this.toServerException("Could not send test case results.", response);
+                    }
+                    return null;
+                })
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        return this.sendVoidRequest(CallPriority.BULK, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/tests/{testId}/screenshots")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId)
+                    .header("x-zbr-screenshot-captured-at", capturedAt.toString())
+                    .body(screenshot, IMAGE_PNG),
+                "Could not upload a screenshot."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
+        return this.sendUploadRequest(CallPriority.BULK, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/artifacts")
+                    .routeParam("testRunId", testRunId)
+                    .multipartBody("file", artifact, name),
+                "Could not attach test run artifact with name " + name
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
+        return this.sendUploadRequest(CallPriority.BULK, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/tests/{testId}/artifacts")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId)
+                    .multipartBody("file", artifact, name),
+                "Could not attach test artifact with name " + name
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference) {
+        return this.sendVoidRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/artifact-references")
+                    .routeParam("testRunId", testRunId)
+                    .jsonBody(Collections.singletonMap("items", Collections.singletonList(artifactReference))),
+                "Could not attach the following test run artifact reference: " + artifactReference
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
+        return this.sendVoidRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/tests/{testId}/artifact-references")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId)
+                    .jsonBody(Collections.singletonMap("items", Collections.singletonList(artifactReference))),
+                "Could not attach the following test artifact reference: " + artifactReference
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
+        return this.sendVoidRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/labels")
+                    .routeParam("testRunId", testRunId)
+                    .jsonBody(Collections.singletonMap("items", labels)),
+                "Could not attach the following labels to test run: " + labels
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
+        return this.sendVoidRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/tests/{testId}/labels")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId)
+                    .jsonBody(Collections.singletonMap("items", labels)),
+                "Could not attach the following labels to test: " + labels
+        );
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRunContextResponse> exchangeRerunCondition(String rerunCondition) {
+        return this.sendRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("POST", "/v1/run-context-exchanges")
+                    .body(rerunCondition.getBytes(StandardCharsets.UTF_8), JSON),
+                ExchangeRunContextResponse.class,
+                "Could not get tests by ci run id."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestSessionDTO> startSession(Long testRunId, TestSessionDTO testSession) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/test-sessions")
+                    .routeParam("testRunId", testRunId)
+                    .jsonBody(testSession),
+                TestSessionDTO.class,
+                "Could not register start of the test session."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> updateSession(Long testRunId, TestSessionDTO testSession) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, () ->
+                this.reportingAPI("PUT", "/v1/test-runs/{testRunId}/test-sessions/{testSessionId}")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testSessionId", testSession.getId())
+                    .jsonBody(testSession),
+                "Could not update test session."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
+        return this.sendRequest(CallPriority.METADATA, () ->
+                this.reportingAPI("POST", "/v1/test-runs/{testRunId}/tests/{testId}/known-issue-confirmations")
+                    .routeParam("testRunId", testRunId)
+                    .routeParam("testId", testId)
+                    .jsonBody(Collections.singletonMap("failureReason", failureStacktrace)),
+                KnownIssueConfirmation.class,
+                "Could not retrieve status of attached known issues."
+        ).thenApply(confirmation -> confirmation != null && confirmation.isKnownIssue());
+    }
+
+}
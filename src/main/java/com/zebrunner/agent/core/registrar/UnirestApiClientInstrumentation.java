@@ -0,0 +1,102 @@
+package com.zebrunner.agent.core.registrar;
+
+import kong.unirest.Body;
+import kong.unirest.BodyPart;
+import kong.unirest.Config;
+import kong.unirest.HeaderNames;
+import kong.unirest.HttpRequest;
+import kong.unirest.HttpRequestSummary;
+import kong.unirest.HttpResponse;
+import kong.unirest.Interceptor;
+import kong.unirest.MetricContext;
+import kong.unirest.UniMetric;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Feeds {@link ApiClientMetrics} from Unirest: every {@link kong.unirest.UnirestInstance} talking to Zebrunner
+ * is instrumented via {@link #instrument(Config)}, so neither sync nor async Unirest clients need to be aware of metrics.
+ * Size of a request body is known upfront unless the body is a stream. Streamed json bodies are counted
+ * while they are being sent (see {@link JsonRequestBodies}), other streams are not counted.
+ * Size of a response body is taken from its 'Content-Length' header.
+ */
+final class UnirestApiClientInstrumentation implements UniMetric, Interceptor {
+
+    private static final UnirestApiClientInstrumentation INSTANCE = new UnirestApiClientInstrumentation();
+
+    private final ApiClientMetrics metrics = ApiClientMetrics.getInstance();
+
+    private UnirestApiClientInstrumentation() {
+    }
+
+    static Config instrument(Config config) {
+        return config.instrumentWith(INSTANCE)
+                     .interceptor(INSTANCE);
+    }
+
+    static String toEndpoint(HttpRequestSummary request) {
+        return ApiClientMetrics.toEndpoint(request.getHttpMethod().name(), request.getRawPath());
+    }
+
+    @Override
+    public MetricContext begin(HttpRequestSummary request) {
+        String endpoint = toEndpoint(request);
+        long startedAt = System.nanoTime();
+        return (response, exception) -> metrics.recordRequest(
+                endpoint,
+                System.nanoTime() - startedAt,
+                exception != null || response == null || response.getStatus() >= 400
+        );
+    }
+
+    @Override
+    public void onRequest(HttpRequest<?> request, Config config) {
+        long size = request.getBody()
+                           .map(UnirestApiClientInstrumentation::sizeOf)
+                           .orElse(0L);
+        if (size > 0) {
+            metrics.recordBytesSent(toEndpoint(request.toSummary()), size);
+        }
+    }
+
+    private static long sizeOf(Body body) {
+        Charset charset = body.getCharset() != null ? body.getCharset() : StandardCharsets.UTF_8;
+        if (body.isMultiPart()) {
+            long size = 0;
+            for (BodyPart<?> part : body.multiParts()) {
+                size += sizeOf(part, charset);
+            }
+            return size;
+        }
+        return body.uniPart() != null ? sizeOf(body.uniPart(), charset) : 0;
+    }
+
+    private static long sizeOf(BodyPart<?> part, Charset charset) {
+        Object value = part.getValue();
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(charset).length;
+        }
+        if (value instanceof File) {
+            return ((File) value).length();
+        }
+        return 0;
+    }
+
+    @Override
+    public void onResponse(HttpResponse<?> response, HttpRequestSummary request, Config config) {
+        String contentLength = response.getHeaders().getFirst(HeaderNames.CONTENT_LENGTH);
+        if (!contentLength.isEmpty()) {
+            try {
+                metrics.recordBytesReceived(toEndpoint(request), Long.parseLong(contentLength.trim()));
+            } catch (NumberFormatException e) {
+                // malformed header says nothing about the size of the body
+            }
+        }
+    }
+
+}
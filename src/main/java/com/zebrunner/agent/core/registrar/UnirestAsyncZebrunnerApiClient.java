@@ -0,0 +1,434 @@
+package com.zebrunner.agent.core.registrar;
+
+import com.zebrunner.agent.core.config.ConfigurationHolder;
+import com.zebrunner.agent.core.exception.ServerException;
+import com.zebrunner.agent.core.logging.Log;
+import com.zebrunner.agent.core.registrar.domain.ArtifactReferenceDTO;
+import com.zebrunner.agent.core.registrar.domain.ExchangeRunContextResponse;
+import com.zebrunner.agent.core.registrar.domain.KnownIssueConfirmation;
+import com.zebrunner.agent.core.registrar.domain.LabelDTO;
+import com.zebrunner.agent.core.registrar.domain.ObjectMapperImpl;
+import com.zebrunner.agent.core.registrar.domain.TestCaseResult;
+import com.zebrunner.agent.core.registrar.domain.TestDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunDTO;
+import com.zebrunner.agent.core.registrar.domain.TestRunPlatform;
+import com.zebrunner.agent.core.registrar.domain.TestSessionDTO;
+import kong.unirest.Config;
+import kong.unirest.ContentType;
+import kong.unirest.HeaderNames;
+import kong.unirest.HttpResponse;
+import kong.unirest.MimeTypes;
+import kong.unirest.UnirestInstance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * {@link AsyncZebrunnerApiClient} backed by Unirest non-blocking requests. Requests are issued by
+ * a dedicated async http client, so the calling thread never waits for Zebrunner to respond.
+ * Access token is shared with {@link UnirestZebrunnerApiClient}, so no additional authentication is performed.
+ */
+@Slf4j
+class UnirestAsyncZebrunnerApiClient implements AsyncZebrunnerApiClient {
+
+    private static UnirestAsyncZebrunnerApiClient INSTANCE;
+
+    private String apiHost;
+    private UnirestInstance client;
+    private UnirestInstance uploadClient;
+
+    private UnirestAsyncZebrunnerApiClient() {
+        if (ConfigurationHolder.isReportingEnabled()) {
+            String authToken = UnirestZebrunnerApiClient.getInstance().getAuthToken();
+            // authentication failed, so the client cannot be used at all
+            if (authToken != null) {
+                this.apiHost = ConfigurationHolder.getHost();
+                this.client = this.initClient(authToken, true);
+                this.uploadClient = this.initClient(authToken, false);
+            }
+        }
+    }
+
+    static synchronized UnirestAsyncZebrunnerApiClient getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new UnirestAsyncZebrunnerApiClient();
+        }
+        return INSTANCE;
+    }
+
+    private UnirestInstance initClient(String authToken, boolean json) {
+        Config config = new Config();
+        config.concurrency(ConfigurationHolder.getClientMaxConnections(), ConfigurationHolder.getClientMaxConnectionsPerRoute());
+        config.addShutdownHook(true);
+        if (json) {
+            config.addDefaultHeader(HeaderNames.CONTENT_TYPE, MimeTypes.JSON);
+            config.addDefaultHeader(HeaderNames.ACCEPT, MimeTypes.JSON);
+        }
+        config.addDefaultHeader(HeaderNames.AUTHORIZATION, authToken);
+        config.setObjectMapper(new ObjectMapperImpl());
+        UnirestApiClientInstrumentation.instrument(config);
+        return new UnirestInstance(config);
+    }
+
+    private String reportingAPI(String endpointPath) {
+        return String.format("%s/api/reporting%s", apiHost, endpointPath);
+    }
+
+    private String formatError(String message, HttpResponse<?> response) {
+        return String.format(
+                "%s\nResponse status code: %s.\nRaw response body: \n%s",
+                message, response.getStatus(), response.mapError(String.class)
+        );
+    }
+
+    private ServerException toServerException(String message, HttpResponse<?> response) {
+        return new ServerException(
+                this.formatError(message, response),
+                response.getStatus(),
+                RetryPolicy.parseRetryAfter(response.getHeaders().getFirst(HeaderNames.RETRY_AFTER))
+        );
+    }
+
+    private <T> CompletableFuture<T> sendRequest(CallPriority priority,
+                                                 Function<UnirestInstance, CompletableFuture<HttpResponse<T>>> requestExecutor,
+                                                 String errorMessage) {
+        return this.sendRequest(priority, requestExecutor, errorMessage, RetryPolicy.MAX_ATTEMPTS);
+    }
+
+    /**
+     * Sends the request creating an entity on Zebrunner, so it is retried only if it certainly was not processed.
+     */
+    private <T> CompletableFuture<T> sendCreationRequest(CallPriority priority,
+                                                         Function<UnirestInstance, CompletableFuture<HttpResponse<T>>> requestExecutor,
+                                                         String errorMessage) {
+        return this.sendRequest(priority, requestExecutor, errorMessage, RetryPolicy.MAX_ATTEMPTS, false);
+    }
+
+    private <T> CompletableFuture<T> sendRequest(CallPriority priority,
+                                                 Function<UnirestInstance, CompletableFuture<HttpResponse<T>>> requestExecutor,
+                                                 String errorMessage,
+                                                 int maxAttempts) {
+        return this.sendRequest(priority, requestExecutor, errorMessage, maxAttempts, true);
+    }
+
+    private <T> CompletableFuture<T> sendRequest(CallPriority priority,
+                                                 Function<UnirestInstance, CompletableFuture<HttpResponse<T>>> requestExecutor,
+                                                 String errorMessage,
+                                                 int maxAttempts,
+                                                 boolean idempotent) {
+        if (client == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return RetryPolicy.getInstance().executeAsync(
+                priority,
+                () -> requestExecutor.apply(client)
+                                     .thenApply(response -> {
+                                         if (!response.isSuccess()) {
+                                             throw this.toServerException(errorMessage, response);
+                                         }
+                                         return response.getBody();
+                                     }),
+                maxAttempts,
+                idempotent
+        );
+    }
+
+    private CompletableFuture<Void> sendVoidRequest(CallPriority priority,
+                                                    Function<UnirestInstance, CompletableFuture<HttpResponse<String>>> requestExecutor,
+                                                    String errorMessage) {
+        return this.sendRequest(priority, requestExecutor, errorMessage)
+                   .thenApply(body -> null);
+    }
+
+    /**
+     * Sends the request only once, since its body is a stream that cannot be read twice.
+     */
+    private CompletableFuture<Void> sendUploadRequest(CallPriority priority,
+                                                      Function<UnirestInstance, CompletableFuture<HttpResponse<String>>> requestExecutor,
+                                                      String errorMessage) {
+        return this.sendRequest(priority, requestExecutor, errorMessage, 1)
+                   .thenApply(body -> null);
+    }
+
+    @Override
+    public CompletableFuture<TestRunDTO> registerTestRunStart(TestRunDTO testRun) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs"))
+                              .queryString("projectKey", ConfigurationHolder.getProjectKey()),
+                        testRun
+                ).asObjectAsync(TestRunDTO.class),
+                "Could not register start of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> patchTestRunBuild(Long testRunId, String build) {
+        return this.sendVoidRequest(CallPriority.METADATA, client ->
+                client.jsonPatch(reportingAPI("/v1/test-runs/{testRunId}"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .replace("/config/build", build)
+                      .asStringAsync(),
+                "Could not patch build of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
+        return this.sendVoidRequest(CallPriority.METADATA, client ->
+                client.put(reportingAPI("/v1/test-runs/{testRunId}/platform"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .body(new TestRunPlatform(platformName, platformVersion))
+                      .asStringAsync(),
+                "Could not set platform of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestRunFinish(TestRunDTO testRun) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}"))
+                              .routeParam("testRunId", testRun.getId().toString()),
+                        testRun
+                ).asStringAsync(),
+                "Could not register finish of the test run."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestStart(Long testRunId, TestDTO test, boolean headless) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/tests"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .queryString("headless", headless),
+                        test
+                ).asObjectAsync(TestDTO.class),
+                "Could not register start of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testId", testId.toString())
+                              .queryString("headless", headless),
+                        test
+                ).asObjectAsync(TestDTO.class),
+                "Could not register start of rerun of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestDTO> registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
+        return this.sendRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testId", test.getId().toString())
+                              .queryString("headless", true),
+                        test
+                ).asObjectAsync(TestDTO.class),
+                "Could not register start of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> revertTestRegistration(Long testRunId, Long testId) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                client.delete(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .routeParam("testId", testId.toString())
+                      .asStringAsync(),
+                "Could not revert test registration."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> registerTestFinish(Long testRunId, TestDTO test) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testId", test.getId().toString())
+                              .queryString("headless", false),
+                        test
+                ).asStringAsync(),
+                "Could not register finish of the test."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> sendLogs(Collection<Log> logs, Long testRunId) {
+        return this.sendVoidRequest(CallPriority.LOGS, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/logs"))
+                              .routeParam("testRunId", testRunId.toString()),
+                        logs
+                ).asStringAsync(),
+                "Could not send a batch of test logs."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
+        if (client == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return RetryPolicy.getInstance().executeAsync(
+                CallPriority.METADATA,
+                () -> client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/test-cases:upsert"))
+                            .routeParam("testRunId", testRunId.toString())
+                            .routeParam("testId", testId.toString())
+                            .body(Collections.singletonMap("testCases", testCaseResults))
+                            .asStringAsync()
+                            .thenApply(response -> {
+                                if (response.getStatus() == 404) {
+                                    log.warn("This functionality is not available for your Zebrunner distribution");
+                                } else if (!response.isSuccess()) {
+                                    throw this.toServerException("Could not send test case results.", response);
+                                }
+                                return null;
+                            })
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
+        return this.sendVoidRequest(CallPriority.BULK, client ->
+                client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/screenshots"))
+                      .headerReplace("Content-Type", ContentType.IMAGE_PNG.getMimeType())
+                      .routeParam("testRunId", testRunId.toString())
+                      .routeParam("testId", testId.toString())
+                      .header("x-zbr-screenshot-captured-at", capturedAt.toString())
+                      .body(screenshot)
+                      .asStringAsync(),
+                "Could not upload a screenshot."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
+        return this.sendUploadRequest(CallPriority.BULK, client ->
+                uploadClient.post(reportingAPI("/v1/test-runs/{testRunId}/artifacts"))
+                            .routeParam("testRunId", testRunId.toString())
+                            .field("file", artifact, name)
+                            .asStringAsync(),
+                "Could not attach test run artifact with name " + name
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
+        return this.sendUploadRequest(CallPriority.BULK, client ->
+                uploadClient.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/artifacts"))
+                            .routeParam("testRunId", testRunId.toString())
+                            .routeParam("testId", testId.toString())
+                            .field("file", artifact, name)
+                            .asStringAsync(),
+                "Could not attach test artifact with name " + name
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTestRun(Long testRunId, ArtifactReferenceDTO artifactReference) {
+        return this.sendVoidRequest(CallPriority.METADATA, client ->
+                client.put(reportingAPI("/v1/test-runs/{testRunId}/artifact-references"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .body(Collections.singletonMap("items", Collections.singletonList(artifactReference)))
+                      .asStringAsync(),
+                "Could not attach the following test run artifact reference: " + artifactReference
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
+        return this.sendVoidRequest(CallPriority.METADATA, client ->
+                client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/artifact-references"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .routeParam("testId", testId.toString())
+                      .body(Collections.singletonMap("items", Collections.singletonList(artifactReference)))
+                      .asStringAsync(),
+                "Could not attach the following test artifact reference: " + artifactReference
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
+        return this.sendVoidRequest(CallPriority.METADATA, client ->
+                client.put(reportingAPI("/v1/test-runs/{testRunId}/labels"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .body(Collections.singletonMap("items", labels))
+                      .asStringAsync(),
+                "Could not attach the following labels to test run: " + labels
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
+        return this.sendVoidRequest(CallPriority.METADATA, client ->
+                client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/labels"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .routeParam("testId", testId.toString())
+                      .body(Collections.singletonMap("items", labels))
+                      .asStringAsync(),
+                "Could not attach the following labels to test: " + labels
+        );
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRunContextResponse> exchangeRerunCondition(String rerunCondition) {
+        return this.sendRequest(CallPriority.LIFECYCLE, client ->
+                client.post(reportingAPI("/v1/run-context-exchanges"))
+                      .body(rerunCondition)
+                      .asObjectAsync(ExchangeRunContextResponse.class),
+                "Could not get tests by ci run id."
+        );
+    }
+
+    @Override
+    public CompletableFuture<TestSessionDTO> startSession(Long testRunId, TestSessionDTO testSession) {
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/test-sessions"))
+                              .routeParam("testRunId", testRunId.toString()),
+                        testSession
+                ).asObjectAsync(TestSessionDTO.class),
+                "Could not register start of the test session."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> updateSession(Long testRunId, TestSessionDTO testSession) {
+        return this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}/test-sessions/{testSessionId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testSessionId", testSession.getId().toString()),
+                        testSession
+                ).asStringAsync(),
+                "Could not update test session."
+        );
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
+        return this.sendRequest(CallPriority.METADATA, client ->
+                client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/known-issue-confirmations"))
+                      .routeParam("testRunId", testRunId.toString())
+                      .routeParam("testId", testId.toString())
+                      .body(Collections.singletonMap("failureReason", failureStacktrace))
+                      .asObjectAsync(KnownIssueConfirmation.class),
+                "Could not retrieve status of attached known issues."
+        ).thenApply(confirmation -> confirmation != null && confirmation.isKnownIssue());
+    }
+
+}
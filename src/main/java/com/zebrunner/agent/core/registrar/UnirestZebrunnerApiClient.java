@@ -19,36 +19,46 @@ import kong.unirest.ContentType;
 import kong.unirest.HeaderNames;
 import kong.unirest.HttpResponse;
 import kong.unirest.MimeTypes;
-import kong.unirest.Unirest;
 import kong.unirest.UnirestInstance;
+import kong.unirest.apache.ApacheClient;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 @Slf4j
 class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
 
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2_000;
+
     private static UnirestZebrunnerApiClient INSTANCE;
 
     private String apiHost;
     private String authToken;
     private volatile UnirestInstance client;
+    private UnirestInstance uploadClient;
 
     private UnirestZebrunnerApiClient() {
         if (ConfigurationHolder.isReportingEnabled()) {
             this.apiHost = ConfigurationHolder.getHost();
-            this.client = this.initClient();
+
+            CloseableHttpClient httpClient = this.initHttpClient();
+            this.client = this.initClient(httpClient);
+            this.uploadClient = this.initUploadClient(httpClient);
 
             this.authToken = this.authenticateClient();
 
-            Config config = client.config();
-            config.addDefaultHeader(HeaderNames.AUTHORIZATION, authToken);
+            client.config().addDefaultHeader(HeaderNames.AUTHORIZATION, authToken);
+            uploadClient.config().addDefaultHeader(HeaderNames.AUTHORIZATION, authToken);
         }
     }
 
@@ -59,12 +69,54 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
         return INSTANCE;
     }
 
-    private UnirestInstance initClient() {
+    /**
+     * Creates a pooled keep-alive http client that is shared by all Zebrunner requests (including multipart uploads),
+     * so that parallel test threads reuse already established TCP connections and TLS sessions
+     * instead of paying a fresh handshake per request.
+     *
+     * @return pooled http client
+     */
+    private CloseableHttpClient initHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(ConfigurationHolder.getClientMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(ConfigurationHolder.getClientMaxConnectionsPerRoute());
+        // connections closed by Zebrunner (or by a proxy in between) while lying in the pool must not be leased
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        return HttpClients.custom()
+                          .setConnectionManager(connectionManager)
+                          .evictExpiredConnections()
+                          .evictIdleConnections(ConfigurationHolder.getClientIdleConnectionTimeout(), TimeUnit.SECONDS)
+                          // connection state is only needed for NTLM and TLS client certificates. without it
+                          // a TLS connection leased by one test thread can be reused by any other one
+                          .disableConnectionState()
+                          // retries are handled by RetryPolicy
+                          .disableAutomaticRetries()
+                          .build();
+    }
+
+    private UnirestInstance initClient(CloseableHttpClient httpClient) {
         Config config = new Config();
-        config.addDefaultHeader(HeaderNames.CONNECTION, "close");
+        config.httpClient(new ApacheClient(httpClient, config));
         config.addDefaultHeader(HeaderNames.CONTENT_TYPE, MimeTypes.JSON);
         config.addDefaultHeader(HeaderNames.ACCEPT, MimeTypes.JSON);
         config.setObjectMapper(new ObjectMapperImpl());
+        UnirestApiClientInstrumentation.instrument(config);
+        return new UnirestInstance(config);
+    }
+
+    /**
+     * Multipart requests must not carry the default json content type header, so they are sent
+     * by a separate {@link UnirestInstance} which shares the connection pool with the main one.
+     *
+     * @param httpClient pooled http client
+     * @return unirest instance meant for artifact uploads
+     */
+    private UnirestInstance initUploadClient(CloseableHttpClient httpClient) {
+        Config config = new Config();
+        config.httpClient(new ApacheClient(httpClient, config));
+        config.setObjectMapper(new ObjectMapperImpl());
+        UnirestApiClientInstrumentation.instrument(config);
         return new UnirestInstance(config);
     }
 
@@ -83,6 +135,10 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
         return response.getBody();
     }
 
+    String getAuthToken() {
+        return authToken;
+    }
+
     private String reportingAPI(String endpointPath) {
         return String.format("%s/api/reporting%s", apiHost, endpointPath);
     }
@@ -95,63 +151,83 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
     }
 
     private void throwServerException(String message, HttpResponse<?> response) {
-        throw new ServerException(this.formatError(message, response));
+        throw new ServerException(
+                this.formatError(message, response),
+                response.getStatus(),
+                RetryPolicy.parseRetryAfter(response.getHeaders().getFirst(HeaderNames.RETRY_AFTER))
+        );
+    }
+
+    private <T> T sendRequest(CallPriority priority, Function<UnirestInstance, HttpResponse<T>> requestExecutor) {
+        return this.sendRequest(priority, requestExecutor, true);
+    }
+
+    /**
+     * Sends the request creating an entity on Zebrunner, so it is retried only if it certainly was not processed.
+     */
+    private <T> T sendCreationRequest(CallPriority priority, Function<UnirestInstance, HttpResponse<T>> requestExecutor) {
+        return this.sendRequest(priority, requestExecutor, false);
     }
 
-    private <T> T sendRequest(Function<UnirestInstance, HttpResponse<T>> requestExecutor) {
+    private <T> T sendRequest(CallPriority priority, Function<UnirestInstance, HttpResponse<T>> requestExecutor, boolean idempotent) {
+        // the client may be nulled out by a failed attempt, so all the attempts are performed with the same instance
+        UnirestInstance client = this.client;
         if (client != null) {
-            return RetryUtils.tryInvoke(
-                    () -> requestExecutor.apply(client).getBody(),
-                    this::isVolatileRecoverableException,
-                    3
+            return RetryPolicy.getInstance().execute(
+                    priority, () -> requestExecutor.apply(client).getBody(), RetryPolicy.MAX_ATTEMPTS, idempotent
             );
         }
         return null;
     }
 
-    private void sendVoidRequest(Consumer<UnirestInstance> requestExecutor) {
+    private void sendVoidRequest(CallPriority priority, Consumer<UnirestInstance> requestExecutor) {
+        this.sendVoidRequest(priority, requestExecutor, RetryPolicy.MAX_ATTEMPTS);
+    }
+
+    private void sendVoidRequest(CallPriority priority, Consumer<UnirestInstance> requestExecutor, int maxAttempts) {
+        UnirestInstance client = this.client;
         if (client != null) {
-            RetryUtils.tryInvoke(
-                    () -> requestExecutor.accept(client),
-                    this::isVolatileRecoverableException,
-                    3
-            );
+            RetryPolicy.getInstance().execute(priority, () -> {
+                requestExecutor.accept(client);
+                return null;
+            }, maxAttempts);
         }
     }
 
-    private boolean isVolatileRecoverableException(Throwable e) {
-        do {
-            String message = e.getMessage();
-            message = message != null
-                    ? message.toLowerCase()
-                    : "";
-            if (message.contains("connection reset") || message.contains("unable to find valid certification path")) {
-                return true;
-            }
-            e = e.getCause();
-        } while (e != null && e != e.getCause());
+    /**
+     * Sends the request and logs its rejection instead of rethrowing it.
+     */
+    private void sendQuietRequest(CallPriority priority, Consumer<UnirestInstance> requestExecutor) {
+        this.sendQuietRequest(priority, requestExecutor, RetryPolicy.MAX_ATTEMPTS);
+    }
 
-        return false;
+    private void sendQuietRequest(CallPriority priority, Consumer<UnirestInstance> requestExecutor, int maxAttempts) {
+        try {
+            this.sendVoidRequest(priority, requestExecutor, maxAttempts);
+        } catch (ServerException e) {
+            log.error(e.getMessage());
+        }
     }
 
     @Override
     public TestRunDTO registerTestRunStart(TestRunDTO testRun) {
-        return this.sendRequest(client ->
-                client.post(reportingAPI("/v1/test-runs"))
-                      .body(testRun)
-                      .queryString("projectKey", ConfigurationHolder.getProjectKey())
-                      .asObject(TestRunDTO.class)
-                      .ifFailure(response -> {
-                          // null out the api client since we cannot use it anymore
-                          this.client = null;
-                          this.throwServerException("Could not register start of the test run.", response);
-                      })
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs"))
+                              .queryString("projectKey", ConfigurationHolder.getProjectKey()),
+                        testRun
+                ).asObject(TestRunDTO.class)
+                 .ifFailure(response -> {
+                     // null out the api client since we cannot use it anymore
+                     this.client = null;
+                     this.throwServerException("Could not register start of the test run.", response);
+                 })
         );
     }
 
     @Override
     public void patchTestRunBuild(Long testRunId, String build) {
-        this.sendVoidRequest(client ->
+        this.sendVoidRequest(CallPriority.METADATA, client ->
                 client.jsonPatch(reportingAPI("/v1/test-runs/{testRunId}"))
                       .routeParam("testRunId", testRunId.toString())
                       .replace("/config/build", build)
@@ -162,7 +238,7 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
 
     @Override
     public void setTestRunPlatform(Long testRunId, String platformName, String platformVersion) {
-        this.sendVoidRequest(client ->
+        this.sendVoidRequest(CallPriority.METADATA, client ->
                 client.put(reportingAPI("/v1/test-runs/{testRunId}/platform"))
                       .routeParam("testRunId", testRunId.toString())
                       .body(new TestRunPlatform(platformName, platformVersion))
@@ -173,56 +249,60 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
 
     @Override
     public void registerTestRunFinish(TestRunDTO testRun) {
-        this.sendVoidRequest(client ->
-                client.put(reportingAPI("/v1/test-runs/{testRunId}"))
-                      .body(testRun)
-                      .routeParam("testRunId", testRun.getId().toString())
-                      .asString()
-                      .ifFailure(response -> this.throwServerException("Could not register finish of the test run.", response))
+        this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}"))
+                              .routeParam("testRunId", testRun.getId().toString()),
+                        testRun
+                ).asString()
+                 .ifFailure(response -> this.throwServerException("Could not register finish of the test run.", response))
         );
     }
 
     @Override
     public TestDTO registerTestStart(Long testRunId, TestDTO test, boolean headless) {
-        return this.sendRequest(client ->
-                client.post(reportingAPI("/v1/test-runs/{testRunId}/tests"))
-                      .body(test)
-                      .routeParam("testRunId", testRunId.toString())
-                      .queryString("headless", headless)
-                      .asObject(TestDTO.class)
-                      .ifFailure(response -> this.throwServerException("Could not register start of the test.", response))
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/tests"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .queryString("headless", headless),
+                        test
+                ).asObject(TestDTO.class)
+                 .ifFailure(response -> this.throwServerException("Could not register start of the test.", response))
         );
     }
 
     @Override
     public TestDTO registerTestRerunStart(Long testRunId, Long testId, TestDTO test, boolean headless) {
-        return this.sendRequest(client ->
-                client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
-                      .body(test)
-                      .routeParam("testRunId", testRunId.toString())
-                      .routeParam("testId", testId.toString())
-                      .queryString("headless", headless)
-                      .asObject(TestDTO.class)
-                      .ifFailure(response -> this.throwServerException("Could not register start of rerun of the test.", response))
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testId", testId.toString())
+                              .queryString("headless", headless),
+                        test
+                ).asObject(TestDTO.class)
+                 .ifFailure(response -> this.throwServerException("Could not register start of rerun of the test.", response))
         );
     }
 
     @Override
     public TestDTO registerHeadlessTestUpdate(Long testRunId, TestDTO test) {
-        return this.sendRequest(client ->
-                client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
-                      .routeParam("testRunId", testRunId.toString())
-                      .routeParam("testId", test.getId().toString())
-                      .queryString("headless", true)
-                      .body(test)
-                      .asObject(TestDTO.class)
-                      .ifFailure(response -> this.throwServerException("Could not register start of the test.", response))
+        return this.sendRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testId", test.getId().toString())
+                              .queryString("headless", true),
+                        test
+                ).asObject(TestDTO.class)
+                 .ifFailure(response -> this.throwServerException("Could not register start of the test.", response))
         );
     }
 
     @Override
     public void revertTestRegistration(Long testRunId, Long testId) {
-        this.sendVoidRequest(client ->
+        this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
                 client.delete(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
                       .routeParam("testRunId", testRunId.toString())
                       .routeParam("testId", testId.toString())
@@ -233,31 +313,33 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
 
     @Override
     public void registerTestFinish(Long testRunId, TestDTO test) {
-        this.sendVoidRequest(client ->
-                client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
-                      .routeParam("testRunId", testRunId.toString())
-                      .routeParam("testId", test.getId().toString())
-                      .queryString("headless", false)
-                      .body(test)
-                      .asString()
-                      .ifFailure(response -> this.throwServerException("Could not register finish of the test.", response))
+        this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testId", test.getId().toString())
+                              .queryString("headless", false),
+                        test
+                ).asString()
+                 .ifFailure(response -> this.throwServerException("Could not register finish of the test.", response))
         );
     }
 
     @Override
     public void sendLogs(Collection<Log> logs, Long testRunId) {
-        this.sendVoidRequest(client ->
-                client.post(reportingAPI("/v1/test-runs/{testRunId}/logs"))
-                      .routeParam("testRunId", testRunId.toString())
-                      .body(logs)
-                      .asString()
-                      .ifFailure(response -> log.error(this.formatError("Could not send a batch of test logs.", response)))
+        this.sendQuietRequest(CallPriority.LOGS, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/logs"))
+                              .routeParam("testRunId", testRunId.toString()),
+                        logs
+                ).asString()
+                 .ifFailure(response -> this.throwServerException("Could not send a batch of test logs.", response))
         );
     }
 
     @Override
     public void upsertTestCaseResults(Long testRunId, Long testId, Collection<TestCaseResult> testCaseResults) {
-        this.sendVoidRequest(client ->
+        this.sendQuietRequest(CallPriority.METADATA, client ->
                 client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/test-cases:upsert"))
                       .routeParam("testRunId", testRunId.toString())
                       .routeParam("testId", testId.toString())
@@ -267,7 +349,7 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
                           if (response.getStatus() == 404) {
                               log.warn("This functionality is not available for your Zebrunner distribution");
                           } else {
-                              log.error(this.formatError("Could not send test case results.", response));
+                              this.throwServerException("Could not send test case results.", response);
                           }
                       })
         );
@@ -275,7 +357,7 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
 
     @Override
     public void uploadScreenshot(byte[] screenshot, Long testRunId, Long testId, Long capturedAt) {
-        this.sendVoidRequest(client ->
+        this.sendQuietRequest(CallPriority.BULK, client ->
                 client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/screenshots"))
                       .headerReplace("Content-Type", ContentType.IMAGE_PNG.getMimeType())
                       .routeParam("testRunId", testRunId.toString())
@@ -283,32 +365,34 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
                       .header("x-zbr-screenshot-captured-at", capturedAt.toString())
                       .body(screenshot)
                       .asString()
-                      .ifFailure(response -> log.error(this.formatError("Could not upload a screenshot.", response)))
+                      .ifFailure(response -> this.throwServerException("Could not upload a screenshot.", response))
         );
     }
 
     @Override
     public void uploadTestRunArtifact(InputStream artifact, String name, Long testRunId) {
-        this.sendVoidRequest(client ->
-                Unirest.post(reportingAPI("/v1/test-runs/{testRunId}/artifacts"))
-                       .header(HeaderNames.AUTHORIZATION, authToken)
-                       .routeParam("testRunId", testRunId.toString())
-                       .field("file", artifact, name)
-                       .asString()
-                       .ifFailure(response -> log.error(this.formatError("Could not attach test run artifact with name " + name, response)))
+        // artifact stream cannot be read twice, so the upload is never retried
+        this.sendQuietRequest(CallPriority.BULK, client ->
+                uploadClient.post(reportingAPI("/v1/test-runs/{testRunId}/artifacts"))
+                            .routeParam("testRunId", testRunId.toString())
+                            .field("file", artifact, name)
+                            .asString()
+                            .ifFailure(response -> this.throwServerException("Could not attach test run artifact with name " + name, response)),
+                1
         );
     }
 
     @Override
     public void uploadTestArtifact(InputStream artifact, String name, Long testRunId, Long testId) {
-        this.sendVoidRequest(client ->
-                Unirest.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/artifacts"))
-                       .header(HeaderNames.AUTHORIZATION, authToken)
-                       .routeParam("testRunId", testRunId.toString())
-                       .routeParam("testId", testId.toString())
-                       .field("file", artifact, name)
-                       .asString()
-                       .ifFailure(response -> log.error(this.formatError("Could not attach test artifact with name " + name, response)))
+        // artifact stream cannot be read twice, so the upload is never retried
+        this.sendQuietRequest(CallPriority.BULK, client ->
+                uploadClient.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/artifacts"))
+                            .routeParam("testRunId", testRunId.toString())
+                            .routeParam("testId", testId.toString())
+                            .field("file", artifact, name)
+                            .asString()
+                            .ifFailure(response -> this.throwServerException("Could not attach test artifact with name " + name, response)),
+                1
         );
     }
 
@@ -317,59 +401,59 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
         Map<String, List<ArtifactReferenceDTO>> requestBody = Collections.singletonMap(
                 "items", Collections.singletonList(artifactReference)
         );
-        this.sendVoidRequest(client ->
+        this.sendQuietRequest(CallPriority.METADATA, client ->
                 client.put(reportingAPI("/v1/test-runs/{testRunId}/artifact-references"))
                       .routeParam("testRunId", testRunId.toString())
                       .body(requestBody)
                       .asString()
-                      .ifFailure(response -> log.error(this.formatError(
+                      .ifFailure(response -> this.throwServerException(
                               "Could not attach the following test run artifact reference: " + artifactReference,
                               response
-                      )))
+                      ))
         );
     }
 
     @Override
     public void attachArtifactReferenceToTest(Long testRunId, Long testId, ArtifactReferenceDTO artifactReference) {
-        this.sendVoidRequest(client ->
+        this.sendQuietRequest(CallPriority.METADATA, client ->
                 client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/artifact-references"))
                       .routeParam("testRunId", testRunId.toString())
                       .routeParam("testId", testId.toString())
                       .body(Collections.singletonMap("items", Collections.singletonList(artifactReference)))
                       .asString()
-                      .ifFailure(response -> log.error(this.formatError(
+                      .ifFailure(response -> this.throwServerException(
                               "Could not attach the following test artifact reference: " + artifactReference,
                               response
-                      )))
+                      ))
         );
     }
 
     @Override
     public void attachLabelsToTestRun(Long testRunId, Collection<LabelDTO> labels) {
-        this.sendVoidRequest(client ->
+        this.sendQuietRequest(CallPriority.METADATA, client ->
                 client.put(reportingAPI("/v1/test-runs/{testRunId}/labels"))
                       .routeParam("testRunId", testRunId.toString())
                       .body(Collections.singletonMap("items", labels))
                       .asString()
-                      .ifFailure(response -> log.error(this.formatError("Could not attach the following labels to test run: " + labels, response)))
+                      .ifFailure(response -> this.throwServerException("Could not attach the following labels to test run: " + labels, response))
         );
     }
 
     @Override
     public void attachLabelsToTest(Long testRunId, Long testId, Collection<LabelDTO> labels) {
-        this.sendVoidRequest(client ->
+        this.sendQuietRequest(CallPriority.METADATA, client ->
                 client.put(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/labels"))
                       .routeParam("testRunId", testRunId.toString())
                       .routeParam("testId", testId.toString())
                       .body(Collections.singletonMap("items", labels))
                       .asString()
-                      .ifFailure(response -> log.error(this.formatError("Could not attach the following labels to test: " + labels, response)))
+                      .ifFailure(response -> this.throwServerException("Could not attach the following labels to test: " + labels, response))
         );
     }
 
     @Override
     public ExchangeRunContextResponse exchangeRerunCondition(String rerunCondition) {
-        return this.sendRequest(client ->
+        return this.sendRequest(CallPriority.LIFECYCLE, client ->
                 client.post(reportingAPI("/v1/run-context-exchanges"))
                       .body(rerunCondition)
                       .asObject(ExchangeRunContextResponse.class)
@@ -379,30 +463,32 @@ class UnirestZebrunnerApiClient implements ZebrunnerApiClient {
 
     @Override
     public TestSessionDTO startSession(Long testRunId, TestSessionDTO testSession) {
-        return this.sendRequest(client ->
-                client.post(reportingAPI("/v1/test-runs/{testRunId}/test-sessions"))
-                      .routeParam("testRunId", testRunId.toString())
-                      .body(testSession)
-                      .asObject(TestSessionDTO.class)
-                      .ifFailure(response -> this.throwServerException("Could not register start of the test session.", response))
+        return this.sendCreationRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.post(reportingAPI("/v1/test-runs/{testRunId}/test-sessions"))
+                              .routeParam("testRunId", testRunId.toString()),
+                        testSession
+                ).asObject(TestSessionDTO.class)
+                 .ifFailure(response -> this.throwServerException("Could not register start of the test session.", response))
         );
     }
 
     @Override
     public void updateSession(Long testRunId, TestSessionDTO testSession) {
-        this.sendVoidRequest(client ->
-                client.put(reportingAPI("/v1/test-runs/{testRunId}/test-sessions/{testSessionId}"))
-                      .routeParam("testRunId", testRunId.toString())
-                      .routeParam("testSessionId", testSession.getId().toString())
-                      .body(testSession)
-                      .asString()
-                      .ifFailure(response -> this.throwServerException("Could not update test session.", response))
+        this.sendVoidRequest(CallPriority.LIFECYCLE, client ->
+                JsonRequestBodies.body(
+                        client.put(reportingAPI("/v1/test-runs/{testRunId}/test-sessions/{testSessionId}"))
+                              .routeParam("testRunId", testRunId.toString())
+                              .routeParam("testSessionId", testSession.getId().toString()),
+                        testSession
+                ).asString()
+                 .ifFailure(response -> this.throwServerException("Could not update test session.", response))
         );
     }
 
     @Override
     public boolean isKnownIssueAttachedToTest(Long testRunId, Long testId, String failureStacktrace) {
-        KnownIssueConfirmation confirmation = this.sendRequest(client ->
+        KnownIssueConfirmation confirmation = this.sendRequest(CallPriority.METADATA, client ->
                 client.post(reportingAPI("/v1/test-runs/{testRunId}/tests/{testId}/known-issue-confirmations"))
                       .routeParam("testRunId", testRunId.toString())
                       .routeParam("testId", testId.toString())
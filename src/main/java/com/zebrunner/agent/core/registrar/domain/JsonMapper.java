@@ -0,0 +1,84 @@
+package com.zebrunner.agent.core.registrar.domain;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/**
+ * Json (de)serialization of Zebrunner API objects. Unlike {@link ObjectMapperImpl}, it does not depend on Unirest,
+ * so it can be used regardless of http transport the agent talks to Zebrunner with.
+ */
+public final class JsonMapper {
+
+    private final Gson gson;
+
+    public JsonMapper() {
+        gson = new GsonBuilder()
+                .registerTypeAdapter(Instant.class, instantSerializer())
+                .registerTypeAdapter(Instant.class, instantDeserializer())
+                .registerTypeAdapter(OffsetDateTime.class, offsetDateTimeSerializer())
+                .registerTypeAdapter(OffsetDateTime.class, offsetDateTimeDeserializer())
+                .create();
+    }
+
+    private JsonSerializer<Instant> instantSerializer() {
+        return (src, typeOfSrc, context) -> context.serialize(src.toString());
+    }
+
+    private JsonDeserializer<Instant> instantDeserializer() {
+        return (json, typeOfT, context) -> Instant.parse(json.getAsString());
+    }
+
+    private JsonSerializer<OffsetDateTime> offsetDateTimeSerializer() {
+        return (src, typeOfSrc, context) -> context.serialize(src.toString());
+    }
+
+    private JsonDeserializer<OffsetDateTime> offsetDateTimeDeserializer() {
+        return (json, typeOfT, context) -> OffsetDateTime.parse(json.getAsString());
+    }
+
+    public <T> T readValue(String value, Class<T> valueType) {
+        return gson.fromJson(value, valueType);
+    }
+
+    public <T> T readValue(String value, Type valueType) {
+        return gson.fromJson(value, valueType);
+    }
+
+    public <T> T readValue(Reader reader, Type valueType) {
+        return gson.fromJson(reader, valueType);
+    }
+
+    public String writeValue(Object value) {
+        return gson.toJson(value);
+    }
+
+    /**
+     * Creates a json writer configured the same way as the writer used by {@link #writeValue(Object)}.
+     */
+    public JsonWriter newJsonWriter(Writer writer) throws IOException {
+        return gson.newJsonWriter(writer);
+    }
+
+    /**
+     * Writes the value to the json writer, so it can be serialized straight into a stream
+     * without materializing the whole json string.
+     */
+    public void writeValue(Object value, JsonWriter writer) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.zebrunner.agent.core.transport;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Http layer the agent talks to Zebrunner through. A transport only exchanges raw requests and responses:
+ * authentication, serialization, retries and metrics are handled by the agent on top of it.
+ * <p>Implementations must be thread-safe and must not block the calling thread while waiting for a response.
+ *
+ * @see HttpTransportProvider
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends the request asynchronously.
+     *
+     * @param request request to send
+     * @return future completed with the response of any status, or completed exceptionally
+     * if the request could not be performed (e.g. because of a network issue)
+     */
+    CompletableFuture<TransportResponse> send(TransportRequest request);
+
+}
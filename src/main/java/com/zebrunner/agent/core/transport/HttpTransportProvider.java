@@ -0,0 +1,40 @@
+package com.zebrunner.agent.core.transport;
+
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider of {@link HttpTransport}. Providers are discovered via {@link ServiceLoader},
+ * so a custom transport can be plugged in by listing its provider
+ * in 'META-INF/services/com.zebrunner.agent.core.transport.HttpTransportProvider'.
+ * The transport to be used is selected by name with 'reporting.client.transport' configuration property.
+ */
+public interface HttpTransportProvider {
+
+    /**
+     * @return unique name of the transport, e.g. 'jdk'
+     */
+    String getName();
+
+    /**
+     * @return true if the transport can be used in the current environment (e.g. all its dependencies are present)
+     */
+    boolean isAvailable();
+
+    HttpTransport create();
+
+    /**
+     * @param name name of the transport
+     * @return available provider with the given name
+     */
+    static Optional<HttpTransportProvider> find(String name) {
+        ClassLoader classLoader = HttpTransportProvider.class.getClassLoader();
+        for (HttpTransportProvider provider : ServiceLoader.load(HttpTransportProvider.class, classLoader)) {
+            if (provider.getName().equalsIgnoreCase(name) && provider.isAvailable()) {
+                return Optional.of(provider);
+            }
+        }
+        return Optional.empty();
+    }
+
+}
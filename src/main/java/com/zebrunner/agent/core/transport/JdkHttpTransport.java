@@ -0,0 +1,48 @@
+package com.zebrunner.agent.core.transport;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link HttpTransport} built on {@link HttpClient}. HTTP/2 is preferred, so over TLS all the concurrent requests
+ * are multiplexed over a single connection instead of occupying a connection per request.
+ * If Zebrunner (or a proxy in between) does not support HTTP/2, the client falls back to HTTP/1.1 keep-alive connections.
+ */
+class JdkHttpTransport implements HttpTransport {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client = HttpClient.newBuilder()
+                                                .version(HttpClient.Version.HTTP_2)
+                                                .connectTimeout(CONNECT_TIMEOUT)
+                                                .followRedirects(HttpClient.Redirect.NORMAL)
+                                                .build();
+
+    @Override
+    public CompletableFuture<TransportResponse> send(TransportRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri())
+                                                 .timeout(REQUEST_TIMEOUT)
+                                                 .method(request.getMethod(), this.toBodyPublisher(request));
+        request.getHeaders().forEach(builder::header);
+
+        return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray())
+                     .thenApply(response -> new TransportResponse(
+                             response.statusCode(), response.headers().map(), response.body()
+                     ));
+    }
+
+    private HttpRequest.BodyPublisher toBodyPublisher(TransportRequest request) {
+        if (request.getBody() == null || request.getContentLength() == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(request::getBody);
+        return request.getContentLength() > 0
+                ? HttpRequest.BodyPublishers.fromPublisher(publisher, request.getContentLength())
+                : publisher;
+    }
+
+}
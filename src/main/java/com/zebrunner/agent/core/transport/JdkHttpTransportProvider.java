@@ -0,0 +1,25 @@
+package com.zebrunner.agent.core.transport;
+
+/**
+ * Provides {@link HttpTransport} built on {@link java.net.http.HttpClient}, which requires no third-party dependencies.
+ */
+public class JdkHttpTransportProvider implements HttpTransportProvider {
+
+    public static final String NAME = "jdk";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public HttpTransport create() {
+        return new JdkHttpTransport();
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.zebrunner.agent.core.transport;
+
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+
+@Value
+@Builder
+public class TransportRequest {
+
+    String method;
+    URI uri;
+    @Singular
+    Map<String, String> headers;
+    /**
+     * Content of the body, or null if the request has no body. The stream can be read only once
+     */
+    InputStream body;
+    /**
+     * Length of the body in bytes, or -1 if it is not known upfront
+     */
+    @Builder.Default
+    long contentLength = -1;
+
+}
@@ -0,0 +1,32 @@
+package com.zebrunner.agent.core.transport;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+@Value
+public class TransportResponse {
+
+    int status;
+    Map<String, List<String>> headers;
+    byte[] body;
+
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * @param name case-insensitive name of the header
+     * @return first value of the header, or null if the response does not contain such header
+     */
+    public String getHeader(String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+}
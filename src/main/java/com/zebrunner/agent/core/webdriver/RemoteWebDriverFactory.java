@@ -1,8 +1,7 @@
 package com.zebrunner.agent.core.webdriver;
 
-import com.zebrunner.agent.core.registrar.domain.ObjectMapperImpl;
-import kong.unirest.GenericType;
-import kong.unirest.ObjectMapper;
+import com.google.gson.reflect.TypeToken;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
@@ -10,6 +9,7 @@ import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
+import java.lang.reflect.Type;
 import java.net.URL;
 import java.util.Map;
 import java.util.Optional;
@@ -17,9 +17,9 @@ import java.util.Optional;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class RemoteWebDriverFactory {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapperImpl();
-    private static final GenericType<Map<String, String>> CAPABILITIES_TYPE = new GenericType<Map<String, String>>() {
-    };
+    private static final JsonMapper JSON_MAPPER = new JsonMapper();
+    private static final Type CAPABILITIES_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
 
     @SneakyThrows
     public static URL getSeleniumHubUrl() {
@@ -37,7 +37,7 @@ public class RemoteWebDriverFactory {
 
         Capabilities desiredCapabilities = new DesiredCapabilities();
         if (capabilities != null) {
-            Map<String, String> capabilitiesMap = OBJECT_MAPPER.readValue(capabilities, CAPABILITIES_TYPE);
+            Map<String, String> capabilitiesMap = JSON_MAPPER.readValue(capabilities, CAPABILITIES_TYPE);
             desiredCapabilities = new DesiredCapabilities(capabilitiesMap);
         }
 
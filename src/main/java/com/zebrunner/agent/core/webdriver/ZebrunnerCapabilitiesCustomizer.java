@@ -3,13 +3,13 @@ package com.zebrunner.agent.core.webdriver;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
-import com.zebrunner.agent.core.registrar.domain.ObjectMapperImpl;
-import kong.unirest.GenericType;
-import kong.unirest.ObjectMapper;
+import com.google.gson.reflect.TypeToken;
+import com.zebrunner.agent.core.registrar.domain.JsonMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
+import java.lang.reflect.Type;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -17,9 +17,9 @@ import java.util.Set;
 @Slf4j
 public class ZebrunnerCapabilitiesCustomizer implements CapabilitiesCustomizer {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapperImpl();
-    private static final GenericType<Map<String, ?>> CAPABILITIES_TYPE = new GenericType<>() {
-    };
+    private static final JsonMapper JSON_MAPPER = new JsonMapper();
+    private static final Type CAPABILITIES_TYPE = new TypeToken<Map<String, ?>>() {
+    }.getType();
 
     @Override
     public Capabilities customize(Capabilities originalCapabilities) {
@@ -30,7 +30,7 @@ public class ZebrunnerCapabilitiesCustomizer implements CapabilitiesCustomizer {
 
         JsonObject capabilities;
         try {
-            capabilities = OBJECT_MAPPER.readValue(serializedCapabilities, JsonObject.class);
+            capabilities = JSON_MAPPER.readValue(serializedCapabilities, JsonObject.class);
         } catch (JsonSyntaxException e) {
             log.warn("'ZEBRUNNER_CAPABILITIES' must have json object format. Skipping customization...");
             return originalCapabilities;
@@ -64,7 +64,7 @@ public class ZebrunnerCapabilitiesCustomizer implements CapabilitiesCustomizer {
         }
 
         serializedCapabilities = capabilities.toString();
-        Map<String, ?> capabilitiesMap = OBJECT_MAPPER.readValue(serializedCapabilities, CAPABILITIES_TYPE);
+        Map<String, ?> capabilitiesMap = JSON_MAPPER.readValue(serializedCapabilities, CAPABILITIES_TYPE);
 
         return originalCapabilities.merge(new DesiredCapabilities(capabilitiesMap));
     }
@@ -0,0 +1,517 @@
+package com.zebrunner.agent.core.stub;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embedded stub of Zebrunner, meant for performance and resilience testing of the agent without a real instance.
+ * <p>The stub implements the authentication endpoint and all the reporting endpoints used by the agent,
+ * accepting any request body and responding with plausible content (e.g. registered tests get unique ids).
+ * Requests to reporting endpoints can be delayed, throttled with 429 status and 'Retry-After' header,
+ * or failed with 500 status. Fault injection settings can be changed while the server is running.
+ * <p>Every request is accounted per endpoint, so a benchmark can verify how many requests, bytes and
+ * items (elements of json array bodies, e.g. logs) actually reached the server.
+ * <p>To report to the stub, point 'reporting.server.hostname' to {@link #getUrl()}.
+ * The stub can also be started as a standalone process: {@code ZebrunnerStubServer [port] [latencyMillis] [errorRate] [throttleRate]}.
+ */
+@Slf4j
+public class ZebrunnerStubServer implements AutoCloseable {
+
+    private static final String REPORTING_API_PREFIX = "/api/reporting";
+    private static final String UNMATCHED_ENDPOINT = "UNMATCHED";
+    private static final int DEFAULT_THREADS = 16;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, EndpointCounters> counters = new ConcurrentHashMap<>();
+
+    private final AtomicLong testRunIds = new AtomicLong();
+    private final AtomicLong testIds = new AtomicLong();
+    private final AtomicLong testSessionIds = new AtomicLong();
+
+    /**
+     * Fixed delay of every reporting request
+     */
+    @Getter
+    @Setter
+    private volatile Duration latency;
+    /**
+     * Max random delay added to {@link #latency}
+     */
+    @Getter
+    @Setter
+    private volatile Duration latencyJitter;
+    /**
+     * Probability (0..1) of a reporting request to fail with 500 status
+     */
+    @Getter
+    @Setter
+    private volatile double errorRate;
+    /**
+     * Probability (0..1) of a reporting request to be rejected with 429 status
+     */
+    @Getter
+    @Setter
+    private volatile double throttleRate;
+    /**
+     * Value of 'Retry-After' header of throttled requests
+     */
+    @Getter
+    @Setter
+    private volatile Duration retryAfter;
+
+    @Builder
+    private ZebrunnerStubServer(Integer port,
+                                Integer threads,
+                                Duration latency,
+                                Duration latencyJitter,
+                                double errorRate,
+                                double throttleRate,
+                                Duration retryAfter) throws IOException {
+        this.latency = latency != null ? latency : Duration.ZERO;
+        this.latencyJitter = latencyJitter != null ? latencyJitter : Duration.ZERO;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.retryAfter = retryAfter != null ? retryAfter : Duration.ofSeconds(1);
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port != null ? port : 0), 0);
+        this.executor = Executors.newFixedThreadPool(threads != null ? threads : DEFAULT_THREADS, new StubThreadFactory());
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.registerRoutes();
+    }
+
+    public static void main(String[] args) throws IOException {
+        ZebrunnerStubServer server = ZebrunnerStubServer.builder()
+                                                        .port(args.length > 0 ? Integer.parseInt(args[0]) : 8080)
+                                                        .latency(Duration.ofMillis(args.length > 1 ? Long.parseLong(args[1]) : 0))
+                                                        .errorRate(args.length > 2 ? Double.parseDouble(args[2]) : 0)
+                                                        .throttleRate(args.length > 3 ? Double.parseDouble(args[3]) : 0)
+                                                        .build();
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(server.getSummary());
+            server.stop();
+        }));
+        System.out.println("Zebrunner stub server is listening on " + server.getUrl());
+    }
+
+    public ZebrunnerStubServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        this.stop();
+    }
+
+    /**
+     * @return base url of the server, e.g. 'http://localhost:54321'
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // routes
+
+    private void registerRoutes() {
+        this.route("POST", "/api/iam/v1/auth/refresh", (request, params) -> {
+            JsonObject authData = new JsonObject();
+            authData.addProperty("authTokenType", "Bearer");
+            authData.addProperty("authToken", "stub-token");
+            authData.addProperty("authTokenExpirationInSecs", 3600);
+            return Response.json(200, authData);
+        });
+
+        this.route("POST", "/api/reporting/v1/test-runs",
+                (request, params) -> Response.json(200, withId(request, testRunIds.incrementAndGet())));
+        this.route("PATCH", "/api/reporting/v1/test-runs/{testRunId}", (request, params) -> Response.empty(200));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/platform", (request, params) -> Response.empty(200));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}",
+                (request, params) -> Response.json(200, withId(request, Long.parseLong(params.get("testRunId")))));
+
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/tests",
+                (request, params) -> Response.json(200, withId(request, testIds.incrementAndGet())));
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}",
+                (request, params) -> Response.json(200, withId(request, Long.parseLong(params.get("testId")))));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}",
+                (request, params) -> Response.json(200, withId(request, Long.parseLong(params.get("testId")))));
+        this.route("DELETE", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}", (request, params) -> Response.empty(200));
+
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/logs", (request, params) -> Response.empty(202));
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}/test-cases:upsert",
+                (request, params) -> Response.empty(200));
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}/screenshots",
+                (request, params) -> Response.empty(201));
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/artifacts", (request, params) -> Response.empty(201));
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}/artifacts",
+                (request, params) -> Response.empty(201));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/artifact-references", (request, params) -> Response.empty(204));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}/artifact-references",
+                (request, params) -> Response.empty(204));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/labels", (request, params) -> Response.empty(204));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}/labels", (request, params) -> Response.empty(204));
+
+        this.route("POST", "/api/reporting/v1/run-context-exchanges", (request, params) -> {
+            JsonObject runContext = new JsonObject();
+            runContext.addProperty("runExists", false);
+            runContext.addProperty("rerunOnlyFailedTests", false);
+            return Response.json(200, runContext);
+        });
+
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/test-sessions",
+                (request, params) -> Response.json(200, withId(request, testSessionIds.incrementAndGet())));
+        this.route("PUT", "/api/reporting/v1/test-runs/{testRunId}/test-sessions/{testSessionId}",
+                (request, params) -> Response.json(200, withId(request, Long.parseLong(params.get("testSessionId")))));
+
+        this.route("POST", "/api/reporting/v1/test-runs/{testRunId}/tests/{testId}/known-issue-confirmations", (request, params) -> {
+            JsonObject confirmation = new JsonObject();
+            confirmation.addProperty("knownIssue", false);
+            return Response.json(200, confirmation);
+        });
+    }
+
+    private void route(String method, String template, Handler handler) {
+        routes.add(new Route(method, template, handler));
+    }
+
+    private static JsonElement withId(JsonElement request, long id) {
+        JsonObject response = request != null && request.isJsonObject() ? request.getAsJsonObject() : new JsonObject();
+        response.addProperty("id", id);
+        return response;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+
+        /**
+         * @param request json body of the request, or null if the body is absent or is not a json
+         * @param params  values of path template variables
+         */
+        Response handle(JsonElement request, Map<String, String> params);
+
+    }
+
+    private static final class Route {
+
+        private static final Pattern VARIABLE = Pattern.compile("\\{(\\w+)}");
+
+        private final String method;
+        private final String template;
+        private final Pattern pattern;
+        private final List<String> variables = new ArrayList<>();
+        private final Handler handler;
+
+        private Route(String method, String template, Handler handler) {
+            this.method = method;
+            this.template = template;
+            this.handler = handler;
+
+            StringBuilder regex = new StringBuilder();
+            Matcher matcher = VARIABLE.matcher(template);
+            int position = 0;
+            while (matcher.find()) {
+                regex.append(Pattern.quote(template.substring(position, matcher.start()))).append("([^/]+)");
+                variables.add(matcher.group(1));
+                position = matcher.end();
+            }
+            regex.append(Pattern.quote(template.substring(position)));
+            this.pattern = Pattern.compile(regex.toString());
+        }
+
+        private Map<String, String> match(String method, String path) {
+            if (!this.method.equals(method)) {
+                return null;
+            }
+            Matcher matcher = pattern.matcher(path);
+            if (!matcher.matches()) {
+                return null;
+            }
+            Map<String, String> params = new HashMap<>();
+            for (int i = 0; i < variables.size(); i++) {
+                params.put(variables.get(i), matcher.group(i + 1));
+            }
+            return params;
+        }
+
+    }
+
+    private static final class Response {
+
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        private static Response empty(int status) {
+            return new Response(status, null);
+        }
+
+        private static Response json(int status, JsonElement body) {
+            return new Response(status, body.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // request handling
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = readBody(exchange);
+
+            Route route = null;
+            Map<String, String> params = null;
+            for (Route candidate : routes) {
+                if ((params = candidate.match(method, path)) != null) {
+                    route = candidate;
+                    break;
+                }
+            }
+
+            EndpointCounters endpointCounters = counters.computeIfAbsent(
+                    route != null ? route.method + " " + route.template : UNMATCHED_ENDPOINT,
+                    endpoint -> new EndpointCounters()
+            );
+            endpointCounters.requests.increment();
+            endpointCounters.bytesReceived.add(body.length);
+
+            if (route == null) {
+                log.debug("Stub server received unexpected request: {} {}", method, path);
+                this.send(exchange, Response.empty(404));
+                return;
+            }
+
+            if (path.startsWith(REPORTING_API_PREFIX)) {
+                this.sleep();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if (random.nextDouble() < throttleRate) {
+                    endpointCounters.throttled.increment();
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfter.getSeconds()));
+                    this.send(exchange, Response.empty(429));
+                    return;
+                }
+                if (random.nextDouble() < errorRate) {
+                    endpointCounters.errors.increment();
+                    this.send(exchange, Response.empty(500));
+                    return;
+                }
+            }
+
+            JsonElement json = parseJson(exchange, body);
+            if (json != null && json.isJsonArray()) {
+                endpointCounters.items.add(json.getAsJsonArray().size());
+            }
+            this.send(exchange, route.handler.handle(json, params));
+        } catch (RuntimeException e) {
+            log.debug("Stub server could not handle request: {}", e.getMessage());
+            this.send(exchange, Response.empty(500));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = requestBody.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static JsonElement parseJson(HttpExchange exchange, byte[] body) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (body.length == 0 || contentType == null || !contentType.contains("json")) {
+            return null;
+        }
+        InputStream content = new ByteArrayInputStream(body);
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            content = new GZIPInputStream(content);
+        }
+        try (InputStreamReader reader = new InputStreamReader(content, StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void sleep() {
+        long delayMillis = latency.toMillis();
+        long jitterMillis = latencyJitter.toMillis();
+        if (jitterMillis > 0) {
+            delayMillis += ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+        }
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(HttpExchange exchange, Response response) throws IOException {
+        if (response.body == null) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(response.body);
+        }
+    }
+
+    private static final class StubThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "zebrunner-stub-server-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // accounting
+
+    private static final class EndpointCounters {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder items = new LongAdder();
+
+    }
+
+    /**
+     * Snapshot of requests received by a single endpoint
+     */
+    @Value
+    public static class EndpointStatistics {
+
+        long requests;
+        /**
+         * Requests failed with 500 status by fault injection
+         */
+        long errors;
+        /**
+         * Requests rejected with 429 status by fault injection
+         */
+        long throttled;
+        /**
+         * Bytes of request bodies as they were sent over the wire (i.e. compressed, if compression is enabled)
+         */
+        long bytesReceived;
+        /**
+         * Elements of accepted json array bodies, e.g. logs or test case results
+         */
+        long items;
+
+    }
+
+    /**
+     * @return statistics of received requests by endpoint (http method and path template)
+     */
+    public SortedMap<String, EndpointStatistics> getStatistics() {
+        SortedMap<String, EndpointStatistics> statistics = new TreeMap<>();
+        counters.forEach((endpoint, endpointCounters) -> statistics.put(endpoint, new EndpointStatistics(
+                endpointCounters.requests.sum(),
+                endpointCounters.errors.sum(),
+                endpointCounters.throttled.sum(),
+                endpointCounters.bytesReceived.sum(),
+                endpointCounters.items.sum()
+        )));
+        return statistics;
+    }
+
+    /**
+     * @param endpoint http method and path template, e.g. 'POST /api/reporting/v1/test-runs/{testRunId}/logs'
+     * @return statistics of the endpoint. If the endpoint has not been called yet, all the counters are zero
+     */
+    public EndpointStatistics getStatistics(String endpoint) {
+        return this.getStatistics().getOrDefault(endpoint, new EndpointStatistics(0, 0, 0, 0, 0));
+    }
+
+    public long getTotalRequests() {
+        return counters.values().stream().mapToLong(endpointCounters -> endpointCounters.requests.sum()).sum();
+    }
+
+    public void resetStatistics() {
+        counters.clear();
+    }
+
+    public String getSummary() {
+        String rowFormat = "%-90s %9s %9s %9s %12s %9s%n";
+        StringBuilder summary = new StringBuilder(String.format(
+                rowFormat, "Endpoint", "Requests", "Errors", "Throttled", "Bytes", "Items"
+        ));
+        this.getStatistics().forEach((endpoint, statistics) -> summary.append(String.format(
+                rowFormat,
+                endpoint,
+                statistics.getRequests(),
+                statistics.getErrors(),
+                statistics.getThrottled(),
+                statistics.getBytesReceived(),
+                statistics.getItems()
+        )));
+        return summary.toString();
+    }
+
+}